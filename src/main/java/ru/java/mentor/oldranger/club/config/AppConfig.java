@@ -1,14 +1,19 @@
 package ru.java.mentor.oldranger.club.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 @EnableScheduling
 @PropertySource({
@@ -20,9 +25,77 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @EnableAsync
 @EnableTransactionManagement
 public class AppConfig {
+    /**
+     * Общий исполнитель {@code @Async} методов. Очередь ограничена: когда она заполнена,
+     * задачу выполняет вызвавший поток.
+     */
     @Bean(name = "taskExecutor")
-    public TaskExecutor taskExecutor() {
+    public TaskExecutor taskExecutor(@Value("${project.async.threads:4}") int threads,
+                                     @Value("${project.async.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Планировщик {@code @Scheduled} задач приложения. Без него задачи выполнялись бы на messageBrokerTaskScheduler
+     * &ndash; единственном TaskScheduler в контексте, и долгая задача задерживала бы heartbeat сессий чата.
+     */
+    @Bean(name = "taskScheduler")
+    public TaskScheduler taskScheduler(@Value("${project.scheduling.threads:4}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Потоки, рассылающие уведомления о новых комментариях: рассылка по крупному Topic не занимает общий taskExecutor.
+     */
+    @Bean(name = "notificationExecutor")
+    public TaskExecutor notificationExecutor(@Value("${project.notifications.threads:4}") int threads,
+                                             @Value("${project.notifications.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("notification-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Потоки, удаляющие файлы изображений при очистке чатов. Очередь ограничена: когда она заполнена,
+     * файл удаляет сам поток очистки.
+     */
+    @Bean(name = "fileDeletionExecutor")
+    public TaskExecutor fileDeletionExecutor(@Value("${project.chat.retention.file-threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("file-deletion-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Поток, продолжающий прерванные очистки чатов после запуска: долгая очистка не занимает общий taskExecutor.
+     */
+    @Bean(name = "chatRetentionExecutor")
+    public TaskExecutor chatRetentionExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("chat-retention-");
         executor.initialize();
         return executor;
     }
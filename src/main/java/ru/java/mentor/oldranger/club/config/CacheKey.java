@@ -0,0 +1,61 @@
+package ru.java.mentor.oldranger.club.config;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Неизменяемый составной ключ кэша: метод, класс видимости пользователя и параметры,
+ * в которых сущности уже заменены на их id. Хэш считается один раз при создании.
+ */
+public final class CacheKey {
+
+    /**
+     * Что видит пользователь: гость не видит разделы и темы, скрытые от анонимов.
+     */
+    public enum Visibility {
+        ANON,
+        MEMBER
+    }
+
+    private final Method method;
+    private final Visibility visibility;
+    private final Object[] params;
+    private final int hashCode;
+
+    CacheKey(Method method, Visibility visibility, Object[] params) {
+        this.method = method;
+        this.visibility = visibility;
+        this.params = params;
+        this.hashCode = 31 * (31 * method.hashCode() + visibility.hashCode()) + Arrays.deepHashCode(params);
+    }
+
+    public Visibility getVisibility() {
+        return visibility;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) o;
+        return hashCode == other.hashCode
+                && visibility == other.visibility
+                && method.equals(other.method)
+                && Arrays.deepEquals(params, other.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                + "[" + visibility + "]" + Arrays.deepToString(params);
+    }
+}
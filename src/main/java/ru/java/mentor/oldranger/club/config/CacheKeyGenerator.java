@@ -0,0 +1,72 @@
+package ru.java.mentor.oldranger.club.config;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import javax.persistence.Entity;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Строит {@link CacheKey}. Сущность в параметрах заменяется на её id без обращения к toString и
+ * без загрузки ленивых связей; сущность без id (ещё не сохранённая) в ключ попасть не может.
+ */
+public class CacheKeyGenerator implements KeyGenerator {
+
+    private final Function<Object, Object> entityIdResolver;
+    private final BooleanSupplier memberViewer;
+
+    /**
+     * @param entityIdResolver id сущности, для Hibernate proxy - без её инициализации
+     * @param memberViewer     true, если текущий пользователь видит форум как участник
+     */
+    public CacheKeyGenerator(Function<Object, Object> entityIdResolver, BooleanSupplier memberViewer) {
+        this.entityIdResolver = entityIdResolver;
+        this.memberViewer = memberViewer;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Object[] keyParams = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            keyParams[i] = toKeyPart(params[i]);
+        }
+        CacheKey.Visibility visibility = memberViewer.getAsBoolean() ? CacheKey.Visibility.MEMBER : CacheKey.Visibility.ANON;
+        return new CacheKey(method, visibility, keyParams);
+    }
+
+    private Object toKeyPart(Object param) {
+        if (param == null) {
+            return null;
+        }
+        if (param instanceof HibernateProxy || param.getClass().isAnnotationPresent(Entity.class)) {
+            Object id = entityIdResolver.apply(param);
+            if (id == null) {
+                throw new IllegalArgumentException("Entity without id can not be a part of cache key: " + param.getClass().getName());
+            }
+            return id;
+        }
+        if (param instanceof Set) {
+            Set<Object> parts = new HashSet<>();
+            for (Object element : (Set<?>) param) {
+                parts.add(toKeyPart(element));
+            }
+            return Collections.unmodifiableSet(parts);
+        }
+        if (param instanceof Collection) {
+            List<Object> parts = new ArrayList<>(((Collection<?>) param).size());
+            for (Object element : (Collection<?>) param) {
+                parts.add(toKeyPart(element));
+            }
+            return Collections.unmodifiableList(parts);
+        }
+        return param;
+    }
+}
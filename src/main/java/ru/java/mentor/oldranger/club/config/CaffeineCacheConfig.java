@@ -1,61 +1,181 @@
 package ru.java.mentor.oldranger.club.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.util.StringUtils;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
 
-import java.lang.reflect.Method;
-import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Configuration
 @EnableCaching
 public class CaffeineCacheConfig {
-    @Value("${INIT_CAPACITY}")
-    private int INIT_CAPACITY;
-    @Value("${MAX_SIZE}")
-    private int MAX_SIZE;
-    @Value("${LIVE_TIME}")
-    private long LIVE_TIME;
 
+    /**
+     * Все кэши приложения. Кэш с другим именем не создаётся: обращение к нему завершится ошибкой,
+     * поэтому новый кэш нужно добавить сюда и, при необходимости, задать ему настройки в cache.properties.
+     */
+    public static final List<String> CACHE_NAMES = Arrays.asList(
+            "users",
+            "allUsers",
+            "article",
+            "allArticle",
+            "tagNode",
+            "allTagNode",
+            "allTagNodeHierarchy",
+            "topic",
+            "allTopic",
+            "topicSubscribers"
+    );
+
+    /**
+     * Кэши, записи которых удаляются по {@link ru.java.mentor.oldranger.club.event.EntityChangedEvent}
+     * только для изменившейся сущности. Остальные кэши очищаются через @CacheEvict.
+     */
+    static final Map<String, EntityType> CACHE_ENTITY_TYPES;
+
+    static {
+        Map<String, EntityType> types = new HashMap<>();
+        types.put("users", EntityType.USER);
+        types.put("allUsers", EntityType.USER);
+        types.put("article", EntityType.ARTICLE);
+        types.put("allArticle", EntityType.ARTICLE);
+        types.put("topic", EntityType.TOPIC);
+        types.put("allTopic", EntityType.TOPIC);
+        CACHE_ENTITY_TYPES = Collections.unmodifiableMap(types);
+    }
+
+    static final String SPEC_PROPERTY_PREFIX = "cache.spec.";
+
+    private final Environment environment;
+    private final String defaultSpec;
+    private final CacheDependencyIndex dependencyIndex;
+    private final CacheInvalidationTransport invalidationTransport;
+
+    public CaffeineCacheConfig(Environment environment,
+                               @Value("${cache.default-spec:initialCapacity=100,maximumSize=500,expireAfterAccess=10m}") String defaultSpec,
+                               CacheDependencyIndex dependencyIndex,
+                               CacheInvalidationTransport invalidationTransport) {
+        this.environment = environment;
+        this.defaultSpec = defaultSpec;
+        this.dependencyIndex = dependencyIndex;
+        this.invalidationTransport = invalidationTransport;
+    }
+
+    @Bean
     public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
-                "users",
-                "allUsers",
-                "article",
-                "allArticle",
-                "tagNode",
-                "allTagNode",
-                "topic",
-                "allTopic"
-                );
-        cacheManager.setCaffeine(caffeineCacheBuilder());
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected org.springframework.cache.Cache createCaffeineCache(String name) {
+                EntityType entityType = CACHE_ENTITY_TYPES.get(name);
+                if (entityType == null) {
+                    return new ReplicatedCaffeineCache(name, createNativeCaffeineCache(name), isAllowNullValues(),
+                            invalidationTransport);
+                }
+                return new DependencyTrackingCaffeineCache(name, createNativeCaffeineCache(name), isAllowNullValues(),
+                        invalidationTransport, entityType, dependencyIndex);
+            }
+
+            @Override
+            protected Cache<Object, Object> createNativeCaffeineCache(String name) {
+                return caffeineCacheBuilder(name);
+            }
+        };
+        // после задания имён CaffeineCacheManager перестаёт создавать кэши на лету
+        cacheManager.setCacheNames(CACHE_NAMES);
         return cacheManager;
     }
 
-    Caffeine<Object, Object> caffeineCacheBuilder() {
-        return Caffeine.newBuilder()
-                .initialCapacity(INIT_CAPACITY)
-                .maximumSize(MAX_SIZE)
-                .expireAfterAccess(LIVE_TIME, TimeUnit.MINUTES)
-                .weakKeys()
-                .recordStats();
+    /**
+     * Кэш по спецификации {@code cache.spec.<имя кэша>} из cache.properties, либо по {@code cache.default-spec}.<br>
+     * Ключи сравниваются через equals: weakKeys сравнивает по ссылке, а ключи {@code customKeyGenerator}
+     * создаются заново при каждом вызове и никогда бы не совпадали.
+     */
+    Cache<Object, Object> caffeineCacheBuilder(String name) {
+        String spec = withoutRefresh(name, environment.getProperty(SPEC_PROPERTY_PREFIX + name, defaultSpec));
+        Caffeine<Object, Object> builder = Caffeine.from(CaffeineSpec.parse(spec)).recordStats();
+        if (!CACHE_ENTITY_TYPES.containsKey(name)) {
+            return builder.build();
+        }
+        AtomicReference<Cache<Object, Object>> cache = new AtomicReference<>();
+        // при замене значения регистрацию уже обновил put
+        builder = builder.removalListener((key, value, cause) -> {
+            if (cause != RemovalCause.REPLACED) {
+                dependencyIndex.unregister(name, key, value, () -> cache.get().getIfPresent(key) == value);
+            }
+        });
+        cache.set(builder.build());
+        return cache.get();
     }
-    public class CustomKeyGenerator implements KeyGenerator {
 
-        public Object generate(Object target, Method method, Object... params) {
-            return target.getClass().getSimpleName() + "_"
-                    + method.getName() + "_"
-                    + StringUtils.arrayToDelimitedString(params, "_");
+    /**
+     * У кэшей Spring нет загрузчика значений, поэтому refreshAfterWrite обновлять записи не может:
+     * он лишь удалял бы их и считал каждое обновление неудачной загрузкой. Такая настройка отбрасывается.
+     */
+    static String withoutRefresh(String name, String spec) {
+        if (!spec.contains("refreshAfterWrite")) {
+            return spec;
         }
+        log.warn("refreshAfterWrite is not supported for Spring caches and is ignored for cache {}", name);
+        return Arrays.stream(spec.split(","))
+                .filter(option -> !option.trim().startsWith("refreshAfterWrite"))
+                .collect(Collectors.joining(","));
     }
+
+    /**
+     * Доля попаданий каждого кэша. Остальные показатели (cache.gets, cache.evictions, cache.size,
+     * cache.load.duration) Spring Boot Actuator регистрирует для объявленных кэшей сам.
+     */
+    @Bean
+    public MeterBinder cacheHitRatioMetrics(CacheManager cacheManager) {
+        return registry -> {
+            for (String name : cacheManager.getCacheNames()) {
+                org.springframework.cache.Cache cache = cacheManager.getCache(name);
+                if (cache instanceof CaffeineCache) {
+                    Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+                    Gauge.builder("cache.hit.ratio", nativeCache, c -> c.stats().hitRate())
+                            .tag("cache", name)
+                            .description("Hit ratio of the cache since start")
+                            .register(registry);
+                }
+            }
+        };
+    }
+
+    /**
+     * Ключи списков, содержимое которых зависит от того, кто смотрит: гость или участник.
+     */
     @Bean("customKeyGenerator")
-    public KeyGenerator keyGenerator() {
-        return new CustomKeyGenerator();
+    public KeyGenerator keyGenerator(EntityManagerFactory entityManagerFactory, @Lazy SecurityUtilsService securityUtilsService) {
+        PersistenceUnitUtil persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        return new CacheKeyGenerator(persistenceUnitUtil::getIdentifier,
+                () -> SecurityContextHolder.getContext().getAuthentication() != null && securityUtilsService.isLoggedUserIsUser());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package ru.java.mentor.oldranger.club.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.model.article.Article;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex.EntityRef;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Кэш, который при сохранении значения регистрирует его зависимость в {@link CacheDependencyIndex}:
+ * одна сущность зависит от своего id, а список, страница или null - от любой сущности типа.
+ */
+class DependencyTrackingCaffeineCache extends ReplicatedCaffeineCache {
+
+    private final EntityType entityType;
+    private final CacheDependencyIndex dependencyIndex;
+
+    DependencyTrackingCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues,
+                                    CacheInvalidationTransport invalidationTransport,
+                                    EntityType entityType, CacheDependencyIndex dependencyIndex) {
+        super(name, cache, allowNullValues, invalidationTransport);
+        this.entityType = entityType;
+        this.dependencyIndex = dependencyIndex;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        dependencyIndex.register(getName(), key, toStoreValue(value), dependenciesOf(value), () -> {
+            super.put(key, value);
+            return true;
+        });
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper[] existing = new ValueWrapper[1];
+        dependencyIndex.register(getName(), key, toStoreValue(value), dependenciesOf(value), () -> {
+            existing[0] = super.putIfAbsent(key, value);
+            return existing[0] == null;
+        });
+        return existing[0];
+    }
+
+    private List<EntityRef> dependenciesOf(Object value) {
+        Long id = idOf(value);
+        return Collections.singletonList(id == null ? EntityRef.anyOf(entityType) : EntityRef.of(entityType, id));
+    }
+
+    private static Long idOf(Object value) {
+        if (value instanceof Topic) {
+            return ((Topic) value).getId();
+        }
+        if (value instanceof User) {
+            return ((User) value).getId();
+        }
+        if (value instanceof Article) {
+            return ((Article) value).getId();
+        }
+        return null;
+    }
+}
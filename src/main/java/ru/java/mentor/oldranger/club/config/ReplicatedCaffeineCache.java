@@ -0,0 +1,67 @@
+package ru.java.mentor.oldranger.club.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+
+/**
+ * Кэш, удаления из которого ({@code @CacheEvict}, очистка администратором) повторяются на остальных
+ * экземплярах приложения. Строковый или числовой ключ передаётся как есть, для составных ключей
+ * на остальных экземплярах очищается весь кэш.
+ */
+public class ReplicatedCaffeineCache extends CaffeineCache {
+
+    private final CacheInvalidationTransport invalidationTransport;
+
+    ReplicatedCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues,
+                            CacheInvalidationTransport invalidationTransport) {
+        super(name, cache, allowNullValues);
+        this.invalidationTransport = invalidationTransport;
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        invalidationTransport.publish(messageFor(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = super.evictIfPresent(key);
+        invalidationTransport.publish(messageFor(key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        invalidationTransport.publish(CacheInvalidationMessage.forCache(getName()));
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean notEmpty = super.invalidate();
+        invalidationTransport.publish(CacheInvalidationMessage.forCache(getName()));
+        return notEmpty;
+    }
+
+    /**
+     * Удаление только на этом экземпляре: по сообщению другого экземпляра или по событию изменения
+     * сущности, которое отправляется остальным целиком.
+     */
+    public void evictLocally(Object key) {
+        super.evict(key);
+    }
+
+    public void clearLocally() {
+        super.clear();
+    }
+
+    private CacheInvalidationMessage messageFor(Object key) {
+        if (key instanceof String || key instanceof Long || key instanceof Integer) {
+            return CacheInvalidationMessage.forKey(getName(), key.toString());
+        }
+        return CacheInvalidationMessage.forCache(getName());
+    }
+}
@@ -97,6 +97,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .antMatchers("/admin", "/admin/*").hasAnyRole("ADMIN", "USER")
                 .antMatchers("/com/*", "/dist-smile/*", "/markdown", "/request").permitAll()
                 .antMatchers("/", "/api/**", "/invite", "/passwordrecovery/**", "/confirm").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .httpBasic()
@@ -12,8 +12,6 @@ import ru.java.mentor.oldranger.club.service.chat.ChatService;
 import ru.java.mentor.oldranger.club.service.chat.MessageService;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
 
-import java.time.LocalDateTime;
-
 @Controller
 @AllArgsConstructor
 public class PrivateChatController {
@@ -31,7 +29,6 @@ public class PrivateChatController {
     @MessageMapping("/send/{chatToken}")
     @SendTo("/channel/private/{chatToken}")
     public Message sendMessage(@Payload Message chatMessage, @DestinationVariable String chatToken) {
-        chatMessage.setMessageDate(LocalDateTime.now());
         chatMessage.setChat(chatService.getChatByToken(chatToken));
         messageService.addMessage(chatMessage);
         return chatMessage;
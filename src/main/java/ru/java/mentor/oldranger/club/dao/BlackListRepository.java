@@ -1,9 +1,14 @@
 package ru.java.mentor.oldranger.club.dao;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BlackList;
+import ru.java.mentor.oldranger.club.projection.UserBanProjection;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface BlackListRepository extends JpaRepository<BlackList, Long> {
@@ -11,4 +16,16 @@ public interface BlackListRepository extends JpaRepository<BlackList, Long> {
     List<BlackList> findByUserId(Long id);
 
     BlackList findByUser(User user);
-}
\ No newline at end of file
+
+    @Query("select b.user.id from BlackList b where b.id = :id")
+    Long getUserIdById(Long id);
+
+    @Query("select b.user.id as userId, b.unlockTime as unlockTime from BlackList b " +
+            "where b.unlockTime is null or b.unlockTime > :now")
+    List<UserBanProjection> getActiveBans(LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from black_list where unlock_time < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -1,23 +1,29 @@
 package ru.java.mentor.oldranger.club.dao.ChatRepository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
 import ru.java.mentor.oldranger.club.model.chat.Chat;
 import ru.java.mentor.oldranger.club.model.chat.Message;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
-    @Query("select m from Message m where m.chat.id=:chatId and m.messageDate<=:date")
-    List<Message> findAllByChatAndDate(long chatId, LocalDateTime date);
+    /**
+     * Порции истории чата по индексу (id_chat, id): Slice запрашивает на одну строку больше вместо COUNT,
+     * а границы порций задаются id сообщений и не сдвигаются при появлении новых сообщений.
+     */
+    Slice<Message> findByChatId(Long chatId, Pageable pageable);
 
-    Page<Message> findAllByChat(Chat chat, Pageable pageable);
+    Slice<Message> findByChatIdAndIdLessThan(Long chatId, Long id, Pageable pageable);
 
-    List<Message> findAllByChat(Chat chat);
+    Slice<Message> findByChatIdAndIdGreaterThan(Long chatId, Long id, Pageable pageable);
+
+    /**
+     * Самое раннее по id сообщение, отправленное не раньше {@code since}; читается по индексу (id_chat, message_date).
+     */
+    Message findFirstByChatIdAndMessageDateGreaterThanEqualOrderByIdAsc(Long chatId, LocalDateTime since);
 
     Message findFirstByChatOrderByMessageDateAsc(Chat chat);
 }
\ No newline at end of file
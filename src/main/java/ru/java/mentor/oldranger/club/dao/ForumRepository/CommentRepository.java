@@ -3,10 +3,14 @@ package ru.java.mentor.oldranger.club.dao.ForumRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.model.comment.Comment;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.user.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
@@ -21,4 +25,27 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     List<Comment> findByPositionGreaterThanAndTopicId(Long position, Long id);
 
+    /**
+     * Идентификаторы комментариев страницы Topic в порядке публикации с честным смещением в SQL.
+     */
+    @Query(nativeQuery = true,
+            value = "select id from comments where id_topic = ?1 order by date_comment, id limit ?2 offset ?3")
+    List<Long> findIdsByTopicId(Long topicId, int limit, long offset);
+
+    /**
+     * Комментарии вместе с авторами и комментариями, на которые они отвечают, одним запросом.
+     * {@code User.passwordRecoveryToken} &ndash; обратная сторона OneToOne, Hibernate не может загрузить её лениво
+     * и без join fetch читает её отдельным запросом для каждого автора.
+     */
+    @Query("select c from Comment c join fetch c.user u left join fetch u.avatar left join fetch u.passwordRecoveryToken " +
+            "left join fetch c.answerTo a left join fetch a.user au left join fetch au.avatar left join fetch au.passwordRecoveryToken " +
+            "where c.id in :ids order by c.dateTime, c.id")
+    List<Comment> findAllWithAuthorsAndRepliesByIdIn(Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update comments set position = position - 1 where id_topic = ?1 and position > ?2")
+    int shiftPositionsAfterDeleted(Long topicId, Long deletedPosition);
+
 }
\ No newline at end of file
@@ -3,12 +3,15 @@ package ru.java.mentor.oldranger.club.dao.ForumRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.model.forum.Subsection;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TopicRepository extends JpaRepository<Topic, Long> {
@@ -33,6 +36,20 @@ public interface TopicRepository extends JpaRepository<Topic, Long> {
             value = "select * from (select topics.*, subsections.id_section, row_number() over (partition by id_section order by date_last_message desc, id asc) i from topics left join subsections on topics.subsection_id = subsections.id where topics.is_hide = false) t where i <= ?1")
     List<Topic> getActualTopicsLimitAnyBySectionForAnon(Integer limitTopicsBySection);
 
+    /**
+     * Актуальные Topic одной Section (сортировка по дате последнего сообщения, затем по id).
+     */
+    @Query("select t from Topic t join t.subsection s where s.section.id = :sectionId " +
+            "order by t.lastMessageTime desc, t.id asc")
+    List<Topic> getActualTopicsBySection(Long sectionId, Pageable pageable);
+
+    /**
+     * Актуальные Topic одной Section с условием isHideToAnon = false.
+     */
+    @Query("select t from Topic t join t.subsection s where s.section.id = :sectionId and t.isHideToAnon = false " +
+            "order by t.lastMessageTime desc, t.id asc")
+    List<Topic> getActualTopicsBySectionForAnon(Long sectionId, Pageable pageable);
+
     /*
      * Выборка по N первых актуальных (соритировка по дате последнего сообщения) Topic (из topics).
      * */
@@ -76,13 +93,81 @@ public interface TopicRepository extends JpaRepository<Topic, Long> {
      * чтобы получить общее количество элементов Topics для эмуляции пейджинга.
      */
     @Query(nativeQuery = true,
-            value = "select *, (comb.id_user is not null and comb.is_subscribed=true and (comb.date_last_message>=comb.date_lastvisit or comb.date_lastvisit is null)) as subscriber_has_new_msg from " +
-                    "(select * from topics t left join (select topic_id, id_user, date_lastvisit, is_subscribed from topic_visit_and_subscriptions s where s.id_user=?1 group by s.topic_id) st on t.id=st.topic_id " +
+            value = "select *, (comb.id_user is not null and comb.is_subscribed=true and comb.message_count>comb.last_seen_position) as subscriber_has_new_msg from " +
+                    "(select * from topics t left join (select topic_id, id_user, last_seen_position, is_subscribed from topic_visit_and_subscriptions s where s.id_user=?1 group by s.topic_id) st on t.id=st.topic_id " +
                     "where t.subsection_id=?2) as comb " +
                     "order by subscriber_has_new_msg desc, comb.date_last_message desc " +
                     "limit ?3,?4")
     List<Topic> getSliceListBySubsectionForUserOrderByLastMessageTimeDescAndSubscriptionsWithNewMessagesFirst(long userId, long subsectionId, int offset, int limit);
 
+    /**
+     * Используется для неанонимов, курсорная (keyset) пагинация без подсчёта общего количества.<br>
+     * Topic подсекции, на которые подписан пользователь и в которых есть новые сообщения
+     * ({@code message_count > last_seen_position}, как в счётчиках новых сообщений),
+     * в порядке убывания (дата последнего сообщения, id), строго после переданной позиции.<br>
+     * Дата сравнивается без преобразований, чтобы поиск шёл по индексу (subsection_id, date_last_message, id);
+     * Topic без даты последнего сообщения выбираются отдельно, см. {@code getUndatedSliceBySubsectionForUserWithNewMessagesAfter}.
+     */
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?2 " +
+                    "and t.date_last_message<=?3 and (t.date_last_message<?3 or t.id<?4) " +
+                    "and exists (select 1 from topic_visit_and_subscriptions s where s.topic_id=t.id and s.id_user=?1 and s.is_subscribed=true " +
+                    "and t.message_count>s.last_seen_position) " +
+                    "order by t.date_last_message desc, t.id desc " +
+                    "limit ?5")
+    List<Topic> getSliceBySubsectionForUserWithNewMessagesAfter(long userId, long subsectionId, LocalDateTime lastMessageTime, long id, int limit);
+
+    /**
+     * Продолжение {@code getSliceBySubsectionForUserWithNewMessagesAfter}: Topic без даты последнего сообщения
+     * в порядке убывания id, строго после переданного id.
+     */
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?2 and t.date_last_message is null and t.id<?3 " +
+                    "and exists (select 1 from topic_visit_and_subscriptions s where s.topic_id=t.id and s.id_user=?1 and s.is_subscribed=true " +
+                    "and t.message_count>s.last_seen_position) " +
+                    "order by t.id desc " +
+                    "limit ?4")
+    List<Topic> getUndatedSliceBySubsectionForUserWithNewMessagesAfter(long userId, long subsectionId, long id, int limit);
+
+    /**
+     * Пара к {@code getSliceBySubsectionForUserWithNewMessagesAfter}: остальные Topic подсекции
+     * (без подписки или без новых сообщений) в том же порядке, строго после переданной позиции.
+     */
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?2 " +
+                    "and t.date_last_message<=?3 and (t.date_last_message<?3 or t.id<?4) " +
+                    "and not exists (select 1 from topic_visit_and_subscriptions s where s.topic_id=t.id and s.id_user=?1 and s.is_subscribed=true " +
+                    "and t.message_count>s.last_seen_position) " +
+                    "order by t.date_last_message desc, t.id desc " +
+                    "limit ?5")
+    List<Topic> getSliceBySubsectionForUserWithoutNewMessagesAfter(long userId, long subsectionId, LocalDateTime lastMessageTime, long id, int limit);
+
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?2 and t.date_last_message is null and t.id<?3 " +
+                    "and not exists (select 1 from topic_visit_and_subscriptions s where s.topic_id=t.id and s.id_user=?1 and s.is_subscribed=true " +
+                    "and t.message_count>s.last_seen_position) " +
+                    "order by t.id desc " +
+                    "limit ?4")
+    List<Topic> getUndatedSliceBySubsectionForUserWithoutNewMessagesAfter(long userId, long subsectionId, long id, int limit);
+
+    /**
+     * Курсорная (keyset) пагинация для анонимов: Topic подсекции с isHideToAnon = false
+     * в порядке убывания (дата последнего сообщения, id), строго после переданной позиции.
+     */
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?1 and t.is_hide=false " +
+                    "and t.date_last_message<=?2 and (t.date_last_message<?2 or t.id<?3) " +
+                    "order by t.date_last_message desc, t.id desc " +
+                    "limit ?4")
+    List<Topic> getSliceBySubsectionForAnonAfter(long subsectionId, LocalDateTime lastMessageTime, long id, int limit);
+
+    @Query(nativeQuery = true,
+            value = "select t.* from topics t where t.subsection_id=?1 and t.is_hide=false " +
+                    "and t.date_last_message is null and t.id<?2 " +
+                    "order by t.id desc " +
+                    "limit ?3")
+    List<Topic> getUndatedSliceBySubsectionForAnonAfter(long subsectionId, long id, int limit);
+
     /**
      * Подсчёт общего количества элементов для выборок<br>
      * {@code List<Topic> getSliceListBySubsectionForUserOrderByLastMessageTimeDescAndSubscriptionsWithNewMessagesFirst}
@@ -95,19 +180,62 @@ public interface TopicRepository extends JpaRepository<Topic, Long> {
     long countForGetSliceListBySubsectionForUserOrderByLastMessageTimeDescAndSubscriptionsWithNewMessagesFirst(long userId, long subsectionId);
 
     /**
-     * Подсчёт общего количества сообщений для списка идентификаторов класса Topic<br>
-     * Если сообщений в Топике нет, то пара с id Топика будет отсутствовать в выбоке!
+     * Общее количество сообщений для списка идентификаторов класса Topic<br>
+     * Значение берётся из денормализованного счётчика {@code topics.message_count},
+     * без подсчёта по таблице comments.
      *
      * @param ids список id для Topic
      * @return пара {@code IdAndNumberProjection} "id Топика" - "общее количество сообщений в Топике"
      */
     @Query(nativeQuery = true,
-            value = "select id_topic as id, count(*) as number from comments c where c.id_topic in :ids group by id_topic")
+            value = "select t.id as id, t.message_count as number from topics t where t.id in :ids")
     List<IdAndNumberProjection> getPairsTopicIdAndTotalMessagesCount(List<Long> ids);
 
+    /**
+     * Атомарное увеличение счётчика сообщений Topic на единицу
+     * с обновлением даты последнего сообщения.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update topics set message_count = message_count + 1, " +
+                    "date_last_message = greatest(coalesce(date_last_message, ?2), ?2) where id = ?1")
+    int incrementMessageCount(long topicId, LocalDateTime lastMessageTime);
+
+    /**
+     * Атомарное уменьшение счётчика сообщений Topic на единицу (не ниже нуля).
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update topics set message_count = greatest(message_count - 1, 0) where id = ?1")
+    int decrementMessageCount(long topicId);
+
+    @Query(nativeQuery = true, value = "select message_count from topics where id = ?1")
+    long getMessageCount(long topicId);
+
+    @Query(nativeQuery = true, value = "select coalesce(max(id), 0) from topics")
+    long getMaxId();
+
+    /**
+     * Пересчёт счётчиков сообщений для Topic с id в диапазоне [fromId, toId].
+     * Обновляются только строки, у которых счётчик разошёлся с таблицей comments.
+     *
+     * @return количество исправленных Topic
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update topics t set t.message_count = (select count(*) from comments c where c.id_topic = t.id) " +
+                    "where t.id between ?1 and ?2 " +
+                    "and t.message_count <> (select count(*) from comments c where c.id_topic = t.id)")
+    int reconcileMessageCountForIdRange(long fromId, long toId);
+
 
     /**
      * Подсчёт новых сообщений для пользователя User для списка идентификаторов класса Topic<br>
+     * Считается как разница {@code topics.message_count} и {@code last_seen_position} из посещения Топика,
+     * без обращения к таблице comments.<br>
      * Если новых сообщений в Топике нет, то пара с id Топика будет отсутствовать в выбоке!
      *
      * @param ids    список id для топика Topic
@@ -115,8 +243,13 @@ public interface TopicRepository extends JpaRepository<Topic, Long> {
      * @return пара {@code IdAndNumberProjection} "id Топика" - "количество новых сообщений для пользователя в Топике"
      */
     @Query(nativeQuery = true,
-            value = "select c.id_topic as id, count(*) as number from comments c cross join topic_visit_and_subscriptions t on c.id_topic=t.topic_id " +
-                    "where t.id_user=?2 and t.topic_id in ?1 and c.date_comment>t.date_lastvisit " +
-                    "group by c.id_topic")
+            value = "select t.topic_id as id, tp.message_count - t.last_seen_position as number " +
+                    "from topic_visit_and_subscriptions t join topics tp on tp.id = t.topic_id " +
+                    "where t.id_user=?2 and t.topic_id in ?1 and tp.message_count > t.last_seen_position")
     List<IdAndNumberProjection> getPairsTopicIdAndNewMessagesCountForUserId(List<Long> ids, Long userId);
+
+    @Query(nativeQuery = true,
+            value = "select count(*) from topic_visit_and_subscriptions t join topics tp on tp.id = t.topic_id " +
+                    "where t.id_user=?1 and tp.message_count > t.last_seen_position")
+    long countTopicsWithNewMessagesForUserId(Long userId);
 }
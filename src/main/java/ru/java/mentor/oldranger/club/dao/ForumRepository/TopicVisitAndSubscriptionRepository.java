@@ -1,11 +1,15 @@
 package ru.java.mentor.oldranger.club.dao.ForumRepository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.projection.SubscribedTopicProjection;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TopicVisitAndSubscriptionRepository extends JpaRepository<TopicVisitAndSubscription, Long> {
@@ -16,10 +20,52 @@ public interface TopicVisitAndSubscriptionRepository extends JpaRepository<Topic
 
     TopicVisitAndSubscription getFirstByUserAndTopic(User user, Topic topic);
 
+    boolean existsByUserIdAndTopicId(Long userId, Long topicId);
+
     @Query("select t from TopicVisitAndSubscription t where t.topic=:topic and t.isSubscribed=true")
     List<TopicVisitAndSubscription> getSubscriptionsByTopic(Topic topic);
 
+    @Query("select t.user from TopicVisitAndSubscription t where t.topic=:topic and t.isSubscribed=true")
+    List<User> getSubscribedUsersByTopic(Topic topic);
+
+
+    /**
+     * Страница посещений и подписок пользователя, сначала Topic с последней активностью.
+     * Сортировка задана в запросе, {@code pageable} должен быть без Sort.
+     */
+    @Query(value = "select t from TopicVisitAndSubscription t join fetch t.topic tp where t.user=:user " +
+            "order by tp.lastMessageTime desc, tp.id desc",
+            countQuery = "select count(t) from TopicVisitAndSubscription t where t.user=:user")
+    Page<TopicVisitAndSubscription> getPageByUser(User user, Pageable pageable);
+
+    /**
+     * Страница Topic с новыми сообщениями из подписок пользователя, сначала Topic с последней активностью.
+     * Сортировка задана в запросе, {@code pageable} должен быть без Sort.
+     */
+    @Query(value = "select tp from TopicVisitAndSubscription t join t.topic tp " +
+            "where t.user=:user and t.isSubscribed=true and t.lastSeenPosition<tp.messageCount " +
+            "order by tp.lastMessageTime desc, tp.id desc",
+            countQuery = "select count(t) from TopicVisitAndSubscription t join t.topic tp " +
+                    "where t.user=:user and t.isSubscribed=true and t.lastSeenPosition<tp.messageCount")
+    Page<Topic> getSubscribedTopicsWithNewMessagesPageByUser(User user, Pageable pageable);
+
+    /**
+     * Порция подписок пользователя в порядке убывания (дата последнего сообщения, id Topic),
+     * строго после переданной позиции. Пустая дата последнего сообщения считается равной {@code emptyTime}.
+     */
+    @Query("select tp.id as topicId, tp.name as name, tp.lastMessageTime as lastMessageTime, " +
+            "case when tp.messageCount > t.lastSeenPosition then true else false end as hasNew, tp.messageCount as messageCount " +
+            "from TopicVisitAndSubscription t join t.topic tp " +
+            "where t.user=:user and t.isSubscribed=true " +
+            "and (coalesce(tp.lastMessageTime, :emptyTime) < :lastMessageTime " +
+            "or (coalesce(tp.lastMessageTime, :emptyTime) = :lastMessageTime and tp.id < :topicId)) " +
+            "order by tp.lastMessageTime desc, tp.id desc")
+    List<SubscribedTopicProjection> getSubscribedTopicsSliceByUser(User user, LocalDateTime lastMessageTime, long topicId,
+                                                                  LocalDateTime emptyTime, Pageable pageable);
+
+    @Query("select t.topic.id from TopicVisitAndSubscription t where t.user=:user and t.isSubscribed=true and t.topic.id in :topicIds")
+    List<Long> getSubscribedTopicIdsByUserAndTopicIds(User user, List<Long> topicIds);
 
-    @Query("select t.topic from TopicVisitAndSubscription t where t.user=:user and t.lastVisitTime<t.topic.lastMessageTime and t.isSubscribed=true")
-    List<Topic> getSubscribedTopicsByUser(User user);
+    @Query("select t.messageCount from Topic t where t.id=:topicId")
+    Long getTopicMessageCount(Long topicId);
 }
@@ -7,6 +7,7 @@ import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface PhotoRepository extends JpaRepository<Photo, Long> {
@@ -30,5 +31,7 @@ public interface PhotoRepository extends JpaRepository<Photo, Long> {
             ") and description = ?2")
     List<Photo> findByAlbumTitleAndDescription(String albumTitle, String description);
 
+    List<Photo> findByCommentIdIn(Collection<Long> commentIds);
+
     List<Photo> getAllByAlbumId(long albumId);
 }
@@ -1,12 +1,15 @@
 package ru.java.mentor.oldranger.club.dao.UserRepository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.model.user.Role;
 import ru.java.mentor.oldranger.club.model.user.User;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +28,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @Query(value = "SELECT * from users WHERE invite_key=:q LIMIT 1", nativeQuery = true)
     Optional<User> findUserByInviteKey(@Param("q") String key);
+
+    /**
+     * Меняет роль, только если текущая роль пользователя не входит в {@code keptRoles}.
+     *
+     * @return 1, если роль изменена, иначе 0
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.role = :role where u.id = :userId and u.role not in :keptRoles")
+    int updateRoleUnlessIn(Long userId, Role role, Collection<Role> keptRoles);
 }
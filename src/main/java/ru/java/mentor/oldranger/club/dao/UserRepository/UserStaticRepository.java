@@ -3,11 +3,18 @@ package ru.java.mentor.oldranger.club.dao.UserRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.dto.UserStatisticDto;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
+import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface UserStaticRepository extends JpaRepository<UserStatistic, Long> {
 
@@ -18,9 +25,28 @@ public interface UserStaticRepository extends JpaRepository<UserStatistic, Long>
 
     UserStatistic getOneByUser(User user);
 
+    @Query("select us.user.id as id, us.messageCount as number from UserStatistic us where us.user.id in :userIds")
+    List<IdAndNumberProjection> getMessageCountsByUserIds(Collection<Long> userIds);
+
     @Query(value = "select  new ru.java.mentor.oldranger.club.dto.UserStatisticDto" +
             "(us.id, u.nickName, u.email, u.regDate, r.role, us.lastComment, us.lastVisit)  " +
             "from UserStatistic us join us.user u join u.role r where u.firstName=:q or u.email=:q or u.lastName=:q")
     Page<UserStatisticDto> findByQueryDto(Pageable pageable, @Param("q") String query);
-}
 
+    /**
+     * Атомарно учитывает новое сообщение. Более позднее сообщение могло быть учтено раньше,
+     * поэтому lastComment только растёт.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update user_statistic set message_count = message_count + 1, " +
+                    "last_comment = coalesce(greatest(last_comment, ?2), ?2, last_comment) where user_id = ?1")
+    int incrementMessageCount(long userId, LocalDateTime lastComment);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true,
+            value = "update user_statistic set topics_count = topics_count + 1 where user_id = ?1")
+    int incrementTopicStartCount(long userId);
+}
@@ -1,10 +1,23 @@
 package ru.java.mentor.oldranger.club.dao;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BanType;
 import ru.java.mentor.oldranger.club.model.utils.WritingBan;
+import ru.java.mentor.oldranger.club.projection.WritingBanProjection;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface WritingBanRepository extends JpaRepository<WritingBan, Long> {
     WritingBan findByUserAndBanType(User user, BanType ban);
-}
\ No newline at end of file
+
+    @Query("select w.user.id as userId, w.unlockTime as unlockTime, w.banType as banType from WritingBan w " +
+            "where w.unlockTime is null or w.unlockTime > :now")
+    List<WritingBanProjection> getActiveBans(LocalDateTime now);
+
+    @Query("select w.user.id as userId, w.unlockTime as unlockTime, w.banType as banType from WritingBan w " +
+            "where w.user.id = :userId and (w.unlockTime is null or w.unlockTime > :now)")
+    List<WritingBanProjection> getActiveBansOfUser(Long userId, LocalDateTime now);
+}
@@ -0,0 +1,23 @@
+package ru.java.mentor.oldranger.club.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Статистика одного кэша Caffeine. Время загрузки &ndash; в наносекундах.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDto {
+    private String name;
+    private long estimatedSize;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long loadCount;
+    private long totalLoadTime;
+    private double averageLoadPenalty;
+    private long evictionCount;
+}
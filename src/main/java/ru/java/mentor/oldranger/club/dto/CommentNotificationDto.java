@@ -0,0 +1,23 @@
+package ru.java.mentor.oldranger.club.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Уведомление о новом комментарии в Topic, отправляется подписчикам в {@code /user/queue/notifications}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentNotificationDto {
+    private Long topicId;
+    private String topicName;
+    private Long commentId;
+    private Long positionInTopic;
+    private Long authorId;
+    private String authorNick;
+    private LocalDateTime commentDateTime;
+}
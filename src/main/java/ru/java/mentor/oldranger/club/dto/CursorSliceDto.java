@@ -0,0 +1,19 @@
+package ru.java.mentor.oldranger.club.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Порция элементов для курсорной (keyset) пагинации.<br>
+ * {@code nextCursor} передаётся в следующий запрос, {@code null} &ndash; элементов больше нет.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorSliceDto<T> {
+    private List<T> content;
+    private String nextCursor;
+}
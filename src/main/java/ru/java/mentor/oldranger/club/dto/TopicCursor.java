@@ -0,0 +1,59 @@
+package ru.java.mentor.oldranger.club.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Позиция в выдаче Topic подсекции: (есть ли новые сообщения в подписке, дата последнего сообщения, id).<br>
+ * Для клиента курсор непрозрачен и передаётся строкой.
+ */
+@Data
+@AllArgsConstructor
+public class TopicCursor {
+
+    /**
+     * Подставляется вместо пустой даты последнего сообщения: такие Topic идут в конце выдачи после всех остальных.
+     */
+    public static final LocalDateTime EMPTY_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final TopicCursor FIRST = new TopicCursor(true, LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    private final boolean subscriberHasNew;
+    private final LocalDateTime lastMessageTime;
+    private final long id;
+
+    public static TopicCursor first() {
+        return FIRST;
+    }
+
+    public static TopicCursor after(Topic topic, boolean subscriberHasNew) {
+        LocalDateTime time = topic.getLastMessageTime() == null ? EMPTY_TIME : topic.getLastMessageTime();
+        return new TopicCursor(subscriberHasNew, time, topic.getId());
+    }
+
+    public String encode() {
+        String raw = (subscriberHasNew ? 1 : 0) + "|" + lastMessageTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor строка, полученная из {@link #encode()}; пустое значение означает начало выдачи
+     * @throws IllegalArgumentException если курсор повреждён
+     */
+    public static TopicCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return first();
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            return new TopicCursor("1".equals(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid topic cursor: " + cursor, e);
+        }
+    }
+}
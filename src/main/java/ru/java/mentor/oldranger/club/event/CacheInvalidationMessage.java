@@ -0,0 +1,38 @@
+package ru.java.mentor.oldranger.club.event;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Что удалить из кэшей на других экземплярах приложения: записи, зависящие от сущности,
+ * одну запись кэша или весь кэш (cacheKey = null).<br>
+ * Полученное от другого экземпляра сообщение публикуется как событие приложения.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class CacheInvalidationMessage {
+    private final String cacheName;
+    private final String cacheKey;
+    private final EntityType entityType;
+    private final Long entityId;
+
+    public static CacheInvalidationMessage forEntity(EntityType entityType, Long entityId) {
+        return new CacheInvalidationMessage(null, null, entityType, entityId);
+    }
+
+    public static CacheInvalidationMessage forKey(String cacheName, String cacheKey) {
+        return new CacheInvalidationMessage(cacheName, cacheKey, null, null);
+    }
+
+    public static CacheInvalidationMessage forCache(String cacheName) {
+        return new CacheInvalidationMessage(cacheName, null, null, null);
+    }
+
+    public boolean isEntityChange() {
+        return entityType != null;
+    }
+}
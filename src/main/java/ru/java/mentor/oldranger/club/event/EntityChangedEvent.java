@@ -0,0 +1,17 @@
+package ru.java.mentor.oldranger.club.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Публикуется после создания, изменения или удаления сущности. По нему из кэшей удаляются
+ * только записи, зависящие от этой сущности.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class EntityChangedEvent {
+    private final EntityType type;
+    private final Long id;
+}
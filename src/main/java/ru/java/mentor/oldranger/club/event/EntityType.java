@@ -0,0 +1,10 @@
+package ru.java.mentor.oldranger.club.event;
+
+/**
+ * Сущности, от которых зависят записи кэшей.
+ */
+public enum EntityType {
+    TOPIC,
+    USER,
+    ARTICLE
+}
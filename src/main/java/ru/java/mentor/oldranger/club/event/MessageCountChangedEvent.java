@@ -0,0 +1,15 @@
+package ru.java.mentor.oldranger.club.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Публикуется после того, как в базе увеличился счётчик сообщений пользователя.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MessageCountChangedEvent {
+    private final Long userId;
+}
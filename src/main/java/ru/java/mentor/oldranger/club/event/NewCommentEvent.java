@@ -0,0 +1,16 @@
+package ru.java.mentor.oldranger.club.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.java.mentor.oldranger.club.dto.CommentNotificationDto;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+
+/**
+ * Публикуется после сохранения нового Comment.
+ */
+@Getter
+@AllArgsConstructor
+public class NewCommentEvent {
+    private final Topic topic;
+    private final CommentNotificationDto notification;
+}
@@ -0,0 +1,31 @@
+package ru.java.mentor.oldranger.club.model.chat;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Незавершённая очистка чата: до какой даты удаляются сообщения и до какого id они уже удалены.
+ * Записи ведёт {@link ru.java.mentor.oldranger.club.service.chat.impl.ChatRetentionServiceImpl}.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "chat_retention_checkpoints")
+public class ChatRetentionCheckpoint {
+
+    @Id
+    @Column(name = "id_chat")
+    private Long chatId;
+
+    @Column(name = "delete_date", nullable = false)
+    private LocalDateTime deleteDate;
+
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    @Column(name = "deleted_messages", nullable = false)
+    private long deletedMessages;
+}
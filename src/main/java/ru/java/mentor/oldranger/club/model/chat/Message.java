@@ -13,12 +13,15 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {@Index(name = "idx_messages_chat_id", columnList = "id_chat,id"),
+        @Index(name = "idx_messages_chat_date", columnList = "id_chat,message_date")})
 public class Message {
 
+    /**
+     * Id выдаёт {@link ru.java.mentor.oldranger.club.service.chat.ChatMessageIngestService} до сохранения.
+     */
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(name = "msg_text")
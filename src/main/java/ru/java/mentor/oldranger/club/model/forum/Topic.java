@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Entity
 @Indexed
-@Table(name = "topics")
+@Table(name = "topics",
+        indexes = {@Index(name = "idx_topics_subsection_last_message", columnList = "subsection_id,date_last_message,id")})
 public class Topic {
 
     @Id
@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 @Data
 @Entity
 @NoArgsConstructor
-@Table(name = "topic_visit_and_subscriptions")
+@Table(name = "topic_visit_and_subscriptions",
+        indexes = {@Index(name = "idx_topic_visit_user_topic", columnList = "id_user,topic_id")})
 public class TopicVisitAndSubscription {
     @Id
     @Column(name = "id")
@@ -34,6 +35,15 @@ public class TopicVisitAndSubscription {
     @Column(name = "date_lastvisit")
     private LocalDateTime lastVisitTime;
 
+    /**
+     * Значение {@code Topic.messageCount} на момент последнего просмотра Topic пользователем.
+     * Количество непрочитанных сообщений &ndash; {@code topic.messageCount - lastSeenPosition}.
+     * Строки, созданные до появления столбца, получают -1 и заполняются при запуске
+     * ({@link ru.java.mentor.oldranger.club.service.forum.impl.TopicVisitPositionBackfill}).
+     */
+    @Column(name = "last_seen_position", nullable = false, columnDefinition = "BIGINT DEFAULT -1")
+    private long lastSeenPosition;
+
     @Transient
     private boolean hasNewMessages;
 
@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
 @Data
 @Entity
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
-@Table(name = "photos")
+@Table(name = "photos", indexes = {@Index(name = "idx_photos_comment_id", columnList = "comment_id")})
 public class Photo {
     @Id
     @Column(name = "id")
@@ -42,6 +42,12 @@ public class Photo {
     @Column(name = "comment_count")
     private Long commentCount;
 
+    /**
+     * Комментарий в Topic, к которому прикреплена фотография (null для остальных фотографий).
+     */
+    @Column(name = "comment_id")
+    private Long commentId;
+
     public Photo(String original, String small) {
         this.original = original;
         this.small = small;
@@ -19,13 +19,17 @@ public class UserStatistic {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "message_count")
+    /**
+     * Счётчики меняет только UserStatisticCounterService атомарным update,
+     * сохранение прочитанной ранее статистики не должно их перезаписать.
+     */
+    @Column(name = "message_count", updatable = false)
     private long messageCount;
 
-    @Column(name = "topics_count")
+    @Column(name = "topics_count", updatable = false)
     private long topicStartCount;
 
-    @Column(name = "last_comment")
+    @Column(name = "last_comment", updatable = false)
     private LocalDateTime lastComment;
 
     @Column(name = "last_vizit")
@@ -0,0 +1,43 @@
+package ru.java.mentor.oldranger.club.model.utils;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.java.mentor.oldranger.club.event.EntityType;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Сообщение об удалении записей кэшей для остальных экземпляров приложения.
+ * Записи пишет и читает {@link ru.java.mentor.oldranger.club.service.cach.impl.DbCacheInvalidationTransport}.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "cache_invalidation", indexes = {@Index(name = "idx_cache_invalidation_created_at", columnList = "created_at")})
+public class CacheInvalidation {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(name = "cache_name")
+    private String cacheName;
+
+    @Column(name = "cache_key")
+    private String cacheKey;
+
+    @Column(name = "entity_type")
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
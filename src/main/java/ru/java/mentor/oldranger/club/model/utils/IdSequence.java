@@ -0,0 +1,24 @@
+package ru.java.mentor.oldranger.club.model.utils;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Следующий свободный id для сущностей, id которых выдаются в памяти блоками.
+ * Блоки выдаёт {@link ru.java.mentor.oldranger.club.service.chat.impl.MessageIdAllocator}.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "id_sequences")
+public class IdSequence {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+}
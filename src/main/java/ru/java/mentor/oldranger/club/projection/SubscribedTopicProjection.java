@@ -0,0 +1,14 @@
+package ru.java.mentor.oldranger.club.projection;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+public interface SubscribedTopicProjection {
+    Long getTopicId();
+    String getName();
+    LocalDateTime getLastMessageTime();
+    Boolean getHasNew();
+    @JsonIgnore
+    Long getMessageCount();
+}
@@ -0,0 +1,12 @@
+package ru.java.mentor.oldranger.club.projection;
+
+import java.time.LocalDateTime;
+
+public interface UserBanProjection {
+    Long getUserId();
+
+    /**
+     * null - бессрочная блокировка
+     */
+    LocalDateTime getUnlockTime();
+}
@@ -0,0 +1,7 @@
+package ru.java.mentor.oldranger.club.projection;
+
+import ru.java.mentor.oldranger.club.model.utils.BanType;
+
+public interface WritingBanProjection extends UserBanProjection {
+    BanType getBanType();
+}
@@ -1,6 +1,7 @@
 package ru.java.mentor.oldranger.club.restcontroller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,11 +11,19 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.java.mentor.oldranger.club.dto.CacheStatsDto;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.service.cach.CacheService;
+import ru.java.mentor.oldranger.club.service.forum.TopicsDigestService;
 import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
+
+import java.util.List;
+
 @AllArgsConstructor
 @RestController
 @RequestMapping("api/cache")
@@ -22,6 +31,7 @@ import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
 public class CacheRestController {
     private CacheService cacheService;
     private SecurityUtilsService securityUtilsService;
+    private TopicsDigestService topicsDigestService;
 
 
     @Operation(security = @SecurityRequirement(name = "security"),
@@ -41,4 +51,61 @@ public class CacheRestController {
         }
         return ResponseEntity.ok().build();
     }
+
+    @Operation(security = @SecurityRequirement(name = "security"),
+            summary = "Get caches stats", description = "Статистика кешей: размер, попадания, загрузки, вытеснения", tags = { "Clear cache" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = CacheStatsDto.class)))),
+            @ApiResponse(responseCode = "204", description = "User is not admin")})
+    @GetMapping(produces = {"application/json"})
+    public ResponseEntity<List<CacheStatsDto>> getCachesStats() {
+        if (!securityUtilsService.isAdmin()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(cacheService.getCachesStats());
+    }
+
+    @Operation(security = @SecurityRequirement(name = "security"),
+            summary = "Clear cache by name", description = "Отчистка одного кеша", tags = { "Clear cache" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cache cleared"),
+            @ApiResponse(responseCode = "204", description = "User is not admin"),
+            @ApiResponse(responseCode = "404", description = "Cache not found")})
+    @DeleteMapping("/{name}")
+    public ResponseEntity<String> clearCache(@PathVariable String name) {
+        if (!securityUtilsService.isAdmin()) {
+            return ResponseEntity.noContent().build();
+        }
+        return cacheService.clearCache(name) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @Operation(security = @SecurityRequirement(name = "security"),
+            summary = "Evict key from cache", description = "Удаление записи из кеша по ключу", tags = { "Clear cache" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Key evicted"),
+            @ApiResponse(responseCode = "204", description = "User is not admin"),
+            @ApiResponse(responseCode = "404", description = "Cache or key not found")})
+    @DeleteMapping("/{name}/{key}")
+    public ResponseEntity<String> evictKey(@PathVariable String name, @PathVariable String key) {
+        if (!securityUtilsService.isAdmin()) {
+            return ResponseEntity.noContent().build();
+        }
+        return cacheService.evictKey(name, key) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @Operation(security = @SecurityRequirement(name = "security"),
+            summary = "Rebuild topics digest", description = "Перезагрузка выборки актуальных топиков главной страницы", tags = { "Clear cache" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(schema = @Schema(implementation = String.class))),
+            @ApiResponse(responseCode = "204", description = "User is not admin")})
+    @PostMapping("/topics-digest")
+    public ResponseEntity<String> rebuildTopicsDigest() {
+        if (!securityUtilsService.isAdmin()) {
+            return ResponseEntity.noContent().build();
+        }
+        topicsDigestService.rebuild();
+        return ResponseEntity.ok().build();
+    }
 }
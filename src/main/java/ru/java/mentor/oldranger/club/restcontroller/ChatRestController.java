@@ -11,10 +11,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +22,7 @@ import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BanType;
+import ru.java.mentor.oldranger.club.service.chat.ChatPresenceService;
 import ru.java.mentor.oldranger.club.service.chat.ChatService;
 import ru.java.mentor.oldranger.club.service.chat.MessageService;
 import ru.java.mentor.oldranger.club.service.media.PhotoAlbumService;
@@ -48,6 +46,7 @@ public class ChatRestController {
     private MessageService messageService;
     private SecurityUtilsService securityUtilsService;
     private WritingBanService writingBanService;
+    private ChatPresenceService chatPresenceService;
 
     @Operation(security = @SecurityRequirement(name = "security"),
             summary = "Get current user info", description = "Avatar and username", tags = {"Chat"})
@@ -72,7 +71,7 @@ public class ChatRestController {
                     content = @Content(schema = @Schema(implementation = Map.class)))})
     @GetMapping(value = "/users", produces = {"application/json"})
     ResponseEntity<Map<String, Long>> getOnlineUsers() {
-        return ResponseEntity.ok(messageService.getOnlineUsers());
+        return ResponseEntity.ok(chatPresenceService.getGroupChatUsers());
     }
 
     @Operation(security = @SecurityRequirement(name = "security"),
@@ -86,25 +85,35 @@ public class ChatRestController {
         return ResponseEntity.ok(isForbidden);
     }
 
-    @Operation(summary = "Get last messages", description = "limit 20 messages", tags = {"Group chat"})
+    @Operation(summary = "Get last messages",
+            description = "limit 20 messages: newest first before the given id, or oldest first after the given id. "
+                    + "After reconnecting request since the newest received id: the first page also contains messages "
+                    + "with lower ids sent shortly before it, so already received messages must be skipped",
+            tags = {"Group chat"})
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = Message.class)))),
-            @ApiResponse(responseCode = "204", description = "Page parameter is greater than the total number of pages")})
+            @ApiResponse(responseCode = "204", description = "There are no more messages")})
     @GetMapping(value = "/messages", produces = {"application/json"})
-    ResponseEntity<List<Message>> getLastMessages(@RequestParam(value = "page", required = false) Integer page) {
-
-        if (page == null) page = 0;
-        Pageable pageable = PageRequest.of(page, 20, Sort.by("id").descending());
-
+    ResponseEntity<List<Message>> getLastMessages(@Parameter(description = "Id of the oldest message already loaded")
+                                                  @RequestParam(value = "before", required = false) Long before,
+                                                  @Parameter(description = "Id of the newest message already loaded")
+                                                  @RequestParam(value = "after", required = false) Long after,
+                                                  @Parameter(description = "Id of the newest message received before reconnecting")
+                                                  @RequestParam(value = "since", required = false) Long since) {
         Chat chat = chatService.getChatById(1L);
-
-        Page<Message> msgPage = messageService.getPagebleMessages(chat, pageable);
-        if (msgPage.getTotalPages() > page) {
-            return ResponseEntity.ok(msgPage.getContent());
+        Slice<Message> slice;
+        if (since != null) {
+            slice = messageService.getMissedMessages(chat, since, 20);
+        } else if (after != null) {
+            slice = messageService.getMessagesAfter(chat, after, 20);
         } else {
+            slice = messageService.getMessagesBefore(chat, before, 20);
+        }
+        if (slice == null || !slice.hasContent()) {
             return ResponseEntity.noContent().build();
         }
+        return ResponseEntity.ok(slice.getContent());
     }
 
     @Operation(security = @SecurityRequirement(name = "security"),
@@ -22,6 +22,7 @@ import ru.java.mentor.oldranger.club.dto.TopicAndCommentsDTO;
 import ru.java.mentor.oldranger.club.model.comment.Comment;
 import ru.java.mentor.oldranger.club.model.forum.ImageComment;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.service.forum.CommentService;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
@@ -141,13 +142,11 @@ public class CommentAndTopicRestController {
         commentService.createComment(comment);
 
         if (image1 != null) {
-            photoService.save(photoAlbumService.findPhotoAlbumByTitle("PhotoAlbum by " + topic.getName()), image1
-                    , comment.getId().toString());
+            photoService.saveCommentPhoto(getTopicPhotoAlbum(topic), image1, comment.getId());
         }
 
         if (image2 != null) {
-            photoService.save(photoAlbumService.findPhotoAlbumByTitle("PhotoAlbum by " + topic.getName()), image2
-                    , comment.getId().toString());
+            photoService.saveCommentPhoto(getTopicPhotoAlbum(topic), image2, comment.getId());
         }
         CommentDto commentDto = commentService.assembleCommentDto(comment, user);
         return ResponseEntity.ok(commentDto);
@@ -168,9 +167,6 @@ public class CommentAndTopicRestController {
         if (comment.getId() == null || !currentUser.getId().equals(user.getId()) && !admin && !moderator) {
             return ResponseEntity.notFound().build();
         }
-        comment.getTopic().setMessageCount(comment.getTopic().getMessageCount() - 1 );
-        topicService.editTopicByName(comment.getTopic());
-        commentService.updatePostion(comment.getTopic().getId(), comment.getPosition());
         commentService.deleteComment(id);
         return ResponseEntity.ok().build();
     }
@@ -214,15 +210,20 @@ public class CommentAndTopicRestController {
         commentService.updateComment(comment);
 
         if (image1 != null) {
-            photoService.save(photoAlbumService.findPhotoAlbumByTitle("PhotoAlbum by " + topic.getName()), image1
-                    , comment.getId().toString());
+            photoService.saveCommentPhoto(getTopicPhotoAlbum(topic), image1, comment.getId());
         }
 
         if (image2 != null) {
-            photoService.save(photoAlbumService.findPhotoAlbumByTitle("PhotoAlbum by " + topic.getName()), image1
-                    , comment.getId().toString());
+            photoService.saveCommentPhoto(getTopicPhotoAlbum(topic), image2, comment.getId());
         }
         CommentDto commentDto = commentService.assembleCommentDto(comment, user);
         return ResponseEntity.ok(commentDto);
     }
+
+    private PhotoAlbum getTopicPhotoAlbum(Topic topic) {
+        if (topic.getPhotoAlbum() != null) {
+            return topic.getPhotoAlbum();
+        }
+        return photoAlbumService.findPhotoAlbumByTitle("PhotoAlbum by " + topic.getName());
+    }
 }
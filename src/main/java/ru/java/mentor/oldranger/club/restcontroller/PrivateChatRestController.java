@@ -10,10 +10,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
@@ -23,6 +20,7 @@ import ru.java.mentor.oldranger.club.model.chat.Message;
 import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
 import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.chat.ChatPresenceService;
 import ru.java.mentor.oldranger.club.service.chat.ChatService;
 import ru.java.mentor.oldranger.club.service.chat.MessageService;
 import ru.java.mentor.oldranger.club.service.media.PhotoAlbumService;
@@ -48,6 +46,7 @@ public class PrivateChatRestController {
     private SecurityUtilsService securityUtilsService;
     private PhotoAlbumService albumService;
     private PhotoService photoService;
+    private ChatPresenceService chatPresenceService;
 
     @Operation(security = @SecurityRequirement(name = "security"),
             summary = "Get chat token", description = "Get chat token by user id", tags = {"Private Chat"})
@@ -78,24 +77,39 @@ public class PrivateChatRestController {
     }
 
 
-    @Operation(summary = "Get last messages", description = "limit 20 messages", tags = {"Private chat"})
+    @Operation(summary = "Get last messages",
+            description = "limit 20 messages: newest first before the given id, or oldest first after the given id. "
+                    + "After reconnecting request since the newest received id: the first page also contains messages "
+                    + "with lower ids sent shortly before it, so already received messages must be skipped",
+            tags = {"Private chat"})
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = Message.class)))),
-            @ApiResponse(responseCode = "204", description = "Page parameter is greater than the total number of pages")})
+            @ApiResponse(responseCode = "204", description = "There are no more messages or wrong chat token")})
     @GetMapping(value = "/messages/{chatToken}")
-    ResponseEntity<List<Message>> getLastMessages(@RequestParam(value = "page", required = false) Integer page,
+    ResponseEntity<List<Message>> getLastMessages(@Parameter(description = "Id of the oldest message already loaded")
+                                                  @RequestParam(value = "before", required = false) Long before,
+                                                  @Parameter(description = "Id of the newest message already loaded")
+                                                  @RequestParam(value = "after", required = false) Long after,
+                                                  @Parameter(description = "Id of the newest message received before reconnecting")
+                                                  @RequestParam(value = "since", required = false) Long since,
                                                   @PathVariable String chatToken) {
-
-        if (page == null) page = 0;
-        Pageable pageable = PageRequest.of(page, 20, Sort.by("id").descending());
         Chat chat = chatService.getChatByToken(chatToken);
-        Page<Message> msgPage = messageService.getPagebleMessages(chat, pageable);
-        if (msgPage.getTotalPages() > page) {
-            return ResponseEntity.ok(msgPage.getContent());
+        if (chat == null) {
+            return ResponseEntity.noContent().build();
+        }
+        Slice<Message> slice;
+        if (since != null) {
+            slice = messageService.getMissedMessages(chat, since, 20);
+        } else if (after != null) {
+            slice = messageService.getMessagesAfter(chat, after, 20);
         } else {
+            slice = messageService.getMessagesBefore(chat, before, 20);
+        }
+        if (slice == null || !slice.hasContent()) {
             return ResponseEntity.noContent().build();
         }
+        return ResponseEntity.ok(slice.getContent());
     }
 
     @Operation(security = @SecurityRequirement(name = "security"),
@@ -136,15 +150,13 @@ public class PrivateChatRestController {
     }
 
     @Operation(security = @SecurityRequirement(name = "security"),
-            summary = "Check User", description = "Check in session registry if user is logged in", tags = {"Private Chat"})
+            summary = "Check User", description = "Check if user has an open chat connection", tags = {"Private Chat"})
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     content = @Content(schema = @Schema(implementation = Boolean.class)))})
     @GetMapping(value = "/online/{id}")
     ResponseEntity<Boolean> isUserLoggedIn(@PathVariable Long id) {
-        List<Long> loggedUsers = securityUtilsService.getUsersFromSessionRegistry();
-        boolean isLogged = loggedUsers.contains(id);
-        return ResponseEntity.ok(isLogged);
+        return ResponseEntity.ok(chatPresenceService.isOnline(id));
     }
 
     @Operation(security = @SecurityRequirement(name = "security"),
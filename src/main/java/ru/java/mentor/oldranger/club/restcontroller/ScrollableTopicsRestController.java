@@ -16,6 +16,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
 import ru.java.mentor.oldranger.club.dto.TopicAndNewMessagesCountDto;
 import ru.java.mentor.oldranger.club.model.forum.Subsection;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
@@ -79,4 +80,36 @@ public class ScrollableTopicsRestController {
 
         return ResponseEntity.ok(dtos);
     }
+
+    @Operation(security = @SecurityRequirement(name = "security"),
+               summary = "Get TopicAndNewMessagesCountDto slice by cursor", tags = { "Scrollable topics" })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Slice of TopicAndNewMessagesCountDto and cursor for the next slice (null if there are no more topics)",
+                    content = @Content(schema = @Schema(implementation = CursorSliceDto.class))),
+            @ApiResponse(responseCode = "204", description = "invalid subsection id"),
+            @ApiResponse(responseCode = "400", description = "invalid cursor") })
+    @GetMapping(value = "/subsection/{subsectionId}/cursor", produces = { "application/json" })
+    public ResponseEntity<CursorSliceDto<TopicAndNewMessagesCountDto>> getSlice(@PathVariable long subsectionId,
+                                                                                @Parameter(description="nextCursor from the previous response;" +
+                                                                                        " not required for the first slice")
+                                                                                @RequestParam(value = "cursor", required = false) String cursor) {
+
+        Optional<Subsection> optionalSubsection = subsectionService.getById(subsectionId);
+
+        if (!optionalSubsection.isPresent()) {
+            return ResponseEntity.noContent().build();
+        }
+
+        CursorSliceDto<Topic> slice;
+        try {
+            slice = topicService.getSliceBySubsection(optionalSubsection.get(), cursor, 20);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<TopicAndNewMessagesCountDto> dtos = slice.getContent().isEmpty()
+                ? new ArrayList<>() : topicService.getTopicsDto(slice.getContent());
+
+        return ResponseEntity.ok(new CursorSliceDto<>(dtos, slice.getNextCursor()));
+    }
 }
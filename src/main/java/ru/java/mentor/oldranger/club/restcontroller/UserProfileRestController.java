@@ -24,6 +24,7 @@ import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserProfile;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
+import ru.java.mentor.oldranger.club.projection.SubscribedTopicProjection;
 import ru.java.mentor.oldranger.club.service.forum.CommentService;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
 import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
@@ -168,6 +169,30 @@ public class UserProfileRestController {
         return ResponseEntity.ok(topics);
     }
 
+    @Operation(security = @SecurityRequirement(name = "security"),
+            summary = "Get subscriptions slice for current user by cursor", tags = {"User profile"})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Slice of subscriptions and cursor for the next slice (null if there are no more subscriptions)",
+                    content = @Content(schema = @Schema(implementation = CursorSliceDto.class))),
+            @ApiResponse(responseCode = "204", description = "User is not logged in"),
+            @ApiResponse(responseCode = "400", description = "invalid cursor")})
+    @GetMapping(value = "/subscriptions", params = "cursor", produces = {"application/json"})
+    public ResponseEntity<CursorSliceDto<SubscribedTopicProjection>> getSubscriptionsSlice(
+            @Parameter(description = "nextCursor from the previous response; empty for the first slice")
+            @RequestParam(value = "cursor") String cursor) {
+        User currentUser = securityUtilsService.getLoggedUser();
+        if (currentUser == null) {
+            return ResponseEntity.noContent().build();
+        }
+        CursorSliceDto<SubscribedTopicProjection> slice;
+        try {
+            slice = topicVisitAndSubscriptionService.getSubscribedTopicsSliceForUser(currentUser, cursor, 10);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(slice);
+    }
+
     @Operation(security = @SecurityRequirement(name = "security"),
             summary = "Add topic to subscriptions", tags = {"User profile"})
     @ApiResponses(value = {
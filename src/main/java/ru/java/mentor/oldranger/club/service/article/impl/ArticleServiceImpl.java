@@ -3,9 +3,8 @@ package ru.java.mentor.oldranger.club.service.article.impl;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -13,12 +12,14 @@ import org.springframework.stereotype.Service;
 import ru.java.mentor.oldranger.club.dao.ArticleRepository.ArticleCommentRepository;
 import ru.java.mentor.oldranger.club.dao.ArticleRepository.ArticleRepository;
 import ru.java.mentor.oldranger.club.dto.ArticleCommentDto;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
 import ru.java.mentor.oldranger.club.model.article.Article;
 import ru.java.mentor.oldranger.club.model.article.ArticleTag;
 import ru.java.mentor.oldranger.club.model.comment.ArticleComment;
 import ru.java.mentor.oldranger.club.model.user.User;
-import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 import ru.java.mentor.oldranger.club.service.article.ArticleService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
 
 import javax.transaction.Transactional;
@@ -36,6 +37,8 @@ public class ArticleServiceImpl implements ArticleService {
     private ArticleRepository articleRepository;
     private ArticleCommentRepository articleCommentRepository;
     private UserStatisticService userStatisticService;
+    private UserStatisticCounterService userStatisticCounterService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     @Cacheable(cacheNames = {"allArticle"}, keyGenerator = "customKeyGenerator")
@@ -66,9 +69,9 @@ public class ArticleServiceImpl implements ArticleService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "article", allEntries = true), @CacheEvict(value = "alllArticle", allEntries = true)})
     public void addArticle(Article article) {
         articleRepository.save(article);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.ARTICLE, article.getId()));
     }
 
     @Override
@@ -78,11 +81,7 @@ public class ArticleServiceImpl implements ArticleService {
         articleComment.setPosition(++comments);
         article.setCommentCount(comments);
         articleCommentRepository.save(articleComment);
-        UserStatistic userStatistic = userStatisticService.getUserStaticByUser(articleComment.getUser());
-        comments = userStatistic.getMessageCount();
-        userStatistic.setMessageCount(++comments);
-        userStatistic.setLastComment(articleComment.getDateTime());
-        userStatisticService.saveUserStatic(userStatistic);
+        userStatisticCounterService.messagePosted(articleComment.getUser().getId(), articleComment.getDateTime());
     }
 
     @Override
@@ -149,16 +148,16 @@ public class ArticleServiceImpl implements ArticleService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "article", allEntries = true), @CacheEvict(value = "allArticle", allEntries = true)})
     public void deleteArticle(Long id) {
         articleRepository.deleteById(id);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.ARTICLE, id));
     }
 
     @Override
     @Transactional
-    @Caching(evict = {@CacheEvict(value = "article", allEntries = true), @CacheEvict(value = "allArticle", allEntries = true)})
     public void deleteArticles(List<Long> ids) {
         articleRepository.deleteAllByIdIn(ids);
+        ids.forEach(id -> eventPublisher.publishEvent(new EntityChangedEvent(EntityType.ARTICLE, id)));
     }
 
 }
@@ -0,0 +1,147 @@
+package ru.java.mentor.oldranger.club.service.cach;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.stereotype.Component;
+import ru.java.mentor.oldranger.club.event.EntityType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Индекс "сущность - ключи кэшей, зависящие от неё".<br>
+ * Запись регистрируется при сохранении значения в кэш и снимается, когда Caffeine её удаляет.
+ * Регистрация хранит само значение: если ключ уже перезаписан новым значением, удаление старого
+ * не снимает регистрацию нового.<br>
+ * Запись в кэш выполняется под той же блокировкой, что и регистрация, поэтому между ними
+ * не может вклиниться ни снятие зависимостей, ни запоздавшее уведомление об удалении.
+ */
+@Component
+public class CacheDependencyIndex {
+
+    private final Map<EntityRef, Set<CacheKeyRef>> dependents = new HashMap<>();
+    private final Map<CacheKeyRef, Registration> registrations = new HashMap<>();
+
+    /**
+     * Записывает значение в кэш и регистрирует его зависимости.
+     *
+     * @param store запись в кэш, возвращает false, если значение не было записано
+     */
+    public synchronized boolean register(String cacheName, Object key, Object storedValue, Collection<EntityRef> entities,
+                                         BooleanSupplier store) {
+        if (!store.getAsBoolean()) {
+            return false;
+        }
+        CacheKeyRef keyRef = new CacheKeyRef(cacheName, key);
+        unlink(keyRef, registrations.put(keyRef, new Registration(storedValue, entities)));
+        for (EntityRef entity : entities) {
+            dependents.computeIfAbsent(entity, e -> new HashSet<>()).add(keyRef);
+        }
+        return true;
+    }
+
+    /**
+     * Снимает регистрацию удалённого из кэша значения. Уведомления об удалении приходят асинхронно,
+     * и к этому времени ключ мог быть снова записан тем же значением (например, закэшированным null),
+     * поэтому регистрация снимается, только если значения в кэше уже нет.
+     *
+     * @param stillCached есть ли значение в кэше сейчас
+     */
+    public synchronized void unregister(String cacheName, Object key, Object storedValue, BooleanSupplier stillCached) {
+        CacheKeyRef keyRef = new CacheKeyRef(cacheName, key);
+        Registration registration = registrations.get(keyRef);
+        if (registration != null && registration.storedValue == storedValue && !stillCached.getAsBoolean()) {
+            registrations.remove(keyRef);
+            unlink(keyRef, registration);
+        }
+    }
+
+    /**
+     * Снимает регистрации всех записей, зависящих от изменившейся сущности.
+     *
+     * @return ключи, которые нужно удалить из кэшей
+     */
+    public synchronized Set<CacheKeyRef> removeDependents(EntityType type, Long id) {
+        Set<CacheKeyRef> keys = new HashSet<>(dependents.getOrDefault(EntityRef.anyOf(type), Collections.emptySet()));
+        if (id != null) {
+            keys.addAll(dependents.getOrDefault(EntityRef.of(type, id), Collections.emptySet()));
+        }
+        for (CacheKeyRef keyRef : keys) {
+            unlink(keyRef, registrations.remove(keyRef));
+        }
+        return keys;
+    }
+
+    public synchronized int size() {
+        return registrations.size();
+    }
+
+    private void unlink(CacheKeyRef keyRef, Registration registration) {
+        if (registration == null) {
+            return;
+        }
+        for (EntityRef entity : registration.entities) {
+            Set<CacheKeyRef> keys = dependents.get(entity);
+            if (keys != null) {
+                keys.remove(keyRef);
+                if (keys.isEmpty()) {
+                    dependents.remove(entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Одна сущность, либо, при id = null, любая сущность типа: от неё зависят списки
+     * и закэшированные "не найдено".
+     */
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static final class EntityRef {
+        private final EntityType type;
+        private final Long id;
+
+        private EntityRef(EntityType type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        public static EntityRef of(EntityType type, Long id) {
+            return new EntityRef(type, id);
+        }
+
+        public static EntityRef anyOf(EntityType type) {
+            return new EntityRef(type, null);
+        }
+    }
+
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static final class CacheKeyRef {
+        private final String cacheName;
+        private final Object key;
+
+        private CacheKeyRef(String cacheName, Object key) {
+            this.cacheName = cacheName;
+            this.key = key;
+        }
+    }
+
+    private static final class Registration {
+        private final Object storedValue;
+        private final Collection<EntityRef> entities;
+
+        private Registration(Object storedValue, Collection<EntityRef> entities) {
+            this.storedValue = storedValue;
+            this.entities = entities;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.java.mentor.oldranger.club.service.cach;
+
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+
+/**
+ * Доставка удалений из кэшей остальным экземплярам приложения.<br>
+ * Реализация выбирается свойством {@code cache.invalidation.transport}. Сообщения других
+ * экземпляров реализация публикует как события приложения {@link CacheInvalidationMessage}.
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Отправляет сообщение остальным экземплярам. Не блокирует и не участвует в текущей транзакции.
+     */
+    void publish(CacheInvalidationMessage message);
+}
@@ -1,7 +1,39 @@
 package ru.java.mentor.oldranger.club.service.cach;
 
+import ru.java.mentor.oldranger.club.dto.CacheStatsDto;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+
+import java.util.List;
+
 public interface CacheService {
     void clearAllCaches();
 
+    /**
+     * Удаляет из кэшей записи, зависящие от изменившейся сущности.
+     */
+    void onEntityChanged(EntityChangedEvent event);
+
+    /**
+     * Повторяет на этом экземпляре удаление из кэшей, сделанное на другом экземпляре приложения.
+     */
+    void onRemoteInvalidation(CacheInvalidationMessage message);
+
+    List<CacheStatsDto> getCachesStats();
+
+    /**
+     * @return false, если кэша с таким именем нет
+     */
+    boolean clearCache(String name);
 
+    /**
+     * Удаляет запись по ключу. Ключ из запроса всегда строка, поэтому для числового ключа
+     * удаляется и запись с ключом Long (id сущностей). Записи кэшей с составными ключами
+     * ({@code allTopic}, {@code allArticle}, {@code allTagNodeHierarchy}) ищутся по строковому виду ключа,
+     * например {@code TopicServiceImpl.findAll[MEMBER][]}; на остальных экземплярах такой кэш
+     * очищается целиком.
+     *
+     * @return false, если кэша с таким именем нет или записи с таким ключом в нём не было
+     */
+    boolean evictKey(String name, String key);
 }
@@ -1,16 +1,37 @@
 package ru.java.mentor.oldranger.club.service.cach.impl;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.java.mentor.oldranger.club.config.CacheKey;
+import ru.java.mentor.oldranger.club.config.ReplicatedCaffeineCache;
+import ru.java.mentor.oldranger.club.dto.CacheStatsDto;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex.CacheKeyRef;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
 import ru.java.mentor.oldranger.club.service.cach.CacheService;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @Service
 public class CacheServiceImpl implements CacheService {
     @Autowired
     CacheManager cacheManager;
+    @Autowired
+    CacheDependencyIndex cacheDependencyIndex;
+    @Autowired
+    CacheInvalidationTransport cacheInvalidationTransport;
 
     @Override
     public void clearAllCaches() {
@@ -21,4 +42,106 @@ public class CacheServiceImpl implements CacheService {
         log.debug("Cache clear");
     }
 
+    /**
+     * После коммита транзакции, иначе параллельный запрос успел бы снова закэшировать старое значение.
+     */
+    @Override
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        log.debug("Evicting cache entries dependent on {}", event);
+        evictDependentLocally(event.getType(), event.getId());
+        // остальные экземпляры удалят записи по своему индексу зависимостей
+        cacheInvalidationTransport.publish(CacheInvalidationMessage.forEntity(event.getType(), event.getId()));
+    }
+
+    @Override
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidationMessage message) {
+        log.debug("Applying cache invalidation from another node {}", message);
+        if (message.isEntityChange()) {
+            evictDependentLocally(message.getEntityType(), message.getEntityId());
+            return;
+        }
+        Cache cache = cacheManager.getCache(message.getCacheName());
+        if (!(cache instanceof ReplicatedCaffeineCache)) {
+            return;
+        }
+        ReplicatedCaffeineCache replicatedCache = (ReplicatedCaffeineCache) cache;
+        if (message.getCacheKey() == null) {
+            replicatedCache.clearLocally();
+            return;
+        }
+        replicatedCache.evictLocally(message.getCacheKey());
+        try {
+            replicatedCache.evictLocally(Long.valueOf(message.getCacheKey()));
+        } catch (NumberFormatException e) {
+            // ключ не числовой
+        }
+    }
+
+    private void evictDependentLocally(EntityType type, Long id) {
+        for (CacheKeyRef keyRef : cacheDependencyIndex.removeDependents(type, id)) {
+            Cache cache = cacheManager.getCache(keyRef.getCacheName());
+            if (cache instanceof ReplicatedCaffeineCache) {
+                ((ReplicatedCaffeineCache) cache).evictLocally(keyRef.getKey());
+            } else if (cache != null) {
+                cache.evict(keyRef.getKey());
+            }
+        }
+    }
+
+    @Override
+    public List<CacheStatsDto> getCachesStats() {
+        log.debug("Getting caches stats");
+        List<CacheStatsDto> stats = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+                CacheStats cacheStats = nativeCache.stats();
+                stats.add(new CacheStatsDto(name, nativeCache.estimatedSize(), cacheStats.hitCount(), cacheStats.missCount(),
+                        cacheStats.hitRate(), cacheStats.loadCount(), cacheStats.totalLoadTime(),
+                        cacheStats.averageLoadPenalty(), cacheStats.evictionCount()));
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public boolean clearCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            return false;
+        }
+        cache.clear();
+        log.debug("Cache {} cleared", name);
+        return true;
+    }
+
+    @Override
+    public boolean evictKey(String name, String key) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            return false;
+        }
+        boolean evicted = cache.evictIfPresent(key);
+        try {
+            evicted |= cache.evictIfPresent(Long.valueOf(key));
+        } catch (NumberFormatException e) {
+            // ключ не числовой
+        }
+        if (!evicted && cache instanceof CaffeineCache) {
+            List<Object> compositeKeys = new ArrayList<>();
+            for (Object nativeKey : ((CaffeineCache) cache).getNativeCache().asMap().keySet()) {
+                if (nativeKey instanceof CacheKey && nativeKey.toString().equals(key)) {
+                    compositeKeys.add(nativeKey);
+                }
+            }
+            for (Object compositeKey : compositeKeys) {
+                evicted |= cache.evictIfPresent(compositeKey);
+            }
+        }
+        log.debug("Key {} {} from cache {}", key, evicted ? "evicted" : "not found", name);
+        return evicted;
+    }
 }
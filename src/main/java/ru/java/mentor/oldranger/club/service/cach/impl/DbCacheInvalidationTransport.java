@@ -0,0 +1,164 @@
+package ru.java.mentor.oldranger.club.service.cach.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Обмен удалениями из кэшей через таблицу cache_invalidation.<br>
+ * Сообщения копятся в памяти и пишутся при каждом опросе таблицы, поэтому отправка не участвует
+ * в транзакции вызывающего кода. Удаление на другом экземпляре происходит не позже чем через два
+ * интервала {@code cache.invalidation.poll-delay-ms}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "db")
+public class DbCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    static final int POLL_BATCH_SIZE = 500;
+
+    /**
+     * Строки другого экземпляра могут стать видны не в порядке id, поэтому последние ID_GAP_WINDOW id
+     * перечитываются, а уже применённые пропускаются. Повторное удаление из кэша безвредно.
+     */
+    static final int ID_GAP_WINDOW = 1000;
+
+    static final String INSERT_SQL = "insert into cache_invalidation " +
+            "(node_id, cache_name, cache_key, entity_type, entity_id, created_at) values (?, ?, ?, ?, ?, ?)";
+
+    static final String SELECT_SQL = "select id, cache_name, cache_key, entity_type, entity_id " +
+            "from cache_invalidation where id > ? and node_id <> ? order by id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int retentionMinutes;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Queue<CacheInvalidationMessage> outgoing = new ConcurrentLinkedQueue<>();
+    private final TreeSet<Long> appliedIds = new TreeSet<>();
+    private long lastSeenId;
+
+    public DbCacheInvalidationTransport(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                                        @Value("${cache.invalidation.retention-minutes:60}") int retentionMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.retentionMinutes = retentionMinutes;
+    }
+
+    /**
+     * При старте кэши пусты, прошлые сообщения применять не нужно.
+     */
+    @PostConstruct
+    public void init() {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from cache_invalidation", Long.class);
+        lastSeenId = maxId == null ? 0 : maxId;
+        log.info("Cache invalidation node {} starts after message {}", nodeId, lastSeenId);
+    }
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        outgoing.add(message);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.poll-delay-ms:1000}")
+    public synchronized void poll() {
+        sendOutgoing();
+        receiveIncoming();
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.cleanup-delay-ms:600000}")
+    public void deleteExpired() {
+        try {
+            int deleted = jdbcTemplate.update("delete from cache_invalidation where created_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minusMinutes(retentionMinutes)));
+            log.debug("Deleted {} expired cache invalidation messages", deleted);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void sendOnShutdown() {
+        sendOutgoing();
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    private void sendOutgoing() {
+        if (outgoing.isEmpty()) {
+            return;
+        }
+        // одинаковые сообщения за один интервал отправляются один раз
+        Set<CacheInvalidationMessage> messages = new LinkedHashSet<>();
+        CacheInvalidationMessage message;
+        while ((message = outgoing.poll()) != null) {
+            messages.add(message);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(messages.size());
+        for (CacheInvalidationMessage m : messages) {
+            args.add(new Object[]{nodeId, m.getCacheName(), m.getCacheKey(),
+                    m.getEntityType() == null ? null : m.getEntityType().name(), m.getEntityId(), now});
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+            log.debug("Sent {} cache invalidation messages", args.size());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            outgoing.addAll(messages);
+        }
+    }
+
+    private void receiveIncoming() {
+        try {
+            long fromId = Math.max(0, lastSeenId - ID_GAP_WINDOW);
+            List<Long> ids = new ArrayList<>();
+            List<CacheInvalidationMessage> messages = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+                ids.add(rs.getLong("id"));
+                String entityType = rs.getString("entity_type");
+                long entityId = rs.getLong("entity_id");
+                // wasNull относится к последнему прочитанному столбцу, поэтому проверяется сразу после getLong
+                Long nullableEntityId = rs.wasNull() ? null : entityId;
+                return new CacheInvalidationMessage(rs.getString("cache_name"), rs.getString("cache_key"),
+                        entityType == null ? null : EntityType.valueOf(entityType), nullableEntityId);
+            }, fromId, nodeId, ID_GAP_WINDOW + POLL_BATCH_SIZE);
+            int received = 0;
+            for (int i = 0; i < messages.size(); i++) {
+                Long id = ids.get(i);
+                if (appliedIds.add(id)) {
+                    eventPublisher.publishEvent(messages.get(i));
+                    received++;
+                }
+                lastSeenId = Math.max(lastSeenId, id);
+            }
+            appliedIds.headSet(lastSeenId - ID_GAP_WINDOW, true).clear();
+            if (received > 0) {
+                log.debug("Received {} cache invalidation messages", received);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+}
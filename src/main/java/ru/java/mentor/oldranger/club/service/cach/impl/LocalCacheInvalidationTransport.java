@@ -0,0 +1,18 @@
+package ru.java.mentor.oldranger.club.service.cach.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+
+/**
+ * Один экземпляр приложения: других кэшей нет, сообщения никуда не отправляются.
+ */
+@Service
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "local", matchIfMissing = true)
+public class LocalCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+    }
+}
@@ -0,0 +1,27 @@
+package ru.java.mentor.oldranger.club.service.chat;
+
+import ru.java.mentor.oldranger.club.model.chat.Message;
+
+/**
+ * Приём сообщений чата. Сообщение сразу получает id и время и может быть разослано,
+ * а в messages оно сохраняется фоновым потоком пачками.
+ */
+public interface ChatMessageIngestService {
+
+    /**
+     * Присваивает сообщению id и время, добавляет его в хвост чата ({@link ChatTailCacheService}) и ставит в очередь на сохранение.
+     * Если очередь заполнена, ждёт освобождения места, а по истечении ожидания сохраняет сообщение сам.
+     *
+     * @return то же сообщение
+     */
+    Message submit(Message message, Long chatId);
+
+    /**
+     * Сохраняет всё, что есть в очереди, в текущем потоке.
+     *
+     * @return количество сохранённых сообщений
+     */
+    int flush();
+
+    int getDepth();
+}
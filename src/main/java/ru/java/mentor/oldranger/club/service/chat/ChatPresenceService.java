@@ -0,0 +1,40 @@
+package ru.java.mentor.oldranger.club.service.chat;
+
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.Map;
+
+/**
+ * Кто сейчас в чатах. Хранится в памяти по событиям WebSocket сессий: пользователь в сети,
+ * пока у него открыта хотя бы одна STOMP сессия, и в общем чате, пока хотя бы одна сессия подписана на него.<br>
+ * О входе в общий чат и выходе из него рассылаются сообщения JOIN и LEAVE.
+ */
+public interface ChatPresenceService {
+
+    void onConnected(SessionConnectedEvent event);
+
+    void onSubscribe(SessionSubscribeEvent event);
+
+    void onDisconnect(SessionDisconnectEvent event);
+
+    /**
+     * Отмечает активность сессии: любое входящее сообщение, в том числе heartbeat.
+     */
+    void touch(String sessionId);
+
+    /**
+     * Закрывает сессии, от которых давно не было сообщений, хотя событие отключения не пришло.
+     *
+     * @return количество закрытых сессий
+     */
+    int expireInactiveSessions();
+
+    /**
+     * @return карта "ник пользователя" - "id пользователя" для пользователей в общем чате
+     */
+    Map<String, Long> getGroupChatUsers();
+
+    boolean isOnline(Long userId);
+}
@@ -0,0 +1,22 @@
+package ru.java.mentor.oldranger.club.service.chat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Удаление старых сообщений чата вместе с их изображениями порциями по id.
+ */
+public interface ChatRetentionService {
+
+    /**
+     * Удаляет сообщения чата, отправленные не позже {@code date}. Прогресс сохраняется после каждой порции,
+     * поэтому прерванная очистка продолжается с места остановки.
+     *
+     * @return количество удалённых сообщений
+     */
+    long deleteMessages(Long chatId, LocalDateTime date);
+
+    /**
+     * Продолжает очистки, прерванные остановкой приложения.
+     */
+    void resumeUnfinished();
+}
@@ -19,5 +19,10 @@ public interface ChatService {
 
     Chat getGroupChat();
 
+    /**
+     * Id общего чата. Он не меняется, поэтому читается из базы один раз.
+     */
+    Long getGroupChatId();
+
     String generateToken(User first, User second);
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package ru.java.mentor.oldranger.club.service.chat;
+
+import org.springframework.data.domain.Slice;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+
+import java.time.LocalDateTime;
+
+/**
+ * Последние сообщения каждого чата в памяти. Хвост чата пополняется при отправке и при первом чтении
+ * дозагружается из базы; он содержит все сообщения чата новее своего самого старого сообщения.
+ */
+public interface ChatTailCacheService {
+
+    void append(Long chatId, Message message);
+
+    /**
+     * Заменяет отредактированное сообщение, если оно есть в хвосте.
+     */
+    void update(Long chatId, Message message);
+
+    void remove(Long chatId, Long messageId);
+
+    /**
+     * Убирает сообщения с id не больше {@code lastId}, отправленные не позже {@code date}, после того как они удалены из базы.
+     */
+    void removeUpTo(Long chatId, long lastId, LocalDateTime date);
+
+    /**
+     * @return сообщения с id меньше {@code before} (последние, если {@code before == null}) от новых к старым
+     * или {@code null}, если они не помещаются в хвост и их надо читать из базы
+     */
+    Slice<Message> getMessagesBefore(Long chatId, Long before, int size);
+
+    /**
+     * @return сообщения с id больше {@code after} от старых к новым
+     * или {@code null}, если хвост не начинается раньше {@code after} и их надо читать из базы
+     */
+    Slice<Message> getMessagesAfter(Long chatId, Long after, int size);
+
+    /**
+     * @return наименьший id среди сообщений хвоста, отправленных не раньше {@code since}, или {@code null}, если таких нет
+     */
+    Long getFirstIdSince(Long chatId, LocalDateTime since);
+}
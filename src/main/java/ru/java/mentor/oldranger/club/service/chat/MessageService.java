@@ -1,7 +1,6 @@
 package ru.java.mentor.oldranger.club.service.chat;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.web.multipart.MultipartFile;
 import ru.java.mentor.oldranger.club.model.chat.Chat;
 import ru.java.mentor.oldranger.club.model.chat.Message;
@@ -14,11 +13,25 @@ public interface MessageService {
 
     void editMessage(Message message);
 
-    Page<Message> getPagebleMessages(Chat chat, Pageable pageable);
+    /**
+     * Сообщения с id меньше {@code before} (последние, если {@code before == null}), от новых к старым.
+     */
+    Slice<Message> getMessagesBefore(Chat chat, Long before, int size);
 
-    Map<String, String> processImage(MultipartFile file);
+    /**
+     * Сообщения с id больше {@code after}, от старых к новым: то, что клиент пропустил, пока был отключён.
+     */
+    Slice<Message> getMessagesAfter(Chat chat, Long after, int size);
+
+    /**
+     * Первая порция того, что клиент пропустил после сообщения {@code lastSeenId}. Id не растут в порядке сохранения
+     * (блоки id у разных экземпляров, повторное сохранение после сбоя), поэтому порция начинается с сообщений,
+     * отправленных незадолго до {@code lastSeenId}, и может содержать уже полученные клиентом сообщения.
+     * Следующие порции запрашиваются через {@link #getMessagesAfter} от последнего id порции.
+     */
+    Slice<Message> getMissedMessages(Chat chat, Long lastSeenId, int size);
 
-    Map<String, Long> getOnlineUsers();
+    Map<String, String> processImage(MultipartFile file);
 
     void setOlderThan(String olderThan);
 
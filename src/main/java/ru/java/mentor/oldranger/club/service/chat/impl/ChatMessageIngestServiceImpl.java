@@ -0,0 +1,275 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+import ru.java.mentor.oldranger.club.service.chat.ChatMessageIngestService;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class ChatMessageIngestServiceImpl implements ChatMessageIngestService {
+
+    static final String INSERT_SQL = "insert into messages " +
+            "(id, msg_text, img_original, img_thumbnail, type, sender, sender_ava, reply_to, id_chat, message_date) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final int COMMIT_ATTEMPTS = 3;
+
+    private final MessageIdAllocator messageIdAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatTailCacheService chatTailCacheService;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final long retryDelayMs;
+    private final Timer commitTimer;
+    private final Counter overflowCounter;
+    private final Counter rejectedCounter;
+
+    /**
+     * Кольцевой буфер сообщений, ожидающих сохранения: параметры {@link #INSERT_SQL}.
+     */
+    private final BlockingQueue<Object[]> queue;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public ChatMessageIngestServiceImpl(MessageIdAllocator messageIdAllocator,
+                                        JdbcTemplate jdbcTemplate,
+                                        ChatTailCacheService chatTailCacheService,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${project.chat.ingest.buffer-size:10000}") int bufferSize,
+                                        @Value("${project.chat.ingest.batch-size:200}") int batchSize,
+                                        @Value("${project.chat.ingest.offer-timeout-ms:1000}") long offerTimeoutMs,
+                                        @Value("${project.chat.ingest.retry-delay-ms:1000}") long retryDelayMs) {
+        this.messageIdAllocator = messageIdAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.chatTailCacheService = chatTailCacheService;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.retryDelayMs = retryDelayMs;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.commitTimer = Timer.builder("chat.ingest.commit")
+                .description("Time spent saving a batch of chat messages")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("chat.ingest.overflow")
+                .description("Chat messages saved by the sender because the buffer was full")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.ingest.rejected")
+                .description("Chat messages the database refused to save")
+                .register(meterRegistry);
+        Gauge.builder("chat.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Chat messages waiting to be saved")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void startWriter() {
+        running = true;
+        writer = new Thread(this::writeLoop, "chat-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Message submit(Message message, Long chatId) {
+        message.setId(messageIdAllocator.nextId());
+        message.setMessageDate(LocalDateTime.now());
+        Object[] args = toArgs(message, chatId);
+        // общий и приватные чаты отправляют сообщения только сюда, поэтому хвост чата пополняется здесь
+        chatTailCacheService.append(chatId, message);
+        if (running && queue.offer(args)) {
+            return message;
+        }
+        boolean queued = false;
+        try {
+            queued = running && queue.offer(args, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            log.warn("Chat messages buffer is full, saving message {} in the sender thread", message.getId());
+            overflowCounter.increment();
+            commit(Collections.singletonList(args));
+        }
+        return message;
+    }
+
+    /**
+     * Сохраняет только то, что было в очереди при вызове: сообщения, возвращённые в очередь
+     * из-за недоступности базы, ждут следующей попытки.
+     */
+    @Override
+    public int flush() {
+        int flushed = 0;
+        int remaining = queue.size();
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        while (remaining > 0 && queue.drainTo(batch, Math.min(batchSize, remaining)) > 0) {
+            remaining -= batch.size();
+            flushed += commit(batch);
+            batch.clear();
+        }
+        return flushed;
+    }
+
+    @Override
+    public int getDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stopWriter() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Saving {} buffered chat messages before shutdown", queue.size());
+        flush();
+        List<Object[]> unsaved = new ArrayList<>();
+        queue.drainTo(unsaved);
+        unsaved.forEach(args -> drop(args, "application is stopping"));
+    }
+
+    /**
+     * Ждёт первое сообщение и забирает вместе с ним всё, что накопилось за время предыдущего сохранения:
+     * при малой нагрузке сообщение сохраняется сразу, при большой пачки растут до {@code batchSize}.
+     */
+    private void writeLoop() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Object[] first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Сохраняет пачку, при ошибке повторяет её до {@link #COMMIT_ATTEMPTS} раз, а затем сохраняет
+     * сообщения по одному ({@link #commitRows}), чтобы одна неверная строка не стоила всей пачки.
+     *
+     * @return количество сохранённых сообщений
+     */
+    private int commit(List<Object[]> batch) {
+        for (int attempt = 1; attempt <= COMMIT_ATTEMPTS; attempt++) {
+            Timer.Sample sample = Timer.start();
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                log.debug("Saved {} chat messages", batch.size());
+                return batch.size();
+            } catch (DataIntegrityViolationException e) {
+                // строку отвергла база: повтор пачки ничего не изменит
+                log.warn(e.getMessage());
+                break;
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                sample.stop(commitTimer);
+            }
+            if (attempt < COMMIT_ATTEMPTS && !sleep(retryDelayMs * attempt)) {
+                break;
+            }
+        }
+        return commitRows(batch);
+    }
+
+    /**
+     * Сохраняет сообщения по одному. Отвергнутое базой сообщение теряется и убирается из хвоста чата;
+     * при другой ошибке база считается недоступной, и это и все следующие сообщения возвращаются в очередь.
+     * Строки, успевшие сохраниться в неудачной пачке, дают нарушение ключа и считаются сохранёнными.
+     */
+    private int commitRows(List<Object[]> batch) {
+        int saved = 0;
+        List<Object[]> unsaved = new ArrayList<>();
+        for (Object[] args : batch) {
+            if (!unsaved.isEmpty()) {
+                unsaved.add(args);
+                continue;
+            }
+            try {
+                jdbcTemplate.update(INSERT_SQL, args);
+                saved++;
+            } catch (DuplicateKeyException e) {
+                saved++;
+            } catch (DataIntegrityViolationException e) {
+                rejectedCounter.increment();
+                drop(args, e.getMessage());
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                unsaved.add(args);
+            }
+        }
+        int requeued = 0;
+        for (Object[] args : unsaved) {
+            if (running && queue.offer(args)) {
+                requeued++;
+            } else {
+                drop(args, "database is unavailable and the buffer is full");
+            }
+        }
+        if (requeued > 0) {
+            log.warn("{} chat messages are returned to the buffer", requeued);
+        }
+        return saved;
+    }
+
+    /**
+     * Сообщение уже разослано и лежит в хвосте чата: убирает его оттуда, чтобы история не показывала
+     * сообщение, которого нет в базе.
+     */
+    private void drop(Object[] args, String reason) {
+        log.error("Chat message {} is not saved: {}", args[0], reason);
+        chatTailCacheService.remove((Long) args[8], (Long) args[0]);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Object[] toArgs(Message message, Long chatId) {
+        return new Object[]{message.getId(), message.getText(), message.getOriginalImg(), message.getThumbnailImg(),
+                message.getType() == null ? null : message.getType().name(), message.getSender(),
+                message.getSenderAvatar(), message.getReplyTo(), chatId, Timestamp.valueOf(message.getMessageDate())};
+    }
+}
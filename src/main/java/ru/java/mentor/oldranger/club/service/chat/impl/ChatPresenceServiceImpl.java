@@ -0,0 +1,194 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.chat.ChatPresenceService;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class ChatPresenceServiceImpl implements ChatPresenceService {
+
+    static final String GROUP_CHAT_DESTINATION = "/channel/public";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long expireAfterMs;
+
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, UserPresence> users = new ConcurrentHashMap<>();
+
+    public ChatPresenceServiceImpl(SimpMessagingTemplate messagingTemplate,
+                                   @Value("${project.chat.presence.expire-after-ms:60000}") long expireAfterMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.expireAfterMs = expireAfterMs;
+    }
+
+    @Override
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        User user = toUser(event.getUser());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return;
+        }
+        if (sessions.putIfAbsent(sessionId, new SessionPresence(user.getId(), user.getNickName())) == null) {
+            log.debug("User {} connected, session {}", user.getNickName(), sessionId);
+            update(user.getId(), user.getNickName(), 1, 0);
+        }
+    }
+
+    @Override
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (!GROUP_CHAT_DESTINATION.equals(accessor.getDestination())) {
+            return;
+        }
+        SessionPresence session = sessions.get(accessor.getSessionId());
+        if (session != null && session.inGroupChat.compareAndSet(false, true)) {
+            update(session.userId, session.nickName, 0, 1);
+        }
+    }
+
+    @Override
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    @Override
+    public void touch(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        SessionPresence session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${project.chat.presence.sweep-delay-ms:15000}")
+    public int expireInactiveSessions() {
+        long deadline = System.currentTimeMillis() - expireAfterMs;
+        int expired = 0;
+        for (Map.Entry<String, SessionPresence> entry : sessions.entrySet()) {
+            if (entry.getValue().lastSeen < deadline && remove(entry.getKey())) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.info("Expired {} inactive chat sessions", expired);
+        }
+        return expired;
+    }
+
+    @Override
+    public Map<String, Long> getGroupChatUsers() {
+        Map<String, Long> groupChatUsers = new HashMap<>();
+        users.forEach((userId, presence) -> {
+            if (presence.groupChatSessions > 0) {
+                groupChatUsers.put(presence.nickName, userId);
+            }
+        });
+        return groupChatUsers;
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        return userId != null && users.containsKey(userId);
+    }
+
+    private boolean remove(String sessionId) {
+        if (sessionId == null) {
+            return false;
+        }
+        SessionPresence session = sessions.remove(sessionId);
+        if (session == null) {
+            return false;
+        }
+        log.debug("User {} disconnected, session {}", session.nickName, sessionId);
+        update(session.userId, session.nickName, -1, session.inGroupChat.get() ? -1 : 0);
+        return true;
+    }
+
+    /**
+     * Меняет счётчики сессий пользователя и рассылает JOIN или LEAVE, если он вошёл в общий чат или вышел из него.
+     */
+    private void update(Long userId, String nickName, int sessionsDelta, int groupChatDelta) {
+        int[] groupChatSessionsBefore = new int[1];
+        UserPresence after = users.compute(userId, (id, presence) -> {
+            UserPresence current = presence == null ? new UserPresence(nickName, 0, 0) : presence;
+            groupChatSessionsBefore[0] = current.groupChatSessions;
+            UserPresence updated = new UserPresence(current.nickName, current.sessions + sessionsDelta,
+                    current.groupChatSessions + groupChatDelta);
+            return updated.sessions > 0 ? updated : null;
+        });
+        int groupChatSessionsAfter = after == null ? 0 : after.groupChatSessions;
+        if (groupChatSessionsBefore[0] == 0 && groupChatSessionsAfter > 0) {
+            publish(Message.MessageType.JOIN, nickName);
+        } else if (groupChatSessionsBefore[0] > 0 && groupChatSessionsAfter == 0) {
+            publish(Message.MessageType.LEAVE, nickName);
+        }
+    }
+
+    private void publish(Message.MessageType type, String nickName) {
+        Message message = new Message();
+        message.setType(type);
+        message.setSender(nickName);
+        message.setMessageDate(LocalDateTime.now());
+        try {
+            messagingTemplate.convertAndSend(GROUP_CHAT_DESTINATION, message);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private static User toUser(Principal principal) {
+        if (principal instanceof Authentication && ((Authentication) principal).getPrincipal() instanceof User) {
+            return (User) ((Authentication) principal).getPrincipal();
+        }
+        return null;
+    }
+
+    private static final class SessionPresence {
+        private final Long userId;
+        private final String nickName;
+        private final AtomicBoolean inGroupChat = new AtomicBoolean();
+        private volatile long lastSeen = System.currentTimeMillis();
+
+        private SessionPresence(Long userId, String nickName) {
+            this.userId = userId;
+            this.nickName = nickName;
+        }
+    }
+
+    private static final class UserPresence {
+        private final String nickName;
+        private final int sessions;
+        private final int groupChatSessions;
+
+        private UserPresence(String nickName, int sessions, int groupChatSessions) {
+            this.nickName = nickName;
+            this.sessions = sessions;
+            this.groupChatSessions = groupChatSessions;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import ru.java.mentor.oldranger.club.service.chat.ChatRetentionService;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class ChatRetentionServiceImpl implements ChatRetentionService {
+
+    static final String SELECT_CHUNK_SQL = "select id, img_original from messages " +
+            "where id_chat = ? and message_date <= ? and id > ? order by id limit ?";
+    static final String DELETE_CHUNK_SQL = "delete from messages " +
+            "where id_chat = ? and message_date <= ? and id > ? and id <= ? order by id limit ?";
+    static final String SELECT_PHOTOS_SQL = "select id, original_img, small_img from photos where original_img in (%s)";
+    static final String DELETE_PHOTOS_SQL = "delete from photos where id in (%s)";
+    static final String SELECT_CHECKPOINTS_SQL = "select id_chat, delete_date, last_id, deleted_messages " +
+            "from chat_retention_checkpoints";
+    static final String INSERT_CHECKPOINT_SQL = "insert into chat_retention_checkpoints " +
+            "(id_chat, delete_date, last_id, deleted_messages) values (?, ?, 0, 0)";
+    static final String UPDATE_CHECKPOINT_SQL = "update chat_retention_checkpoints " +
+            "set last_id = ?, deleted_messages = ? where id_chat = ?";
+    static final String DELETE_CHECKPOINT_SQL = "delete from chat_retention_checkpoints where id_chat = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatTailCacheService chatTailCacheService;
+    private final TaskExecutor fileDeletionExecutor;
+    private final String albumsDir;
+    private final int chunkSize;
+    private final Timer runTimer;
+    private final Counter messagesCounter;
+    private final Counter imagesCounter;
+
+    /**
+     * Чаты, очистка которых идёт сейчас: повторный запуск для того же чата пропускается.
+     */
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    public ChatRetentionServiceImpl(JdbcTemplate jdbcTemplate,
+                                    ChatTailCacheService chatTailCacheService,
+                                    @Qualifier("fileDeletionExecutor") TaskExecutor fileDeletionExecutor,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${photoalbums.location}") String albumsDir,
+                                    @Value("${project.chat.retention.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chatTailCacheService = chatTailCacheService;
+        this.fileDeletionExecutor = fileDeletionExecutor;
+        this.albumsDir = albumsDir;
+        this.chunkSize = chunkSize;
+        this.runTimer = Timer.builder("chat.retention.run")
+                .description("Time spent deleting old messages of a chat")
+                .register(meterRegistry);
+        this.messagesCounter = Counter.builder("chat.retention.messages")
+                .description("Chat messages deleted by retention")
+                .register(meterRegistry);
+        this.imagesCounter = Counter.builder("chat.retention.images")
+                .description("Chat images deleted by retention")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long deleteMessages(Long chatId, LocalDateTime date) {
+        if (!running.add(chatId)) {
+            log.warn("Messages of chat with id = {} are already being deleted", chatId);
+            return 0;
+        }
+        try {
+            jdbcTemplate.update(DELETE_CHECKPOINT_SQL, chatId);
+            jdbcTemplate.update(INSERT_CHECKPOINT_SQL, chatId, Timestamp.valueOf(date));
+            return run(chatId, date, 0, 0);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return 0;
+        } finally {
+            running.remove(chatId);
+        }
+    }
+
+    @Override
+    @Async("chatRetentionExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        List<Map<String, Object>> checkpoints;
+        try {
+            checkpoints = jdbcTemplate.queryForList(SELECT_CHECKPOINTS_SQL);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return;
+        }
+        for (Map<String, Object> checkpoint : checkpoints) {
+            Long chatId = ((Number) checkpoint.get("id_chat")).longValue();
+            if (!running.add(chatId)) {
+                continue;
+            }
+            try {
+                long lastId = ((Number) checkpoint.get("last_id")).longValue();
+                log.info("Resuming deletion of messages of chat with id = {} after message {}", chatId, lastId);
+                run(chatId, ((Timestamp) checkpoint.get("delete_date")).toLocalDateTime(), lastId,
+                        ((Number) checkpoint.get("deleted_messages")).longValue());
+            } finally {
+                running.remove(chatId);
+            }
+        }
+    }
+
+    /**
+     * Удаляет сообщения порциями по возрастанию id: сначала изображения порции, затем сами сообщения,
+     * затем записывает, до какого id дошла очистка, и убирает удалённое из хвоста чата. Если очистка прервана, запись остаётся,
+     * и повтор порции безопасен: уже удалённые изображения и сообщения просто не находятся.
+     */
+    private long run(Long chatId, LocalDateTime date, long lastId, long deletedBefore) {
+        log.info("Deleting messages of chat with id = {} sent before {}", chatId, date);
+        Timestamp deleteDate = Timestamp.valueOf(date);
+        long started = System.nanoTime();
+        long deleted = 0;
+        long images = 0;
+        Timer.Sample sample = Timer.start();
+        try {
+            List<Map<String, Object>> chunk;
+            do {
+                chunk = jdbcTemplate.queryForList(SELECT_CHUNK_SQL, chatId, deleteDate, lastId, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                long maxId = ((Number) chunk.get(chunk.size() - 1).get("id")).longValue();
+                images += deleteImages(chunk.stream()
+                        .map(row -> (String) row.get("img_original"))
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .collect(Collectors.toList()));
+                int count = jdbcTemplate.update(DELETE_CHUNK_SQL, chatId, deleteDate, lastId, maxId, chunkSize);
+                messagesCounter.increment(count);
+                deleted += count;
+                lastId = maxId;
+                jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, lastId, deletedBefore + deleted, chatId);
+                chatTailCacheService.removeUpTo(chatId, lastId, date);
+                log.debug("Deleted {} messages of chat with id = {} up to id = {}", count, chatId, lastId);
+            } while (chunk.size() == chunkSize);
+            jdbcTemplate.update(DELETE_CHECKPOINT_SQL, chatId);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            sample.stop(runTimer);
+        }
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.info("Deleted {} messages and {} images of chat with id = {} in {} ms ({} messages/s)",
+                deleted, images, chatId, millis, deleted * 1000 / millis);
+        return deleted;
+    }
+
+    /**
+     * Удаляет фотографии с именами {@code names} одним запросом, а их файлы &ndash; параллельно
+     * в {@code fileDeletionExecutor}.
+     *
+     * @return количество удалённых фотографий
+     */
+    private int deleteImages(List<String> names) {
+        if (names.isEmpty()) {
+            return 0;
+        }
+        List<Map<String, Object>> photos;
+        try {
+            photos = jdbcTemplate.queryForList(String.format(SELECT_PHOTOS_SQL, placeholders(names.size())), names.toArray());
+            if (photos.isEmpty()) {
+                return 0;
+            }
+            Object[] ids = photos.stream().map(photo -> photo.get("id")).toArray();
+            jdbcTemplate.update(String.format(DELETE_PHOTOS_SQL, placeholders(ids.length)), ids);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return 0;
+        }
+        List<CompletableFuture<Void>> deletions = new ArrayList<>(photos.size() * 2);
+        for (Map<String, Object> photo : photos) {
+            for (String column : new String[]{"original_img", "small_img"}) {
+                String name = (String) photo.get(column);
+                if (name != null) {
+                    deletions.add(CompletableFuture.runAsync(() -> deleteFile(name), fileDeletionExecutor));
+                }
+            }
+        }
+        CompletableFuture.allOf(deletions.toArray(new CompletableFuture[0])).join();
+        imagesCounter.increment(photos.size());
+        return photos.size();
+    }
+
+    private void deleteFile(String name) {
+        try {
+            FileSystemUtils.deleteRecursively(new File(albumsDir + File.separator + name));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -1,6 +1,7 @@
 package ru.java.mentor.oldranger.club.service.chat.impl;
 
-import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.java.mentor.oldranger.club.dao.ChatRepository.ChatRepository;
@@ -13,11 +14,14 @@ import java.util.UUID;
 
 @Slf4j
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class ChatServiceImpl implements ChatService {
 
+    @NonNull
     private ChatRepository chatRepository;
 
+    private volatile Long groupChatId;
+
     @Override
     public Chat getChatByToken(String token) {
         log.debug("Getting chat by token {}.", token);
@@ -81,6 +85,15 @@ public class ChatServiceImpl implements ChatService {
         return chat;
     }
 
+    @Override
+    public Long getGroupChatId() {
+        if (groupChatId == null) {
+            Chat chat = getGroupChat();
+            groupChatId = chat == null ? null : chat.getId();
+        }
+        return groupChatId;
+    }
+
     @Override
     public String generateToken(User first, User second) {
         return first.getId() + "_@_" + UUID.randomUUID().toString() + "_@_" + second.getId();
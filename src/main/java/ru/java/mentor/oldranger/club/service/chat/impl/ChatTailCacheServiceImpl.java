@@ -0,0 +1,251 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.dao.ChatRepository.MessageRepository;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class ChatTailCacheServiceImpl implements ChatTailCacheService {
+
+    private static final Sort NEWEST_FIRST = Sort.by("id").descending();
+    private static final Sort OLDEST_FIRST = Sort.by("id").ascending();
+
+    private final MessageRepository messageRepository;
+    private final int tailSize;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    private final Map<Long, ChatTail> tails = new ConcurrentHashMap<>();
+
+    public ChatTailCacheServiceImpl(MessageRepository messageRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${project.chat.tail.size:100}") int tailSize) {
+        this.messageRepository = messageRepository;
+        this.tailSize = tailSize;
+        this.hitCounter = Counter.builder("chat.tail.requests")
+                .tag("result", "hit")
+                .description("Chat history requests served from memory")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat.tail.requests")
+                .tag("result", "miss")
+                .description("Chat history requests that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("chat.tail.hit.ratio", this, ChatTailCacheServiceImpl::getHitRatio)
+                .description("Share of chat history requests served from memory since start")
+                .register(meterRegistry);
+        Gauge.builder("chat.tail.chats", tails, Map::size)
+                .description("Chats with recent messages in memory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void append(Long chatId, Message message) {
+        if (chatId != null && message.getId() != null) {
+            tails.computeIfAbsent(chatId, id -> new ChatTail()).append(message, tailSize);
+        }
+    }
+
+    @Override
+    public void update(Long chatId, Message message) {
+        ChatTail tail = chatId == null ? null : tails.get(chatId);
+        if (tail != null && message.getId() != null) {
+            tail.update(message);
+        }
+    }
+
+    @Override
+    public void remove(Long chatId, Long messageId) {
+        ChatTail tail = chatId == null ? null : tails.get(chatId);
+        if (tail != null) {
+            tail.remove(messageId);
+        }
+    }
+
+    @Override
+    public void removeUpTo(Long chatId, long lastId, LocalDateTime date) {
+        ChatTail tail = chatId == null ? null : tails.get(chatId);
+        if (tail != null) {
+            tail.removeUpTo(lastId, date);
+        }
+    }
+
+    @Override
+    public Slice<Message> getMessagesBefore(Long chatId, Long before, int size) {
+        ChatTail tail = warmTail(chatId);
+        return count(tail == null ? null : tail.before(before, size));
+    }
+
+    @Override
+    public Slice<Message> getMessagesAfter(Long chatId, Long after, int size) {
+        ChatTail tail = warmTail(chatId);
+        return count(tail == null ? null : tail.after(after, size));
+    }
+
+    @Override
+    public Long getFirstIdSince(Long chatId, LocalDateTime since) {
+        ChatTail tail = chatId == null ? null : tails.get(chatId);
+        return tail == null ? null : tail.firstIdSince(since);
+    }
+
+    /**
+     * При первом чтении чата загружает из базы {@code tailSize} последних сообщений. Загрузка идёт без блокировки хвоста,
+     * поэтому её результат отбрасывается, если за это время сообщения чата редактировались или удалялись.
+     */
+    private ChatTail warmTail(Long chatId) {
+        if (chatId == null) {
+            return null;
+        }
+        ChatTail tail = tails.computeIfAbsent(chatId, id -> new ChatTail());
+        long changes = tail.changesBeforeWarm();
+        if (changes < 0) {
+            return tail;
+        }
+        log.debug("Loading last {} messages of chat with id = {}", tailSize, chatId);
+        try {
+            List<Message> loaded = messageRepository.findByChatId(chatId, PageRequest.of(0, tailSize, NEWEST_FIRST)).getContent();
+            tail.warm(loaded, loaded.size() < tailSize, changes, tailSize);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return tail;
+    }
+
+    private Slice<Message> count(Slice<Message> slice) {
+        if (slice == null) {
+            missCounter.increment();
+        } else {
+            hitCounter.increment();
+        }
+        return slice;
+    }
+
+    private double getHitRatio() {
+        double requests = hitCounter.count() + missCounter.count();
+        return requests == 0 ? 0 : hitCounter.count() / requests;
+    }
+
+    /**
+     * Хвост одного чата. После загрузки из базы в нём есть все сообщения чата с id больше {@code floor}
+     * ({@code floor == 0} &ndash; вся история чата), а сообщений с меньшими id в нём нет.
+     */
+    private static final class ChatTail {
+        private final TreeMap<Long, Message> messages = new TreeMap<>();
+        private boolean warm;
+        private long floor;
+
+        /**
+         * Номер изменения уже загруженных сообщений: по нему отбрасывается загрузка, пересёкшаяся с правкой или удалением.
+         */
+        private long changes;
+
+        /**
+         * @return номер изменения, если хвост ещё не загружен из базы, иначе -1
+         */
+        synchronized long changesBeforeWarm() {
+            return warm ? -1 : changes;
+        }
+
+        synchronized void append(Message message, int limit) {
+            messages.put(message.getId(), message);
+            trim(limit);
+        }
+
+        synchronized void update(Message message) {
+            changes++;
+            messages.replace(message.getId(), message);
+        }
+
+        synchronized void remove(Long messageId) {
+            changes++;
+            messages.remove(messageId);
+        }
+
+        synchronized void removeUpTo(long lastId, LocalDateTime date) {
+            changes++;
+            messages.headMap(lastId, true).values().removeIf(message -> message.getMessageDate() != null && !message.getMessageDate().isAfter(date));
+        }
+
+        /**
+         * Объединяет загруженные из базы сообщения с отправленными после старта: сообщения, ещё не сохранённые
+         * фоновым потоком, есть только в хвосте, а сохранённые до старта &ndash; только в базе.
+         */
+        synchronized void warm(List<Message> loaded, boolean wholeChat, long expectedChanges, int limit) {
+            if (warm || changes != expectedChanges) {
+                return;
+            }
+            loaded.forEach(message -> messages.putIfAbsent(message.getId(), message));
+            if (!wholeChat) {
+                floor = Math.max(floor, loaded.get(loaded.size() - 1).getId() - 1);
+            }
+            messages.headMap(floor, true).clear();
+            warm = true;
+            trim(limit);
+        }
+
+        synchronized Slice<Message> before(Long before, int size) {
+            if (!warm) {
+                return null;
+            }
+            NavigableMap<Long, Message> older = before == null ? messages : messages.headMap(before, false);
+            List<Message> content = take(older.descendingMap(), size);
+            if (content.size() < size && floor > 0) {
+                // остальные сообщения есть только в базе
+                return null;
+            }
+            return new SliceImpl<>(content, PageRequest.of(0, size, NEWEST_FIRST), older.size() > size || floor > 0);
+        }
+
+        synchronized Slice<Message> after(Long after, int size) {
+            if (!warm || after < floor) {
+                return null;
+            }
+            NavigableMap<Long, Message> newer = messages.tailMap(after, false);
+            return new SliceImpl<>(take(newer, size), PageRequest.of(0, size, OLDEST_FIRST), newer.size() > size);
+        }
+
+        synchronized Long firstIdSince(LocalDateTime since) {
+            for (Message message : messages.values()) {
+                if (message.getMessageDate() != null && !message.getMessageDate().isBefore(since)) {
+                    return message.getId();
+                }
+            }
+            return null;
+        }
+
+        private void trim(int limit) {
+            while (messages.size() > limit) {
+                floor = Math.max(floor, messages.pollFirstEntry().getKey());
+            }
+        }
+
+        private static List<Message> take(NavigableMap<Long, Message> messages, int size) {
+            List<Message> content = new ArrayList<>(Math.min(size, messages.size()));
+            for (Message message : messages.values()) {
+                if (content.size() == size) {
+                    break;
+                }
+                content.add(message);
+            }
+            return content;
+        }
+    }
+}
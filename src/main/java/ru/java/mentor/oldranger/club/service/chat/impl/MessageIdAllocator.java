@@ -0,0 +1,69 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Выдаёт id сообщений чата в памяти. Id резервируются в id_sequences блоками по {@code blockSize},
+ * поэтому экземпляры приложения не выдают одинаковых id, а база запрашивается раз на блок.
+ */
+@Slf4j
+@Component
+class MessageIdAllocator {
+
+    static final String SEQUENCE_NAME = "messages";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+
+    private long next;
+    private long limit;
+
+    MessageIdAllocator(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${project.chat.ingest.id-block-size:100}") int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blockSize = blockSize;
+    }
+
+    synchronized long nextId() {
+        if (next >= limit) {
+            long start;
+            try {
+                start = reserveBlock();
+            } catch (DuplicateKeyException e) {
+                // первый блок одновременно резервировал другой экземпляр
+                start = reserveBlock();
+            }
+            next = start;
+            limit = start + blockSize;
+            log.debug("Reserved message ids from {} to {}", start, limit - 1);
+        }
+        return next++;
+    }
+
+    private long reserveBlock() {
+        Long start = transactionTemplate.execute(status -> {
+            List<Long> values = jdbcTemplate.queryForList(
+                    "select next_value from id_sequences where name = ? for update", Long.class, SEQUENCE_NAME);
+            if (values.isEmpty()) {
+                // сообщения до появления последовательности получили id от auto_increment
+                Long first = jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1 from messages", Long.class);
+                jdbcTemplate.update("insert into id_sequences (name, next_value) values (?, ?)", SEQUENCE_NAME, first + blockSize);
+                return first;
+            }
+            jdbcTemplate.update("update id_sequences set next_value = ? where name = ?", values.get(0) + blockSize, SEQUENCE_NAME);
+            return values.get(0);
+        });
+        return start;
+    }
+}
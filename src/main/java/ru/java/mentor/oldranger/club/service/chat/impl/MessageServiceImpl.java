@@ -2,8 +2,10 @@ package ru.java.mentor.oldranger.club.service.chat.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -11,8 +13,10 @@ import org.springframework.web.multipart.MultipartFile;
 import ru.java.mentor.oldranger.club.dao.ChatRepository.MessageRepository;
 import ru.java.mentor.oldranger.club.model.chat.Chat;
 import ru.java.mentor.oldranger.club.model.chat.Message;
-import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.chat.ChatMessageIngestService;
+import ru.java.mentor.oldranger.club.service.chat.ChatRetentionService;
 import ru.java.mentor.oldranger.club.service.chat.ChatService;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
 import ru.java.mentor.oldranger.club.service.chat.MessageService;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
 
@@ -22,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -32,13 +37,24 @@ public class MessageServiceImpl implements MessageService {
     private MessageRepository messageRepository;
     private ChatService chatService;
     private PhotoService photoService;
+    private ChatMessageIngestService chatMessageIngestService;
+    private ChatTailCacheService chatTailCacheService;
+    private ChatRetentionService chatRetentionService;
     private String uploadDir;
     private String olderThan;
 
-    public MessageServiceImpl(MessageRepository messageRepository, ChatService chatService, PhotoService photoService) {
+    @Value("${project.chat.catch-up-window-ms:60000}")
+    private long catchUpWindowMs;
+
+    public MessageServiceImpl(MessageRepository messageRepository, ChatService chatService, PhotoService photoService,
+                              ChatMessageIngestService chatMessageIngestService, ChatTailCacheService chatTailCacheService,
+                              ChatRetentionService chatRetentionService) {
         this.messageRepository = messageRepository;
         this.chatService = chatService;
         this.photoService = photoService;
+        this.chatMessageIngestService = chatMessageIngestService;
+        this.chatTailCacheService = chatTailCacheService;
+        this.chatRetentionService = chatRetentionService;
         uploadDir = "./media";
         olderThan = "week";
     }
@@ -60,22 +76,34 @@ public class MessageServiceImpl implements MessageService {
         return message;
     }
 
+    /**
+     * Id сообщений выдаёт {@link ChatMessageIngestService}, поэтому новые сообщения сохраняются только через него.
+     */
     @Override
     public void addMessage(Message message) {
         log.info("Saving message {}", message);
         try {
-            messageRepository.save(message);
-            log.info("Message saved");
+            chatMessageIngestService.submit(message, message.getChat().getId());
+            log.info("Message queued with id = {}", message.getId());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * Сообщение, ещё не сохранённое {@link ChatMessageIngestService}, не изменяется: merge вставил бы его строку
+     * раньше очереди, и пачка с этим id уже не сохранилась бы.
+     */
     @Override
     public void editMessage(Message message) {
         log.info("Editing message {}", message);
         try {
+            if (!isSaved(message.getId())) {
+                log.warn("Message with id = {} is not saved yet and can not be edited", message.getId());
+                return;
+            }
             messageRepository.save(message);
+            chatTailCacheService.update(message.getChat().getId(), message);
             log.info("Message edited");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -93,16 +121,68 @@ public class MessageServiceImpl implements MessageService {
     }
 
     @Override
-    public Page<Message> getPagebleMessages(Chat chat, Pageable pageable) {
-        log.debug("Getting page {} of messages for chat with id = {}", pageable.getPageNumber(), chat.getId());
-        Page<Message> page = null;
+    public Slice<Message> getMessagesBefore(Chat chat, Long before, int size) {
+        log.debug("Getting {} messages before id = {} for chat with id = {}", size, before, chat.getId());
+        Slice<Message> slice = null;
+        try {
+            slice = chatTailCacheService.getMessagesBefore(chat.getId(), before, size);
+            if (slice != null) {
+                log.debug("Returned slice of {} messages from memory", slice.getNumberOfElements());
+                return slice;
+            }
+            PageRequest pageable = PageRequest.of(0, size, Sort.by("id").descending());
+            slice = before == null
+                    ? messageRepository.findByChatId(chat.getId(), pageable)
+                    : messageRepository.findByChatIdAndIdLessThan(chat.getId(), before, pageable);
+            log.debug("Returned slice of {} messages", slice.getNumberOfElements());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return slice;
+    }
+
+    @Override
+    public Slice<Message> getMessagesAfter(Chat chat, Long after, int size) {
+        log.debug("Getting {} messages after id = {} for chat with id = {}", size, after, chat.getId());
+        Slice<Message> slice = null;
         try {
-            page = messageRepository.findAllByChat(chat, pageable);
-            log.debug("Page returned");
+            slice = chatTailCacheService.getMessagesAfter(chat.getId(), after, size);
+            if (slice != null) {
+                log.debug("Returned slice of {} messages from memory", slice.getNumberOfElements());
+                return slice;
+            }
+            PageRequest pageable = PageRequest.of(0, size, Sort.by("id").ascending());
+            slice = messageRepository.findByChatIdAndIdGreaterThan(chat.getId(), after, pageable);
+            log.debug("Returned slice of {} messages", slice.getNumberOfElements());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
-        return page;
+        return slice;
+    }
+
+    @Override
+    public Slice<Message> getMissedMessages(Chat chat, Long lastSeenId, int size) {
+        log.debug("Getting missed messages after id = {} for chat with id = {}", lastSeenId, chat.getId());
+        long from = lastSeenId;
+        try {
+            LocalDateTime lastSeenDate = messageRepository.findById(lastSeenId)
+                    .map(Message::getMessageDate)
+                    .orElse(null);
+            // ещё не сохранённое сообщение отправлено только что
+            LocalDateTime since = (lastSeenDate == null ? LocalDateTime.now() : lastSeenDate)
+                    .minus(Duration.ofMillis(catchUpWindowMs));
+            Message first = messageRepository.findFirstByChatIdAndMessageDateGreaterThanEqualOrderByIdAsc(chat.getId(), since);
+            if (first != null) {
+                from = Math.min(from, first.getId() - 1);
+            }
+            Long firstInTail = chatTailCacheService.getFirstIdSince(chat.getId(), since);
+            if (firstInTail != null) {
+                from = Math.min(from, firstInTail - 1);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return getMessagesAfter(chat, from, size);
     }
 
     private String uploadImage(MultipartFile file) throws IOException {
@@ -172,23 +252,9 @@ public class MessageServiceImpl implements MessageService {
         log.info("Images deleted");
     }
 
-    @Override
-    public Map<String, Long> getOnlineUsers() {
-        log.debug("Getting list of online users");
-        Map<String, Long> users = new HashMap<>();
-        try {
-            List<User> userList = chatService.getChatById(1L).getUserList();
-            userList.forEach(user -> users.put(user.getNickName(), user.getId()));
-            log.debug("Returned list of {} users", users.size());
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        }
-        return users;
-    }
-
-    // Метод получает все сообщения в чате позднее даты, заданной полем olderThan. Для приватного чата - все
-    // сообщения позднее месяца
-    private List<Message> findAllByChat(Chat chat, boolean isPrivate) {
+    // Метод возвращает дату, сообщения старше которой удаляются: заданную полем olderThan. Для приватного чата -
+    // месяц назад
+    private LocalDateTime getDeleteDate(boolean isPrivate) {
         LocalDateTime date;
         if (isPrivate) {
             date = LocalDateTime.now().minusMonths(1L);
@@ -207,7 +273,7 @@ public class MessageServiceImpl implements MessageService {
                     date = LocalDateTime.now().minusWeeks(1L);
             }
         }
-        return messageRepository.findAllByChatAndDate(chat.getId(), date);
+        return date;
     }
 
     @Scheduled(cron = "0 0 0 * * 0")
@@ -218,38 +284,19 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
-    // Метод удаляет сообщеня и связанные с ними изображения. Для приватного чата - если параметр deleteAll = true,
-    // то удаляются все сообщения, иначе удаляются только сообщения позднее месяца. Для общего чата - удаляются сообщения
-    // позднее даты заданной адмном(поле olderThan)
+    // Метод удаляет сообщеня и связанные с ними изображения. Если параметр deleteAll = true, то удаляются все сообщения,
+    // иначе для приватного чата удаляются сообщения старше месяца, а для общего чата - старше даты, заданной
+    // админом (поле olderThan)
     public void deleteMessages(boolean isPrivate, boolean deleteAll, String chatToken) {
-        List<Message> messages = null;
-        if (!isPrivate) {
-            log.debug("Getting list of group chat messages to delete");
-            try {
-                Chat chat = chatService.getGroupChat();
-                messages = messageRepository.findAllByChat(chat);
-                log.debug("Returned list of {} messages", messages.size());
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            }
-        } else {
-            log.debug("Getting list of messages to delete");
-            Chat chat;
-            try {
-                chat = chatService.getChatByToken(chatToken);
-                messages = deleteAll ? messageRepository.findAllByChat(chat) : findAllByChat(chat, true);
-                log.debug("Returned list of {} messages", messages.size());
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            }
+        try {
+            Chat chat = isPrivate ? chatService.getChatByToken(chatToken) : chatService.getGroupChat();
+            LocalDateTime date = deleteAll ? LocalDateTime.now() : getDeleteDate(isPrivate);
+            log.debug("Deleting messages of chat with id = {} sent before {}", chat.getId(), date);
+            long deleted = chatRetentionService.deleteMessages(chat.getId(), date);
+            log.debug("{} messages successfully deleted", deleted);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
         }
-        List<String> images = new ArrayList<>();
-        Objects.requireNonNull(messages).forEach(msg -> {
-            images.add(msg.getOriginalImg());
-        });
-        deleteChatImages(images);
-        messages.forEach(msg -> removeMessageById(msg.getId()));
-        log.debug("All messages successfully deleted");
     }
 
     @Override
@@ -260,11 +307,29 @@ public class MessageServiceImpl implements MessageService {
         images.add(message.getOriginalImg());
         deleteChatImages(images);
         removeMessageById(id);
+        chatTailCacheService.remove(message.getChat() == null ? null : message.getChat().getId(), id);
     }
 
     @Override
     public Message findMessage(Long id) {
         log.debug("Getting message by id");
-        return messageRepository.findById(id).orElseThrow(() -> new RuntimeException("Did not find message by id - " + id));
+        Optional<Message> message = messageRepository.findById(id);
+        if (!message.isPresent() && chatMessageIngestService.flush() > 0) {
+            message = messageRepository.findById(id);
+        }
+        return message.orElseThrow(() -> new RuntimeException("Did not find message by id - " + id));
+    }
+
+    /**
+     * Сохранено ли сообщение в БД. Если нет, сохраняет очередь {@link ChatMessageIngestService} и проверяет снова.
+     */
+    private boolean isSaved(Long id) {
+        if (id == null) {
+            return false;
+        }
+        if (messageRepository.existsById(id)) {
+            return true;
+        }
+        return chatMessageIngestService.flush() > 0 && messageRepository.existsById(id);
     }
 }
\ No newline at end of file
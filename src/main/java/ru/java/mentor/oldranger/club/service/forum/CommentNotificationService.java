@@ -0,0 +1,11 @@
+package ru.java.mentor.oldranger.club.service.forum;
+
+import ru.java.mentor.oldranger.club.event.NewCommentEvent;
+
+public interface CommentNotificationService {
+
+    /**
+     * Рассылает уведомление о новом комментарии подписчикам Topic, кроме автора комментария.
+     */
+    void notifySubscribers(NewCommentEvent event);
+}
@@ -20,6 +20,8 @@ public interface CommentService {
 
     CommentDto assembleCommentDto(Comment comment, User user);
 
+    List<CommentDto> assembleCommentDtos(List<Comment> comments, User user);
+
     Page<CommentDto> getPageableCommentDtoByTopic(Topic topic, Pageable pageable, int position, User user);
 
     Page<CommentDto> getPageableCommentDtoByUser(User user, Pageable pageable);
@@ -2,12 +2,14 @@ package ru.java.mentor.oldranger.club.service.forum;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
 import ru.java.mentor.oldranger.club.dto.TopicAndNewMessagesCountDto;
 import ru.java.mentor.oldranger.club.model.forum.Subsection;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TopicService {
@@ -56,9 +58,45 @@ public interface TopicService {
      */
     Page<Topic> getPageableBySubsectionForUser(User user, Subsection subsection, Pageable pageable);
 
+    /**
+     * Курсорная (keyset) пагинация для подсекций, самостоятельно определяющая
+     * использовать метод для анонима или для неанонима.
+     */
+    CursorSliceDto<Topic> getSliceBySubsection(Subsection subsection, String cursor, int size);
+
+    /**
+     * Курсорная (keyset) пагинация для подсекций для неанонимов, без подсчёта общего количества.<br>
+     * Порядок сортировки тот же, что и у {@link #getPageableBySubsectionForUser(User, Subsection, Pageable)}.
+     *
+     * @param cursor курсор из предыдущей выдачи, {@code null} &ndash; первая порция
+     */
+    CursorSliceDto<Topic> getPageableBySubsectionForUser(User user, Subsection subsection, String cursor, int size);
+
     List<IdAndNumberProjection> getMessagesCountForTopics(List<Topic> topics);
 
     List<IdAndNumberProjection> getNewMessagesCountForTopicsAndUser(List<Topic> topics, User user);
 
+    /**
+     * Количество Topic, в которых у пользователя есть непрочитанные сообщения.
+     */
+    long countTopicsWithNewMessagesForUser(User user);
+
     List<TopicAndNewMessagesCountDto> getTopicsDto(List<Topic> topics);
+
+    /**
+     * Атомарно увеличивает счётчик сообщений Topic и сдвигает дату последнего сообщения.
+     *
+     * @return значение счётчика после увеличения
+     */
+    long incrementMessageCount(Topic topic, LocalDateTime lastMessageTime);
+
+    /**
+     * Атомарно уменьшает счётчик сообщений Topic. Ошибка не перехватывается, чтобы откатить транзакцию вызывающего.
+     */
+    void decrementMessageCount(Topic topic);
+
+    /**
+     * Пересчитывает разошедшиеся с таблицей comments счётчики сообщений порциями по id.
+     */
+    void reconcileMessageCounts();
 }
@@ -2,11 +2,15 @@ package ru.java.mentor.oldranger.club.service.forum;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.projection.SubscribedTopicProjection;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface TopicVisitAndSubscriptionService {
 
@@ -20,7 +24,11 @@ public interface TopicVisitAndSubscriptionService {
 
     TopicVisitAndSubscription updateVisitTime(TopicVisitAndSubscription topicVisitAndSubscription);
 
-    TopicVisitAndSubscription updateVisitTime(User user, Topic topic);
+    /**
+     * Отмечает Topic просмотренным пользователем. Посещение сохраняется в базу не сразу,
+     * а через {@link TopicVisitBufferService}. Если записи о посещении нет, вызов ничего не делает.
+     */
+    void updateVisitTime(User user, Topic topic);
 
     TopicVisitAndSubscription getByUserAndTopic(User user, Topic topic);
 
@@ -30,9 +38,28 @@ public interface TopicVisitAndSubscriptionService {
 
     Page<TopicVisitAndSubscription> getPagebleTopicVisitAndSubscriptionForUser(User user, Pageable pageable);
 
+    /**
+     * Курсорная выдача подписок пользователя, сначала Topic с последней активностью.
+     *
+     * @param cursor {@code nextCursor} из предыдущей порции, {@code null} для первой
+     * @throws IllegalArgumentException если курсор повреждён
+     */
+    CursorSliceDto<SubscribedTopicProjection> getSubscribedTopicsSliceForUser(User user, String cursor, int size);
+
     List<TopicVisitAndSubscription> getTopicVisitAndSubscriptionForTopic(Topic topic);
 
     List<TopicVisitAndSubscription> getOnlySubscriptionsForTopic(Topic topic);
 
     List<User> getUsersSubscribedOnTopic(Topic topic);
+
+    /**
+     * Возвращает id тех Topic из переданного списка, на которые подписан пользователь.<br>
+     * Выполняется одним запросом, без загрузки всех подписок пользователя.
+     */
+    Set<Long> getSubscribedTopicIdsForUser(User user, List<Long> topicIds);
+
+    /**
+     * Позиции просмотра из ещё не сохранённых посещений пользователя, см. {@link TopicVisitBufferService}.
+     */
+    Map<Long, Long> getBufferedSeenPositions(User user, List<Long> topicIds);
 }
@@ -0,0 +1,30 @@
+package ru.java.mentor.oldranger.club.service.forum;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Буфер посещений Topic: просмотры копятся в памяти и пачками сохраняются в topic_visit_and_subscriptions.<br>
+ * Для каждой пары пользователь - Topic хранится только последнее посещение.
+ */
+public interface TopicVisitBufferService {
+
+    void recordVisit(Long userId, Long topicId, LocalDateTime visitTime, long seenPosition);
+
+    /**
+     * Ещё не сохранённые позиции просмотра пользователя для переданных Topic.
+     *
+     * @return "id Топика" - "lastSeenPosition", только для Topic с посещением в буфере
+     */
+    Map<Long, Long> getPendingSeenPositions(Long userId, Collection<Long> topicIds);
+
+    /**
+     * Сохраняет накопленные посещения.
+     *
+     * @return количество сохранённых посещений
+     */
+    int flush();
+
+    int getDepth();
+}
@@ -0,0 +1,35 @@
+package ru.java.mentor.oldranger.club.service.forum;
+
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранящаяся в памяти выборка N актуальных Topic для каждой Section (главная страница).<br>
+ * Отдельно ведутся представления для анонимов (без скрытых Topic) и для пользователей.
+ * Выборка загружается один раз и поддерживается изменениями Topic и новыми комментариями.
+ */
+public interface TopicsDigestService {
+
+    /**
+     * @return карта "id Section" - "актуальные Topic (новые сверху)"
+     */
+    Map<Long, List<Topic>> getActualTopicsBySection(boolean forAnon);
+
+    /**
+     * Вызывается после фиксации транзакции, в которой Topic создан, изменён, удалён или получил комментарий:
+     * при откате транзакции выборка не меняется.
+     */
+    void onEntityChanged(EntityChangedEvent event);
+
+    void onTopicSaved(Topic topic);
+
+    void onTopicDeleted(Long topicId);
+
+    /**
+     * Полная перезагрузка выборки из базы.
+     */
+    void rebuild();
+}
@@ -0,0 +1,81 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.java.mentor.oldranger.club.dto.CommentNotificationDto;
+import ru.java.mentor.oldranger.club.event.NewCommentEvent;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.forum.CommentNotificationService;
+import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+public class CommentNotificationServiceImpl implements CommentNotificationService {
+
+    static final String NOTIFICATIONS_DESTINATION = "/queue/notifications";
+
+    private final TopicVisitAndSubscriptionService topicVisitAndSubscriptionService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry simpUserRegistry;
+    private final TaskExecutor notificationExecutor;
+    private final int batchSize;
+
+    public CommentNotificationServiceImpl(TopicVisitAndSubscriptionService topicVisitAndSubscriptionService,
+                                          SimpMessagingTemplate messagingTemplate,
+                                          SimpUserRegistry simpUserRegistry,
+                                          @Qualifier("notificationExecutor") TaskExecutor notificationExecutor,
+                                          @Value("${project.notifications.batch-size:200}") int batchSize) {
+        this.topicVisitAndSubscriptionService = topicVisitAndSubscriptionService;
+        this.messagingTemplate = messagingTemplate;
+        this.simpUserRegistry = simpUserRegistry;
+        this.notificationExecutor = notificationExecutor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Выполняется после фиксации транзакции, в которой создан комментарий, и не задерживает ответ автору.
+     * Подписчики без открытой WebSocket сессии пропускаются, остальные делятся на пачки по {@code batchSize}.
+     */
+    @Override
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void notifySubscribers(NewCommentEvent event) {
+        CommentNotificationDto notification = event.getNotification();
+        log.debug("Notifying subscribers of topic with id = {} about comment {}", notification.getTopicId(), notification.getCommentId());
+        try {
+            List<String> recipients = new ArrayList<>();
+            for (User user : topicVisitAndSubscriptionService.getUsersSubscribedOnTopic(event.getTopic())) {
+                if (!user.getId().equals(notification.getAuthorId()) && simpUserRegistry.getUser(user.getUsername()) != null) {
+                    recipients.add(user.getUsername());
+                }
+            }
+            for (int from = 0; from < recipients.size(); from += batchSize) {
+                List<String> batch = recipients.subList(from, Math.min(from + batchSize, recipients.size()));
+                notificationExecutor.execute(() -> send(batch, notification));
+            }
+            log.debug("{} subscribers of topic with id = {} are online", recipients.size(), notification.getTopicId());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private void send(List<String> usernames, CommentNotificationDto notification) {
+        for (String username : usernames) {
+            try {
+                messagingTemplate.convertAndSendToUser(username, NOTIFICATIONS_DESTINATION, notification);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -2,21 +2,27 @@ package ru.java.mentor.oldranger.club.service.forum.impl;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import ru.java.mentor.oldranger.club.dao.ForumRepository.CommentRepository;
 import ru.java.mentor.oldranger.club.dto.CommentDto;
+import ru.java.mentor.oldranger.club.dto.CommentNotificationDto;
+import ru.java.mentor.oldranger.club.event.NewCommentEvent;
 import ru.java.mentor.oldranger.club.model.comment.Comment;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 import ru.java.mentor.oldranger.club.service.forum.CommentService;
 import ru.java.mentor.oldranger.club.service.forum.ImageCommnetService;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
 
 import java.time.Duration;
@@ -24,9 +30,12 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Slf4j
 @AllArgsConstructor
@@ -35,40 +44,52 @@ public class CommentServiceImpl implements CommentService {
 
     private CommentRepository commentRepository;
     private UserStatisticService userStatisticService;
+    private UserStatisticCounterService userStatisticCounterService;
     private TopicService topicService;
     private PhotoService photoService;
     private ImageCommnetService imageCommnetService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional
     public void createComment(Comment comment) {
         log.info("Saving comment {}", comment);
         try {
             Topic topic = comment.getTopic();
+            long messages = topicService.incrementMessageCount(topic, comment.getDateTime());
             topic.setLastMessageTime(comment.getDateTime());
-            long messages = topic.getMessageCount();
-            comment.setPosition(++messages);
             topic.setMessageCount(messages);
-            topicService.editTopicByName(topic);
+            comment.setPosition(messages);
             commentRepository.save(comment);
-            UserStatistic userStatistic = userStatisticService.getUserStaticByUser(comment.getUser());
-            messages = userStatistic.getMessageCount();
-            userStatistic.setMessageCount(++messages);
-            userStatistic.setLastComment(comment.getDateTime());
-            userStatisticService.saveUserStatic(userStatistic);
+            userStatisticCounterService.messagePosted(comment.getUser().getId(), comment.getDateTime());
+            eventPublisher.publishEvent(new NewCommentEvent(topic, new CommentNotificationDto(topic.getId(), topic.getName(),
+                    comment.getId(), comment.getPosition(), comment.getUser().getId(), comment.getUser().getNickName(),
+                    comment.getDateTime())));
             log.info("Comment saved");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+            // счётчик Topic мог уже увеличиться: без отката он разойдётся с comments
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
     }
 
     @Override
+    @Transactional
     public void deleteComment(Long id) {
         log.info("Deleting comment with id = {}", id);
         try {
+            Optional<Comment> comment = commentRepository.findById(id);
+            if (!comment.isPresent()) {
+                return;
+            }
+            Topic topic = comment.get().getTopic();
             commentRepository.deleteById(id);
+            updatePostion(topic.getId(), comment.get().getPosition());
+            topicService.decrementMessageCount(topic);
             log.info("Comment {} deleted", id);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
     }
 
@@ -99,20 +120,10 @@ public class CommentServiceImpl implements CommentService {
     public Page<CommentDto> getPageableCommentDtoByTopic(Topic topic, Pageable pageable, int position, User user) {
         log.debug("Getting page {} of comment dtos for topic with id = {}", pageable.getPageNumber(), topic.getId());
         Page<CommentDto> page = null;
-        List<Comment> list = new ArrayList<>();
         try {
-            commentRepository.findByTopic(topic,
-                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize() + position, pageable.getSort()))
-                    .map(list::add);
-            List<CommentDto> dtoList = null;
-            if (list.size() != 0) {
-                dtoList = list.subList(
-                        Math.min(position, list.size() - 1),
-                        Math.min(position + pageable.getPageSize(), list.size()))
-                        .stream().map(a->assembleCommentDto(a, user)).collect(Collectors.toList());
-            } else {
-                dtoList = Collections.emptyList();
-            }
+            List<Long> ids = commentRepository.findIdsByTopicId(topic.getId(), pageable.getPageSize(), pageable.getOffset() + position);
+            List<Comment> comments = ids.isEmpty() ? Collections.emptyList() : commentRepository.findAllWithAuthorsAndRepliesByIdIn(ids);
+            List<CommentDto> dtoList = assembleCommentDtos(comments, user);
             page = new PageImpl<CommentDto>(dtoList, pageable, dtoList.size());
             log.debug("Page returned");
         } catch (Exception e) {
@@ -126,7 +137,8 @@ public class CommentServiceImpl implements CommentService {
         log.debug("Getting page {} of comment dtos for user with id = {}", pageable.getPageNumber(), user.getId());
         Page<CommentDto> page = null;
         try {
-            page = commentRepository.findByUser(user, pageable).map(a->assembleCommentDto(a, user));
+            Page<Comment> comments = commentRepository.findByUser(user, pageable);
+            page = new PageImpl<>(assembleCommentDtos(comments.getContent(), user), pageable, comments.getTotalElements());
             log.debug("Page returned");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -134,40 +146,13 @@ public class CommentServiceImpl implements CommentService {
         return page;
     }
 
-
     public CommentDto assembleCommentDto(Comment comment, User user) {
         log.debug("Assembling comment {} dto", comment);
         CommentDto commentDto = new CommentDto();
         try {
-            LocalDateTime replyTime = null;
-            String replyNick = null;
-            String replyText = null;
-            if (comment.getAnswerTo() != null) {
-                replyTime = comment.getAnswerTo().getDateTime();
-                replyNick = comment.getAnswerTo().getUser().getNickName();
-                replyText = comment.getAnswerTo().getCommentText();
-            }
-            commentDto.setCommentId(comment.getId());
-            commentDto.setPositionInTopic(comment.getPosition());
-            commentDto.setTopicId(comment.getTopic().getId());
-            commentDto.setAuthor(comment.getUser());
-            commentDto.setCommentDateTime(comment.getDateTime());
-            commentDto.setMessageCount(userStatisticService.getUserStaticById(comment.getUser().getId()).getMessageCount());
-            commentDto.setReplyDateTime(replyTime);
-            commentDto.setReplyNick(replyNick);
-            commentDto.setReplyText(replyText);
-            commentDto.setCommentText(comment.getCommentText());
-            commentDto.setPhotos(photoService.findByAlbumTitleAndDescription("PhotoAlbum by " +
-                    comment.getTopic().getName(), comment.getId().toString()));
-
-            boolean allowedEditingTime = LocalDateTime.now().compareTo(comment.getDateTime().plusDays(7)) >= 0;
-            if (user == null) {
-                commentDto.setUpdatable(false);
-            } else if (user.getId().equals(comment.getUser().getId()) && !allowedEditingTime) {
-                commentDto.setUpdatable(true);
-            } else {
-                commentDto.setUpdatable(false);
-            }
+            UserStatistic userStatistic = userStatisticService.getUserStaticById(comment.getUser().getId());
+            List<Photo> photos = photoService.findByCommentIds(Collections.singleton(comment.getId()));
+            commentDto = buildCommentDto(comment, user, userStatistic.getMessageCount(), photos);
             log.debug("Comment dto assembled");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -175,6 +160,70 @@ public class CommentServiceImpl implements CommentService {
         return commentDto;
     }
 
+    /**
+     * Сборка dto для списка комментариев: статистика авторов и фотографии
+     * подтягиваются одним запросом на весь список, а не на каждый комментарий.
+     */
+    @Override
+    public List<CommentDto> assembleCommentDtos(List<Comment> comments, User user) {
+        log.debug("Assembling {} comment dtos", comments.size());
+        List<CommentDto> dtos = new ArrayList<>(comments.size());
+        if (comments.isEmpty()) {
+            return dtos;
+        }
+        Set<Long> authorIds = new HashSet<>();
+        Set<Long> commentIds = new HashSet<>();
+        for (Comment comment : comments) {
+            authorIds.add(comment.getUser().getId());
+            commentIds.add(comment.getId());
+        }
+        Map<Long, Long> messageCounts = userStatisticService.getMessageCountsByUserIds(authorIds);
+        Map<Long, List<Photo>> photosByCommentId = new HashMap<>();
+        for (Photo photo : photoService.findByCommentIds(commentIds)) {
+            photosByCommentId.computeIfAbsent(photo.getCommentId(), k -> new ArrayList<>()).add(photo);
+        }
+        for (Comment comment : comments) {
+            dtos.add(buildCommentDto(comment, user,
+                    messageCounts.getOrDefault(comment.getUser().getId(), 0L),
+                    photosByCommentId.getOrDefault(comment.getId(), Collections.emptyList())));
+        }
+        log.debug("Comment dtos assembled");
+        return dtos;
+    }
+
+    private CommentDto buildCommentDto(Comment comment, User user, long messageCount, List<Photo> photos) {
+        CommentDto commentDto = new CommentDto();
+        LocalDateTime replyTime = null;
+        String replyNick = null;
+        String replyText = null;
+        if (comment.getAnswerTo() != null) {
+            replyTime = comment.getAnswerTo().getDateTime();
+            replyNick = comment.getAnswerTo().getUser().getNickName();
+            replyText = comment.getAnswerTo().getCommentText();
+        }
+        commentDto.setCommentId(comment.getId());
+        commentDto.setPositionInTopic(comment.getPosition());
+        commentDto.setTopicId(comment.getTopic().getId());
+        commentDto.setAuthor(comment.getUser());
+        commentDto.setCommentDateTime(comment.getDateTime());
+        commentDto.setMessageCount(messageCount);
+        commentDto.setReplyDateTime(replyTime);
+        commentDto.setReplyNick(replyNick);
+        commentDto.setReplyText(replyText);
+        commentDto.setCommentText(comment.getCommentText());
+        commentDto.setPhotos(photos);
+
+        boolean allowedEditingTime = LocalDateTime.now().compareTo(comment.getDateTime().plusDays(7)) >= 0;
+        if (user == null) {
+            commentDto.setUpdatable(false);
+        } else if (user.getId().equals(comment.getUser().getId()) && !allowedEditingTime) {
+            commentDto.setUpdatable(true);
+        } else {
+            commentDto.setUpdatable(false);
+        }
+        return commentDto;
+    }
+
     @Override
     public List<Comment> getAllComments() {
         log.debug("Getting all comments");
@@ -220,10 +269,8 @@ public class CommentServiceImpl implements CommentService {
     @Override
     public void updatePostion(Long topicID, Long deletedPosition) {
         log.debug("Updating comments position with topic_id = {}", topicID);
-        List<Comment> comments = commentRepository.findByPositionGreaterThanAndTopicId(deletedPosition, topicID);
-        comments.forEach(a->{
-            a.setPosition(a.getPosition() - 1);
-            commentRepository.save(a);
-        });
+        if (deletedPosition != null) {
+            commentRepository.shiftPositionsAfterDeleted(topicID, deletedPosition);
+        }
     }
 }
\ No newline at end of file
@@ -10,19 +10,23 @@ import ru.java.mentor.oldranger.club.dto.SectionsAndTopicsDto;
 import ru.java.mentor.oldranger.club.model.comment.Comment;
 import ru.java.mentor.oldranger.club.model.forum.Section;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
-import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.Role;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.service.forum.SectionService;
 import ru.java.mentor.oldranger.club.service.forum.SectionsAndTopicsService;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
 import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
+import ru.java.mentor.oldranger.club.service.forum.TopicsDigestService;
 import ru.java.mentor.oldranger.club.service.utils.SearchService;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -35,6 +39,7 @@ public class SectionsAndTopicsServiceImpl implements SectionsAndTopicsService {
     private TopicService topicService;
     private TopicVisitAndSubscriptionService topicVisitAndSubscriptionService;
     private SearchService searchService;
+    private TopicsDigestService topicsDigestService;
 
     public List<SectionsAndTopicsDto> getAllSectionsAndActualTopicsLimit10BySection() {
         log.debug("Getting list of actual sections and topics");
@@ -44,9 +49,9 @@ public class SectionsAndTopicsServiceImpl implements SectionsAndTopicsService {
             Collection<? extends GrantedAuthority> reachableGrantedAuthorities = roleHierarchy.getReachableGrantedAuthorities(authorities);
             if (reachableGrantedAuthorities.contains(new Role("ROLE_USER"))) {
                 User user = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-                sectionsAndTopicsDtos = combineListOfSectionsAndTopicsSortSubscriptionsFirst(sectionService.getAllSections(), topicService.getActualTopicsLimit10BySection(), user);
+                sectionsAndTopicsDtos = combineSectionsAndDigest(sectionService.getAllSections(), topicsDigestService.getActualTopicsBySection(false), user);
             } else {
-                sectionsAndTopicsDtos = combineListOfSectionsAndTopics(sectionService.getAllSectionsForAnon(), topicService.getActualTopicsLimit10BySectionForAnon());
+                sectionsAndTopicsDtos = combineSectionsAndDigest(sectionService.getAllSectionsForAnon(), topicsDigestService.getActualTopicsBySection(true), null);
             }
             log.debug("Returned list of {} dtos", sectionsAndTopicsDtos.size());
         } catch (Exception e) {
@@ -55,13 +60,32 @@ public class SectionsAndTopicsServiceImpl implements SectionsAndTopicsService {
         return sectionsAndTopicsDtos;
     }
 
+    /**
+     * Сборка главной страницы из выборки {@link TopicsDigestService}, без обращения к таблице topics.
+     */
+    private List<SectionsAndTopicsDto> combineSectionsAndDigest(List<Section> sections, Map<Long, List<Topic>> topicsBySection, User user) {
+        log.debug("Combining list of sections and topics digest");
+        List<SectionsAndTopicsDto> dtos = new ArrayList<>(sections.size());
+        Comparator<Topic> subscriptionsFirst = user == null ? null
+                : subscriptionsFirst(user, topicsBySection.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+        for (Section section : sections) {
+            List<Topic> topicList = new ArrayList<>(topicsBySection.getOrDefault(section.getId(), Collections.emptyList()));
+            if (subscriptionsFirst != null) {
+                topicList.sort(subscriptionsFirst);
+            }
+            dtos.add(new SectionsAndTopicsDto(section, topicList));
+        }
+        log.debug("Returned list of {} dtos", dtos.size());
+        return dtos;
+    }
+
     private List<SectionsAndTopicsDto> combineListOfSectionsAndTopics(List<Section> sections, List<Topic> topics) {
         log.debug("Combining list of sections and topics");
-        List<SectionsAndTopicsDto> dtos = new ArrayList<>();
+        Map<Long, List<Topic>> topicsBySection = groupBySection(topics);
+        List<SectionsAndTopicsDto> dtos = new ArrayList<>(sections.size());
         for (Section section : sections) {
-            List<Topic> topicList = topics.stream().filter(topic -> topic.getSection().equals(section)).collect(Collectors.toList());
-            SectionsAndTopicsDto dto = new SectionsAndTopicsDto(section, topicList);
-            dtos.add(dto);
+            List<Topic> topicList = topicsBySection.getOrDefault(section.getId(), new ArrayList<>());
+            dtos.add(new SectionsAndTopicsDto(section, topicList));
         }
         log.debug("Returned list of {} dtos", dtos.size());
         return dtos;
@@ -69,17 +93,14 @@ public class SectionsAndTopicsServiceImpl implements SectionsAndTopicsService {
 
     private List<SectionsAndTopicsDto> combineListOfSectionsAndTopicsSortSubscriptionsFirst(List<Section> sections, List<Topic> topics, User user) {
         log.debug("Combining list of sections and topics (subscriptions first)");
-        List<SectionsAndTopicsDto> dtos = new ArrayList<>();
+        List<SectionsAndTopicsDto> dtos = new ArrayList<>(sections.size());
         try {
-            List<TopicVisitAndSubscription> subscriptionsForUser = topicVisitAndSubscriptionService.getTopicVisitAndSubscriptionForUser(user);
+            Comparator<Topic> subscriptionsFirst = subscriptionsFirst(user, topics);
+            Map<Long, List<Topic>> topicsBySection = groupBySection(topics);
             for (Section section : sections) {
-                List<Topic> topicList = topics
-                        .stream()
-                        .filter(topic -> topic.getSection().equals(section))
-                        .sorted(new TopicsHasUserSubscriptionFirst(subscriptionsForUser))
-                        .collect(Collectors.toList());
-                SectionsAndTopicsDto dto = new SectionsAndTopicsDto(section, topicList);
-                dtos.add(dto);
+                List<Topic> topicList = topicsBySection.getOrDefault(section.getId(), new ArrayList<>());
+                topicList.sort(subscriptionsFirst);
+                dtos.add(new SectionsAndTopicsDto(section, topicList));
             }
             log.debug("Returned list of {} dtos", dtos.size());
         } catch (Exception e) {
@@ -89,18 +110,39 @@ public class SectionsAndTopicsServiceImpl implements SectionsAndTopicsService {
         return dtos;
     }
 
-    private static class TopicsHasUserSubscriptionFirst implements Comparator<Topic> {
+    /**
+     * Раскладывает Topic по id их Section за один проход, порядок Topic внутри Section сохраняется.
+     */
+    private Map<Long, List<Topic>> groupBySection(List<Topic> topics) {
+        Map<Long, List<Topic>> topicsBySection = new HashMap<>();
+        for (Topic topic : topics) {
+            topicsBySection.computeIfAbsent(topic.getSection().getId(), id -> new ArrayList<>()).add(topic);
+        }
+        return topicsBySection;
+    }
+
+    /**
+     * Сравнение "сначала Topic, на которые подписан пользователь". Подписки загружаются одним запросом
+     * только для переданных Topic, дальше проверка &ndash; поиск в {@code Set}.
+     */
+    private Comparator<Topic> subscriptionsFirst(User user, List<Topic> topics) {
+        List<Long> topicIds = topics.stream().map(Topic::getId).distinct().collect(Collectors.toList());
+        Set<Long> subscribedTopicIds = topicVisitAndSubscriptionService.getSubscribedTopicIdsForUser(user, topicIds);
+        return new TopicsHasUserSubscriptionFirst(subscribedTopicIds);
+    }
+
+    static class TopicsHasUserSubscriptionFirst implements Comparator<Topic> {
 
-        private List<TopicVisitAndSubscription> subscriptionsForUser;
+        private final Set<Long> subscribedTopicIds;
 
-        TopicsHasUserSubscriptionFirst(List<TopicVisitAndSubscription> subscriptionsForUser) {
-            this.subscriptionsForUser = subscriptionsForUser;
+        TopicsHasUserSubscriptionFirst(Set<Long> subscribedTopicIds) {
+            this.subscribedTopicIds = subscribedTopicIds;
         }
 
         @Override
         public int compare(Topic o1, Topic o2) {
-            boolean o1HasSubscription = subscriptionsForUser.stream().anyMatch(subscription -> subscription.getTopic().equals(o1));
-            boolean o2HasSubscription = subscriptionsForUser.stream().anyMatch(subscription -> subscription.getTopic().equals(o2));
+            boolean o1HasSubscription = subscribedTopicIds.contains(o1.getId());
+            boolean o2HasSubscription = subscribedTopicIds.contains(o2.getId());
             return Boolean.compare(o2HasSubscription, o1HasSubscription);
         }
     }
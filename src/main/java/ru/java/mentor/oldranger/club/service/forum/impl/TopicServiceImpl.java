@@ -6,26 +6,35 @@ import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
 import ru.java.mentor.oldranger.club.dto.TopicAndNewMessagesCountDto;
+import ru.java.mentor.oldranger.club.dto.TopicCursor;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
 import ru.java.mentor.oldranger.club.model.forum.Subsection;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
-import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.User;
-import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
 import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
-import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -34,21 +43,21 @@ import java.util.stream.Collectors;
 @CacheConfig(cacheNames = {"topic"})
 public class TopicServiceImpl implements TopicService {
 
+    private static final int RECONCILE_CHUNK_SIZE = 1000;
+
     private TopicRepository topicRepository;
-    private UserStatisticService userStatisticService;
+    private UserStatisticCounterService userStatisticCounterService;
     private SecurityUtilsService securityUtilsService;
     private TopicVisitAndSubscriptionService topicVisitAndSubscriptionService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "topic", allEntries = true), @CacheEvict(value = "allTopic", allEntries = true)})
     public void createTopic(Topic topic) {
         log.info("Saving topic {}", topic);
         try {
-            UserStatistic userStatistic = userStatisticService.getUserStaticByUser(topic.getTopicStarter());
-            long topicCount = userStatistic.getTopicStartCount();
-            userStatistic.setTopicStartCount(++topicCount);
-            userStatisticService.saveUserStatic(userStatistic);
             topicRepository.save(topic);
+            userStatisticCounterService.topicStarted(topic.getTopicStarter().getId());
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, topic.getId()));
             log.info("Topic saved");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -56,11 +65,11 @@ public class TopicServiceImpl implements TopicService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "topic", allEntries = true), @CacheEvict(value = "allTopic", allEntries = true)})
     public void editTopicByName(Topic topic) {
         log.info("Saving topic {}", topic);
         try {
             topicRepository.save(topic);
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, topic.getId()));
             log.info("Topic saved");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -68,11 +77,11 @@ public class TopicServiceImpl implements TopicService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "topic", allEntries = true), @CacheEvict(value = "allTopic", allEntries = true)})
     public void deleteTopicById(Long id) {
         log.info("Deleting topic with id = {}", id);
         try {
             topicRepository.deleteById(id);
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, id));
             log.info("Topic deleted");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -216,7 +225,7 @@ public class TopicServiceImpl implements TopicService {
     }
 
     @Override
-    @Cacheable(cacheNames = {"allTopic"}, key = "#user")
+    @Cacheable(cacheNames = {"allTopic"}, keyGenerator = "customKeyGenerator")
     public Page<Topic> findAllTopicsStartedByUser(User user, Pageable pageable) {
         log.debug("Getting page {} of topics started by user with id = {}", pageable.getPageNumber(), user.getId());
         Page<Topic> page = null;
@@ -249,6 +258,76 @@ public class TopicServiceImpl implements TopicService {
         return page;
     }
 
+    @Override
+    public CursorSliceDto<Topic> getSliceBySubsection(Subsection subsection, String cursor, int size) {
+        if (securityUtilsService.isLoggedUserIsUser()) {
+            return getPageableBySubsectionForUser(securityUtilsService.getLoggedUser(), subsection, cursor, size);
+        }
+        log.debug("Getting slice of topics for subsection for anon with id = {}", subsection.getId());
+        TopicCursor position = TopicCursor.decode(cursor);
+        List<Topic> topics = seek(position, size,
+                (time, id, limit) -> topicRepository.getSliceBySubsectionForAnonAfter(subsection.getId(), time, id, limit),
+                (id, limit) -> topicRepository.getUndatedSliceBySubsectionForAnonAfter(subsection.getId(), id, limit));
+        String nextCursor = topics.size() < size ? null : TopicCursor.after(topics.get(topics.size() - 1), false).encode();
+        return new CursorSliceDto<>(topics, nextCursor);
+    }
+
+    @Override
+    public CursorSliceDto<Topic> getPageableBySubsectionForUser(User user, Subsection subsection, String cursor, int size) {
+        log.debug("Getting slice of topics by subsection id = {} and user id = {}", subsection.getId(), user.getId());
+        TopicCursor position = TopicCursor.decode(cursor);
+        List<Topic> topics = new ArrayList<>(size);
+        boolean lastHasNew = position.isSubscriberHasNew();
+        if (position.isSubscriberHasNew()) {
+            topics.addAll(seek(position, size,
+                    (time, id, limit) -> topicRepository.getSliceBySubsectionForUserWithNewMessagesAfter(user.getId(), subsection.getId(), time, id, limit),
+                    (id, limit) -> topicRepository.getUndatedSliceBySubsectionForUserWithNewMessagesAfter(user.getId(), subsection.getId(), id, limit)));
+            if (topics.size() < size) {
+                position = TopicCursor.first();
+            }
+        }
+        if (topics.size() < size) {
+            List<Topic> rest = seek(position, size - topics.size(),
+                    (time, id, limit) -> topicRepository.getSliceBySubsectionForUserWithoutNewMessagesAfter(user.getId(), subsection.getId(), time, id, limit),
+                    (id, limit) -> topicRepository.getUndatedSliceBySubsectionForUserWithoutNewMessagesAfter(user.getId(), subsection.getId(), id, limit));
+            if (!rest.isEmpty()) {
+                lastHasNew = false;
+            }
+            topics.addAll(rest);
+        }
+        String nextCursor = topics.size() < size ? null : TopicCursor.after(topics.get(topics.size() - 1), lastHasNew).encode();
+        log.debug("Returned slice of {} topics", topics.size());
+        return new CursorSliceDto<>(topics, nextCursor);
+    }
+
+    /**
+     * Topic без даты последнего сообщения идут в конце выдачи и читаются отдельным запросом:
+     * так сравнение по date_last_message остаётся без coalesce и использует индекс.
+     */
+    private List<Topic> seek(TopicCursor position, int size, DatedTopicQuery dated, UndatedTopicQuery undated) {
+        List<Topic> topics = new ArrayList<>(size);
+        long undatedAfter = Long.MAX_VALUE;
+        if (TopicCursor.EMPTY_TIME.equals(position.getLastMessageTime())) {
+            undatedAfter = position.getId();
+        } else {
+            topics.addAll(dated.find(position.getLastMessageTime(), position.getId(), size));
+        }
+        if (topics.size() < size) {
+            topics.addAll(undated.find(undatedAfter, size - topics.size()));
+        }
+        return topics;
+    }
+
+    @FunctionalInterface
+    private interface DatedTopicQuery {
+        List<Topic> find(LocalDateTime lastMessageTime, long id, int limit);
+    }
+
+    @FunctionalInterface
+    private interface UndatedTopicQuery {
+        List<Topic> find(long id, int limit);
+    }
+
     @Override
     public List<IdAndNumberProjection> getMessagesCountForTopics(List<Topic> topics) {
         log.debug("Getting messages count for topics");
@@ -277,41 +356,92 @@ public class TopicServiceImpl implements TopicService {
         return projections;
     }
 
+    @Override
+    public long countTopicsWithNewMessagesForUser(User user) {
+        log.debug("Counting topics with new messages for user with id = {}", user.getId());
+        long count = 0;
+        try {
+            count = topicRepository.countTopicsWithNewMessagesForUserId(user.getId());
+            log.debug("User has {} topics with new messages", count);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return count;
+    }
+
+    @Override
+    @Transactional
+    public long incrementMessageCount(Topic topic, LocalDateTime lastMessageTime) {
+        log.debug("Incrementing messages count for topic with id = {}", topic.getId());
+        topicRepository.incrementMessageCount(topic.getId(), lastMessageTime);
+        long messageCount = topicRepository.getMessageCount(topic.getId());
+        topic.setMessageCount(messageCount);
+        if (topic.getLastMessageTime() == null || topic.getLastMessageTime().isBefore(lastMessageTime)) {
+            topic.setLastMessageTime(lastMessageTime);
+        }
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, topic.getId()));
+        return messageCount;
+    }
+
+    @Override
+    @Transactional
+    public void decrementMessageCount(Topic topic) {
+        log.debug("Decrementing messages count for topic with id = {}", topic.getId());
+        topicRepository.decrementMessageCount(topic.getId());
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, topic.getId()));
+    }
+
+    @Override
+    @Scheduled(cron = "${project.topic.message-count-reconcile-cron:0 15 4 * * *}")
+    @Caching(evict = {@CacheEvict(value = "topic", allEntries = true), @CacheEvict(value = "allTopic", allEntries = true)})
+    public void reconcileMessageCounts() {
+        log.info("Starting topic messages count reconciliation");
+        try {
+            long maxId = topicRepository.getMaxId();
+            int fixed = 0;
+            for (long fromId = 1; fromId <= maxId; fromId += RECONCILE_CHUNK_SIZE) {
+                fixed += topicRepository.reconcileMessageCountForIdRange(fromId, fromId + RECONCILE_CHUNK_SIZE - 1);
+            }
+            log.info("Topic messages count reconciled, {} topics fixed", fixed);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<TopicAndNewMessagesCountDto> getTopicsDto(List<Topic> topics) {
         log.debug("Getting list of topic dtos");
         boolean logged = false;
-        List<IdAndNumberProjection> newMessagesCountForTopicsAndUser = null;
-        List<TopicVisitAndSubscription> topicVisitAndSubscriptionForUser = null;
-        List<TopicAndNewMessagesCountDto> dtos = new ArrayList<>();
+        Map<Long, Long> newMessagesCountForTopics = Collections.emptyMap();
+        Set<Long> subscribedTopicIds = Collections.emptySet();
+        Map<Long, Long> bufferedSeenPositions = Collections.emptyMap();
+        List<TopicAndNewMessagesCountDto> dtos = new ArrayList<>(topics.size());
         try {
             if (securityUtilsService.isLoggedUserIsUser()) {
                 logged = true;
                 User loggedUser = securityUtilsService.getLoggedUser();
-                newMessagesCountForTopicsAndUser = getNewMessagesCountForTopicsAndUser(topics, loggedUser);
-                topicVisitAndSubscriptionForUser = topicVisitAndSubscriptionService.getTopicVisitAndSubscriptionForUser(loggedUser);
+                List<Long> topicIds = topics.stream().map(Topic::getId).collect(Collectors.toList());
+                newMessagesCountForTopics = toIdAndNumberMap(getNewMessagesCountForTopicsAndUser(topics, loggedUser));
+                subscribedTopicIds = topicVisitAndSubscriptionService.getSubscribedTopicIdsForUser(loggedUser, topicIds);
+                bufferedSeenPositions = topicVisitAndSubscriptionService.getBufferedSeenPositions(loggedUser, topicIds);
             }
-            List<IdAndNumberProjection> messagesCountForTopics = getMessagesCountForTopics(topics);
+            Map<Long, Long> messagesCountForTopics = toIdAndNumberMap(getMessagesCountForTopics(topics));
             for (Topic topic : topics) {
                 TopicAndNewMessagesCountDto dto = new TopicAndNewMessagesCountDto();
                 dto.setTopic(topic);
-                Optional<IdAndNumberProjection> messagesCountForTopic = messagesCountForTopics.stream().filter(t -> t.getId() == topic.getId()).findAny();
-                if (messagesCountForTopic.isPresent()) {
-                    dto.setTotalMessages(messagesCountForTopic.get().getNumber());
-                } else {
-                    dto.setTotalMessages(0);
-                }
+                long totalMessages = messagesCountForTopics.getOrDefault(topic.getId(), 0L);
+                dto.setTotalMessages(totalMessages);
                 if (logged) {
-                    boolean isSubscribed = topicVisitAndSubscriptionForUser.stream().filter(t -> t.getTopic().getId().equals(topic.getId())).anyMatch(TopicVisitAndSubscription::isSubscribed);
-                    dto.setIsSubscribed(isSubscribed);
-                    Optional<IdAndNumberProjection> newMessages = newMessagesCountForTopicsAndUser.stream().filter(t -> t.getId() == topic.getId()).findAny();
-                    if (newMessages.isPresent()) {
-                        dto.setHasNewMessages(true);
-                        dto.setNewMessagesCount(newMessages.get().getNumber());
-                    } else {
-                        dto.setHasNewMessages(false);
-                        dto.setNewMessagesCount(0L);
+                    dto.setIsSubscribed(subscribedTopicIds.contains(topic.getId()));
+                    Long newMessages = newMessagesCountForTopics.get(topic.getId());
+                    Long bufferedSeenPosition = bufferedSeenPositions.get(topic.getId());
+                    if (bufferedSeenPosition != null && newMessages != null) {
+                        // посещение ещё не сохранено в базу
+                        long unread = totalMessages - bufferedSeenPosition;
+                        newMessages = unread > 0 ? Math.min(unread, newMessages) : null;
                     }
+                    dto.setHasNewMessages(newMessages != null);
+                    dto.setNewMessagesCount(newMessages != null ? newMessages : 0L);
                 } else {
                     dto.setIsSubscribed(null);
                     dto.setHasNewMessages(null);
@@ -325,4 +455,15 @@ public class TopicServiceImpl implements TopicService {
         }
         return dtos;
     }
+
+    private Map<Long, Long> toIdAndNumberMap(List<IdAndNumberProjection> projections) {
+        if (projections == null) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Long> map = new HashMap<>(projections.size() * 2);
+        for (IdAndNumberProjection projection : projections) {
+            map.put(projection.getId(), projection.getNumber());
+        }
+        return map;
+    }
 }
@@ -2,20 +2,29 @@ package ru.java.mentor.oldranger.club.service.forum.impl;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicVisitAndSubscriptionRepository;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
+import ru.java.mentor.oldranger.club.dto.TopicCursor;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.forum.TopicVisitAndSubscription;
 import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.projection.SubscribedTopicProjection;
 import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
+import ru.java.mentor.oldranger.club.service.forum.TopicVisitBufferService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,8 +33,10 @@ import java.util.stream.Collectors;
 public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscriptionService {
 
     private TopicVisitAndSubscriptionRepository topicVisitAndSubscriptionRepository;
+    private TopicVisitBufferService topicVisitBufferService;
 
     @Override
+    @CacheEvict(cacheNames = "topicSubscribers", key = "#topicVisitAndSubscription.topic.id")
     public TopicVisitAndSubscription save(TopicVisitAndSubscription topicVisitAndSubscription) {
         log.info("Saving TopicVisitAndSubscription {}", topicVisitAndSubscription);
         TopicVisitAndSubscription result = null;
@@ -39,6 +50,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
     }
 
     @Override
+    @CacheEvict(cacheNames = "topicSubscribers", key = "#topic.id")
     public TopicVisitAndSubscription subscribeUserOnTopic(User user, Topic topic) {
         log.info("Subscribing user with id = {} on topic {}", user.getId(), topic.getId());
         TopicVisitAndSubscription result = null;
@@ -47,6 +59,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
             if (topicVisitAndSubscription == null) {
                 topicVisitAndSubscription = new TopicVisitAndSubscription(user, topic, true);
                 topicVisitAndSubscription.setSubscriptionTime(LocalDateTime.now());
+                topicVisitAndSubscription.setLastSeenPosition(getTopicMessageCount(topic));
             } else {
                 topicVisitAndSubscription.setSubscribed(true);
             }
@@ -59,6 +72,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
     }
 
     @Override
+    @CacheEvict(cacheNames = "topicSubscribers", key = "#topicVisitAndSubscription.topic.id")
     public TopicVisitAndSubscription unsubscribe(TopicVisitAndSubscription topicVisitAndSubscription) {
         log.info("Unsubscribing from topic");
         TopicVisitAndSubscription result = null;
@@ -73,6 +87,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
     }
 
     @Override
+    @CacheEvict(cacheNames = "topicSubscribers", key = "#topic.id")
     public TopicVisitAndSubscription unsubscribeUserFromTopic(User user, Topic topic) {
         log.info("Unsubscribing user with id = {} from topic {}", user.getId(), topic.getId());
         TopicVisitAndSubscription result = null;
@@ -80,6 +95,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
             TopicVisitAndSubscription topicVisitAndSubscription = getByUserAndTopic(user, topic);
             if (topicVisitAndSubscription == null) {
                 topicVisitAndSubscription = new TopicVisitAndSubscription(user, topic, false);
+                topicVisitAndSubscription.setLastSeenPosition(getTopicMessageCount(topic));
             } else {
                 topicVisitAndSubscription.setSubscribed(false);
             }
@@ -97,6 +113,7 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
         TopicVisitAndSubscription result = null;
         try {
             topicVisitAndSubscription.setLastVisitTime(LocalDateTime.now());
+            topicVisitAndSubscription.setLastSeenPosition(getTopicMessageCount(topicVisitAndSubscription.getTopic()));
             result = topicVisitAndSubscriptionRepository.save(topicVisitAndSubscription);
             log.info("Last visit time updated");
         } catch (Exception e) {
@@ -106,17 +123,21 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
     }
 
     @Override
-    @Transactional
-    public TopicVisitAndSubscription updateVisitTime(User user, Topic topic) {
+    public void updateVisitTime(User user, Topic topic) {
         if (user == null || topic == null) {
-            return null;
+            return;
         }
-        log.info("Updating last visit time for user with id = {} and topic with id = {}", user.getId(), topic.getId());
-        TopicVisitAndSubscription subscription = getByUserAndTopic(user, topic);
-        if (subscription != null) {
-            return updateVisitTime(subscription);
-        } else {
-            return null;
+        log.debug("Buffering visit of user with id = {} to topic with id = {}", user.getId(), topic.getId());
+        try {
+            // буфер только обновляет существующие записи, без записи посещение всё равно не сохранится
+            if (!topicVisitAndSubscriptionRepository.existsByUserIdAndTopicId(user.getId(), topic.getId())) {
+                log.debug("User with id = {} has no visit record for topic with id = {}", user.getId(), topic.getId());
+                return;
+            }
+            // topic мог прийти из кэша со старым счётчиком, поэтому позиция берётся из базы
+            topicVisitBufferService.recordVisit(user.getId(), topic.getId(), LocalDateTime.now(), getTopicMessageCount(topic));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
         }
     }
 
@@ -138,10 +159,8 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
         log.debug("Getting page {} of subscriptions for user with id = {}", pageable.getPageNumber(), user.getId());
         Page<TopicVisitAndSubscription> page = null;
         try {
-            List<TopicVisitAndSubscription> sub = setHasNewMessages(topicVisitAndSubscriptionRepository.getAllByUser(user));
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), sub.size());
-            page = new PageImpl<>(sub.subList(start, end), pageable, sub.size());
+            page = topicVisitAndSubscriptionRepository.getPageByUser(user, unsorted(pageable));
+            setHasNewMessages(page.getContent());
             log.debug("Page returned");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -167,10 +186,9 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
         log.debug("Getting page {} of subscriptions for user with id = {}", pageable.getPageNumber(), user.getId());
         Page<Topic> page = null;
         try {
-            List<Topic> topics = topicVisitAndSubscriptionRepository.getSubscribedTopicsByUser(user);
-            int start = (int) pageable.getOffset();
-            int end = (start + pageable.getPageSize()) > topics.size() ? topics.size() : (start + pageable.getPageSize());
-            page = new PageImpl<Topic>(start < end ? topics.subList(start, end) : Collections.emptyList(), pageable, topics.size());
+            // страница не фильтруется по буферу посещений, иначе она разойдётся с totalElements и соседними страницами;
+            // просмотренный Topic исчезнет из неё после сохранения буфера
+            page = topicVisitAndSubscriptionRepository.getSubscribedTopicsWithNewMessagesPageByUser(user, unsorted(pageable));
             log.debug("Page returned");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -178,6 +196,34 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
         return page;
     }
 
+    @Override
+    public CursorSliceDto<SubscribedTopicProjection> getSubscribedTopicsSliceForUser(User user, String cursor, int size) {
+        log.debug("Getting slice of subscriptions for user with id = {}", user.getId());
+        TopicCursor position = TopicCursor.decode(cursor);
+        List<SubscribedTopicProjection> topics = topicVisitAndSubscriptionRepository.getSubscribedTopicsSliceByUser(
+                user, position.getLastMessageTime(), position.getId(), TopicCursor.EMPTY_TIME, PageRequest.of(0, size));
+        String nextCursor = null;
+        Map<Long, Long> bufferedPositions = getBufferedSeenPositions(user,
+                topics.stream().map(SubscribedTopicProjection::getTopicId).collect(Collectors.toList()));
+        if (!bufferedPositions.isEmpty()) {
+            // просмотренные, но ещё не сохранённые посещения снимают отметку о новых сообщениях
+            List<SubscribedTopicProjection> seen = new ArrayList<>(topics.size());
+            for (SubscribedTopicProjection topic : topics) {
+                Long bufferedPosition = bufferedPositions.get(topic.getTopicId());
+                seen.add(bufferedPosition != null && Boolean.TRUE.equals(topic.getHasNew())
+                        && topic.getMessageCount() <= bufferedPosition ? new SeenSubscribedTopic(topic) : topic);
+            }
+            topics = seen;
+        }
+        if (topics.size() == size) {
+            SubscribedTopicProjection last = topics.get(topics.size() - 1);
+            LocalDateTime lastMessageTime = last.getLastMessageTime() == null ? TopicCursor.EMPTY_TIME : last.getLastMessageTime();
+            nextCursor = new TopicCursor(false, lastMessageTime, last.getTopicId()).encode();
+        }
+        log.debug("Returned slice of {} subscriptions", topics.size());
+        return new CursorSliceDto<>(topics, nextCursor);
+    }
+
     @Override
     public List<TopicVisitAndSubscription> getTopicVisitAndSubscriptionForTopic(Topic topic) {
         log.debug("Getting list of visit and subscriptions for topic with id = {}", topic.getId());
@@ -205,19 +251,89 @@ public class TopicVisitAndSubscriptionServiceImpl implements TopicVisitAndSubscr
     }
 
     @Override
+    @Cacheable(cacheNames = "topicSubscribers", key = "#topic.id")
     public List<User> getUsersSubscribedOnTopic(Topic topic) {
         log.debug("Getting list of users subscribed on topic with id = {}", topic.getId());
-        return getOnlySubscriptionsForTopic(topic).stream().map(TopicVisitAndSubscription::getUser).collect(Collectors.toList());
+        List<User> users = new ArrayList<>();
+        try {
+            users = topicVisitAndSubscriptionRepository.getSubscribedUsersByTopic(topic);
+            log.debug("Returned list of {} users", users.size());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return users;
+    }
+
+    @Override
+    public Set<Long> getSubscribedTopicIdsForUser(User user, List<Long> topicIds) {
+        log.debug("Getting subscribed topic ids for user with id = {}", user.getId());
+        Set<Long> ids = new HashSet<>();
+        if (topicIds.isEmpty()) {
+            return ids;
+        }
+        try {
+            ids.addAll(topicVisitAndSubscriptionRepository.getSubscribedTopicIdsByUserAndTopicIds(user, topicIds));
+            log.debug("Returned {} subscribed topic ids", ids.size());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<Long, Long> getBufferedSeenPositions(User user, List<Long> topicIds) {
+        return topicVisitBufferService.getPendingSeenPositions(user.getId(), topicIds);
+    }
+
+    @AllArgsConstructor
+    private static class SeenSubscribedTopic implements SubscribedTopicProjection {
+        private final SubscribedTopicProjection topic;
+
+        @Override
+        public Long getTopicId() {
+            return topic.getTopicId();
+        }
+
+        @Override
+        public String getName() {
+            return topic.getName();
+        }
+
+        @Override
+        public LocalDateTime getLastMessageTime() {
+            return topic.getLastMessageTime();
+        }
+
+        @Override
+        public Boolean getHasNew() {
+            return false;
+        }
+
+        @Override
+        public Long getMessageCount() {
+            return topic.getMessageCount();
+        }
+    }
+
+    private Pageable unsorted(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    private long getTopicMessageCount(Topic topic) {
+        Long messageCount = topicVisitAndSubscriptionRepository.getTopicMessageCount(topic.getId());
+        return messageCount == null ? 0 : messageCount;
     }
 
     private TopicVisitAndSubscription setHasNewMessages(TopicVisitAndSubscription topicVisitAndSubscription) {
         if (topicVisitAndSubscription != null) {
-            LocalDateTime lastMessageTime = topicVisitAndSubscription.getTopic().getLastMessageTime();
-            LocalDateTime lastVisitTime = topicVisitAndSubscription.getLastVisitTime();
-            if (lastMessageTime != null &&
-                    (lastVisitTime == null || lastMessageTime.isAfter(lastVisitTime))) {
-                topicVisitAndSubscription.setHasNewMessages(true);
+            Topic topic = topicVisitAndSubscription.getTopic();
+            long seenPosition = topicVisitAndSubscription.getLastSeenPosition();
+            Long bufferedPosition = topicVisitBufferService.getPendingSeenPositions(
+                    topicVisitAndSubscription.getUser().getId(), Collections.singletonList(topic.getId())).get(topic.getId());
+            if (bufferedPosition != null && bufferedPosition > seenPosition) {
+                seenPosition = bufferedPosition;
             }
+            topicVisitAndSubscription.setHasNewMessages(topic.getMessageCount() > seenPosition);
         }
         return topicVisitAndSubscription;
     }
@@ -0,0 +1,168 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.service.forum.TopicVisitBufferService;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class TopicVisitBufferServiceImpl implements TopicVisitBufferService {
+
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * Посещение могло уже быть сохранено более поздним запросом, поэтому время и позиция только растут.
+     */
+    static final String UPDATE_VISIT_SQL = "update topic_visit_and_subscriptions " +
+            "set date_lastvisit = greatest(coalesce(date_lastvisit, ?), ?), " +
+            "last_seen_position = greatest(last_seen_position, ?) " +
+            "where id_user = ? and topic_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Timer flushTimer;
+
+    private final Map<VisitKey, PendingVisit> pending = new ConcurrentHashMap<>();
+
+    public TopicVisitBufferServiceImpl(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTimer = Timer.builder("forum.topic-visits.flush")
+                .description("Time spent saving buffered topic visits")
+                .register(meterRegistry);
+        Gauge.builder("forum.topic-visits.buffer.depth", pending, Map::size)
+                .description("Topic visits waiting to be saved")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordVisit(Long userId, Long topicId, LocalDateTime visitTime, long seenPosition) {
+        if (userId == null || topicId == null || visitTime == null) {
+            return;
+        }
+        pending.merge(new VisitKey(userId, topicId), new PendingVisit(visitTime, seenPosition), PendingVisit::latest);
+    }
+
+    @Override
+    public Map<Long, Long> getPendingSeenPositions(Long userId, Collection<Long> topicIds) {
+        Map<Long, Long> positions = new HashMap<>();
+        if (userId == null || pending.isEmpty()) {
+            return positions;
+        }
+        for (Long topicId : topicIds) {
+            PendingVisit visit = pending.get(new VisitKey(userId, topicId));
+            if (visit != null) {
+                positions.put(topicId, visit.seenPosition);
+            }
+        }
+        return positions;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${project.topic-visit.flush-delay-ms:5000}")
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            return flushPending();
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    @Override
+    public int getDepth() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Saving {} buffered topic visits before shutdown", pending.size());
+        flush();
+    }
+
+    private int flushPending() {
+        int flushed = 0;
+        List<Map.Entry<VisitKey, PendingVisit>> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+        for (Map.Entry<VisitKey, PendingVisit> entry : pending.entrySet()) {
+            batch.add(new HashMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            if (batch.size() == FLUSH_BATCH_SIZE) {
+                flushed += writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += writeBatch(batch);
+        }
+        log.debug("Saved {} buffered topic visits", flushed);
+        return flushed;
+    }
+
+    private int writeBatch(List<Map.Entry<VisitKey, PendingVisit>> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Map.Entry<VisitKey, PendingVisit> entry : batch) {
+            Timestamp visitTime = Timestamp.valueOf(entry.getValue().visitTime);
+            args.add(new Object[]{visitTime, visitTime, entry.getValue().seenPosition,
+                    entry.getKey().userId, entry.getKey().topicId});
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_VISIT_SQL, args);
+        } catch (Exception e) {
+            // посещения остаются в буфере и сохранятся в следующий раз
+            log.error(e.getMessage(), e);
+            return 0;
+        }
+        // до записи посещения остаются в буфере, чтобы чтение в это время не потеряло их ни в буфере, ни в базе;
+        // посещение, обновившееся во время записи, остаётся до следующего раза
+        for (Map.Entry<VisitKey, PendingVisit> entry : batch) {
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+        return batch.size();
+    }
+
+    @EqualsAndHashCode
+    private static final class VisitKey {
+        private final long userId;
+        private final long topicId;
+
+        private VisitKey(long userId, long topicId) {
+            this.userId = userId;
+            this.topicId = topicId;
+        }
+    }
+
+    private static final class PendingVisit {
+        private final LocalDateTime visitTime;
+        private final long seenPosition;
+
+        private PendingVisit(LocalDateTime visitTime, long seenPosition) {
+            this.visitTime = visitTime;
+            this.seenPosition = seenPosition;
+        }
+
+        private static PendingVisit latest(PendingVisit first, PendingVisit second) {
+            LocalDateTime visitTime = first.visitTime.isAfter(second.visitTime) ? first.visitTime : second.visitTime;
+            long seenPosition = Math.max(first.seenPosition, second.seenPosition);
+            if (visitTime.equals(first.visitTime) && seenPosition == first.seenPosition) {
+                return first;
+            }
+            return new PendingVisit(visitTime, seenPosition);
+        }
+    }
+}
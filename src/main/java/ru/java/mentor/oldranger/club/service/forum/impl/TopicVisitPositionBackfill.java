@@ -0,0 +1,48 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Заполнение last_seen_position у посещений, сохранённых до появления столбца (в них -1).
+ * Выполняется при запуске, до приёма запросов, поэтому подсчёт непрочитанных не видит таких строк;
+ * на заполненной базе запросы ничего не меняют.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class TopicVisitPositionBackfill {
+
+    /**
+     * Прочитанным считается всё, что написано до последнего посещения.
+     */
+    static final String BACKFILL_VISITED_SQL = "update topic_visit_and_subscriptions v set v.last_seen_position = " +
+            "(select count(*) from comments c where c.id_topic = v.topic_id and c.date_comment <= v.date_lastvisit) " +
+            "where v.last_seen_position < 0 and v.date_lastvisit is not null";
+
+    /**
+     * Подписки без посещений, как и новые подписки, начинаются с текущего количества сообщений.
+     */
+    static final String BACKFILL_NOT_VISITED_SQL = "update topic_visit_and_subscriptions v " +
+            "left join topics t on t.id = v.topic_id " +
+            "set v.last_seen_position = coalesce(t.message_count, 0) where v.last_seen_position < 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TopicVisitPositionBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        int visited = jdbcTemplate.update(BACKFILL_VISITED_SQL);
+        int notVisited = jdbcTemplate.update(BACKFILL_NOT_VISITED_SQL);
+        if (visited + notVisited > 0) {
+            log.info("Filled last seen position of {} visited and {} not visited topics", visited, notVisited);
+        }
+    }
+}
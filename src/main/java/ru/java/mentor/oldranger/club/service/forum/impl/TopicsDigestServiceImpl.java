@@ -0,0 +1,252 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.SectionRepository;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.model.forum.Section;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.service.forum.TopicsDigestService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class TopicsDigestServiceImpl implements TopicsDigestService {
+
+    /**
+     * Порядок как у {@code TopicRepository.getActualTopicsLimitAnyBySection}:
+     * по дате последнего сообщения (новые сверху), затем по id.
+     */
+    static final Comparator<Topic> ACTUAL_FIRST = Comparator
+            .comparing(Topic::getLastMessageTime, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Topic::getId, Comparator.nullsLast(Comparator.<Long>naturalOrder()));
+
+    private final TopicRepository topicRepository;
+    private final SectionRepository sectionRepository;
+    private final int limit;
+
+    /**
+     * Выборка целиком заменяется при перестроении, поэтому чтение видит либо старую, либо новую выборку, но не пустую.
+     */
+    private volatile Digest digest;
+
+    public TopicsDigestServiceImpl(TopicRepository topicRepository, SectionRepository sectionRepository,
+                                   @Value("${project.topics-digest.limit:10}") int limit) {
+        this.topicRepository = topicRepository;
+        this.sectionRepository = sectionRepository;
+        this.limit = limit;
+    }
+
+    @Override
+    public Map<Long, List<Topic>> getActualTopicsBySection(boolean forAnonView) {
+        Digest current = ensureLoaded();
+        if (current == null) {
+            return new HashMap<>();
+        }
+        Map<Long, SectionTopics> view = forAnonView ? current.forAnon : current.forUser;
+        Map<Long, List<Topic>> result = new HashMap<>(view.size() * 2);
+        view.forEach((sectionId, sectionTopics) -> {
+            if (sectionTopics.needsReload()) {
+                sectionTopics.reload(loadSection(sectionId, forAnonView));
+            }
+            result.put(sectionId, sectionTopics.snapshot());
+        });
+        return result;
+    }
+
+    /**
+     * Topic перечитывается в отдельной транзакции: объект из завершённой транзакции мог не увидеть
+     * изменений, сделанных запросами мимо контекста (счётчик сообщений, дата последнего сообщения).
+     */
+    @Override
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.getType() != EntityType.TOPIC || digest == null) {
+            return;
+        }
+        try {
+            Optional<Topic> topic = topicRepository.findById(event.getId());
+            if (topic.isPresent()) {
+                onTopicSaved(topic.get());
+            } else {
+                onTopicDeleted(event.getId());
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onTopicSaved(Topic topic) {
+        Digest current = digest;
+        if (current == null || topic == null || topic.getId() == null) {
+            return;
+        }
+        Long sectionId = sectionIdOf(topic);
+        removeFromOtherSections(current.forUser, topic.getId(), sectionId);
+        removeFromOtherSections(current.forAnon, topic.getId(), sectionId);
+        if (sectionId == null) {
+            return;
+        }
+        current.forUser.computeIfAbsent(sectionId, id -> new SectionTopics()).upsert(topic);
+        if (topic.isHideToAnon()) {
+            SectionTopics anonTopics = current.forAnon.get(sectionId);
+            if (anonTopics != null) {
+                anonTopics.remove(topic.getId());
+            }
+        } else {
+            current.forAnon.computeIfAbsent(sectionId, id -> new SectionTopics()).upsert(topic);
+        }
+        log.debug("Topic with id = {} updated in digest of section {}", topic.getId(), sectionId);
+    }
+
+    @Override
+    public void onTopicDeleted(Long topicId) {
+        Digest current = digest;
+        if (current == null || topicId == null) {
+            return;
+        }
+        removeFromOtherSections(current.forUser, topicId, null);
+        removeFromOtherSections(current.forAnon, topicId, null);
+        log.debug("Topic with id = {} removed from digest", topicId);
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        log.info("Rebuilding actual topics digest");
+        try {
+            Map<Long, SectionTopics> userTopics = new ConcurrentHashMap<>();
+            Map<Long, SectionTopics> anonTopics = new ConcurrentHashMap<>();
+            for (Section section : sectionRepository.findAll()) {
+                SectionTopics sectionTopics = new SectionTopics();
+                sectionTopics.reload(loadSection(section.getId(), false));
+                userTopics.put(section.getId(), sectionTopics);
+                SectionTopics sectionAnonTopics = new SectionTopics();
+                sectionAnonTopics.reload(loadSection(section.getId(), true));
+                anonTopics.put(section.getId(), sectionAnonTopics);
+            }
+            digest = new Digest(userTopics, anonTopics);
+            log.info("Actual topics digest rebuilt for {} sections", userTopics.size());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private Digest ensureLoaded() {
+        if (digest == null) {
+            synchronized (this) {
+                if (digest == null) {
+                    rebuild();
+                }
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * С запасом в два раза, чтобы удаление или перенос Topic не требовали сразу дочитывать секцию из базы.
+     */
+    private int capacity() {
+        return limit * 2;
+    }
+
+    private List<Topic> loadSection(Long sectionId, boolean forAnonView) {
+        PageRequest page = PageRequest.of(0, capacity());
+        return forAnonView
+                ? topicRepository.getActualTopicsBySectionForAnon(sectionId, page)
+                : topicRepository.getActualTopicsBySection(sectionId, page);
+    }
+
+    private void removeFromOtherSections(Map<Long, SectionTopics> view, Long topicId, Long keepSectionId) {
+        view.forEach((sectionId, sectionTopics) -> {
+            if (!sectionId.equals(keepSectionId)) {
+                sectionTopics.remove(topicId);
+            }
+        });
+    }
+
+    private Long sectionIdOf(Topic topic) {
+        if (topic.getSubsection() == null || topic.getSubsection().getSection() == null) {
+            return null;
+        }
+        return topic.getSubsection().getSection().getId();
+    }
+
+    private static final class Digest {
+        private final Map<Long, SectionTopics> forUser;
+        private final Map<Long, SectionTopics> forAnon;
+
+        private Digest(Map<Long, SectionTopics> forUser, Map<Long, SectionTopics> forAnon) {
+            this.forUser = forUser;
+            this.forAnon = forAnon;
+        }
+    }
+
+    /**
+     * Отсортированные Topic одной Section. {@code truncated} &ndash; в базе могут быть ещё Topic,
+     * не поместившиеся в выборку; тогда после удаления ниже лимита секция дочитывается из базы.
+     */
+    private class SectionTopics {
+        private final List<Topic> topics = new ArrayList<>();
+        private boolean truncated;
+        private volatile List<Topic> snapshot = Collections.emptyList();
+
+        synchronized void reload(List<Topic> loadedTopics) {
+            topics.clear();
+            topics.addAll(loadedTopics);
+            topics.sort(ACTUAL_FIRST);
+            truncated = topics.size() >= capacity();
+            publish();
+        }
+
+        synchronized void upsert(Topic topic) {
+            removeById(topic.getId());
+            int index = Collections.binarySearch(topics, topic, ACTUAL_FIRST);
+            topics.add(index < 0 ? -index - 1 : index, topic);
+            if (topics.size() > capacity()) {
+                topics.remove(topics.size() - 1);
+                truncated = true;
+            }
+            publish();
+        }
+
+        synchronized void remove(Long topicId) {
+            if (removeById(topicId)) {
+                publish();
+            }
+        }
+
+        synchronized boolean needsReload() {
+            return truncated && topics.size() < limit;
+        }
+
+        List<Topic> snapshot() {
+            return snapshot;
+        }
+
+        private boolean removeById(Long topicId) {
+            return topics.removeIf(t -> topicId.equals(t.getId()));
+        }
+
+        private void publish() {
+            snapshot = Collections.unmodifiableList(new ArrayList<>(topics.subList(0, Math.min(limit, topics.size()))));
+        }
+    }
+}
@@ -87,7 +87,7 @@ public class MailDirectionServiceImpl implements MailDirectionService {
     private Map<String, Object> getCountTopicsAndActiveChats(String email) {
         User user = userService.getUserByEmail(email);
         Map<String, Object> attributes = new HashMap<>();
-        attributes.put("unreadTopics", topicService.getNewMessagesCountForTopicsAndUser(topicService.findAll(), user).size());
+        attributes.put("unreadTopics", topicService.countTopicsWithNewMessagesForUser(user));
         List<Chat> chats = chatService.getAllPrivateChats(user);
         attributes.put("activeChats", chats.size());
         return attributes;
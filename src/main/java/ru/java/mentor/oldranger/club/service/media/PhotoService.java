@@ -9,6 +9,7 @@ import ru.java.mentor.oldranger.club.model.comment.PhotoComment;
 import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PhotoService {
@@ -16,6 +17,11 @@ public interface PhotoService {
 
     Photo save(PhotoAlbum album, MultipartFile file, String description);
 
+    /**
+     * Сохраняет фотографию, прикреплённую к комментарию в Topic.
+     */
+    Photo saveCommentPhoto(PhotoAlbum album, MultipartFile file, Long commentId);
+
     Photo findById(Long id);
 
     void deletePhoto(Long id);
@@ -43,4 +49,9 @@ public interface PhotoService {
     PhotoCommentDto assembleCommentDto(PhotoComment comment);
 
     List<Photo> findByAlbumTitleAndDescription(String albumTitle, String description);
+
+    /**
+     * Фотографии, прикреплённые к комментариям, одним запросом по индексу comment_id.
+     */
+    List<Photo> findByCommentIds(Collection<Long> commentIds);
 }
@@ -0,0 +1,42 @@
+package ru.java.mentor.oldranger.club.service.media.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Привязка к комментариям фотографий, загруженных до появления photos.comment_id. Раньше фотография
+ * комментария лежала в альбоме "PhotoAlbum by &lt;название Topic&gt;" с id комментария в описании,
+ * по этому же признаку заполняется comment_id. Выполняется при запуске, до приёма запросов;
+ * уже привязанные фотографии не затрагиваются.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class CommentPhotoBackfill {
+
+    static final String BACKFILL_SQL = "update photos p " +
+            "join photo_album a on a.id = p.album_id " +
+            "join comments c on c.id = cast(p.description as unsigned) " +
+            "join topics t on t.id = c.id_topic " +
+            "set p.comment_id = c.id " +
+            "where p.comment_id is null and p.description regexp '^[0-9]+$' " +
+            "and a.title = concat('PhotoAlbum by ', t.name_topic)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CommentPhotoBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        int linked = jdbcTemplate.update(BACKFILL_SQL);
+        if (linked > 0) {
+            log.info("Linked {} photos to their comments", linked);
+        }
+    }
+}
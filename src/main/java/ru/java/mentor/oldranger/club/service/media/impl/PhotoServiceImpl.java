@@ -21,9 +21,8 @@ import ru.java.mentor.oldranger.club.dto.PhotoDTO;
 import ru.java.mentor.oldranger.club.model.comment.PhotoComment;
 import ru.java.mentor.oldranger.club.model.media.Photo;
 import ru.java.mentor.oldranger.club.model.media.PhotoAlbum;
-import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
-import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -43,7 +42,7 @@ public class PhotoServiceImpl implements PhotoService {
     @NonNull
     private PhotoCommentRepository photoCommentRepository;
     @NonNull
-    private UserStatisticService userStatisticService;
+    private UserStatisticCounterService userStatisticCounterService;
 
     @Value("${photoalbums.location}")
     private String albumsdDir;
@@ -56,14 +55,21 @@ public class PhotoServiceImpl implements PhotoService {
 
     @Override
     public Photo save(PhotoAlbum album, MultipartFile file, String description) {
-        Photo photo = save(album, file, 0);
-        photo.setDescription(description);
-        return photoRepository.save(photo);
+        return save(album, file, 0, description, null);
+    }
+
+    @Override
+    public Photo saveCommentPhoto(PhotoAlbum album, MultipartFile file, Long commentId) {
+        return save(album, file, 0, commentId.toString(), commentId);
     }
 
     @Override
     //clear cache
     public Photo save(PhotoAlbum album, MultipartFile file, long position) {
+        return save(album, file, position, null, null);
+    }
+
+    private Photo save(PhotoAlbum album, MultipartFile file, long position, String description, Long commentId) {
         log.info("Saving photo to album with id = {}", album.getId());
         Photo photo = null;
         try {
@@ -90,6 +96,8 @@ public class PhotoServiceImpl implements PhotoService {
             photo.setAlbum(album);
 
             photo.setPositionPhoto(position);
+            photo.setDescription(description);
+            photo.setCommentId(commentId);
 
             photo.setUploadPhotoDate(LocalDateTime.now());
 
@@ -165,11 +173,7 @@ public class PhotoServiceImpl implements PhotoService {
         photoComment.setPosition(++comments);
         photo.setCommentCount(comments);
         photoCommentRepository.save(photoComment);
-        UserStatistic userStatistic = userStatisticService.getUserStaticByUser(photoComment.getUser());
-        comments = userStatistic.getMessageCount();
-        userStatistic.setMessageCount(++comments);
-        userStatistic.setLastComment(photoComment.getDateTime());
-        userStatisticService.saveUserStatic(userStatistic);
+        userStatisticCounterService.messagePosted(photoComment.getUser().getId(), photoComment.getDateTime());
     }
 
     @Override
@@ -298,4 +302,13 @@ public class PhotoServiceImpl implements PhotoService {
     public List<Photo> findByAlbumTitleAndDescription(String albumTitle, String description) {
         return photoRepository.findByAlbumTitleAndDescription(albumTitle, description);
     }
+
+    @Override
+    public List<Photo> findByCommentIds(Collection<Long> commentIds) {
+        log.debug("Getting photos for {} comments", commentIds.size());
+        if (commentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return photoRepository.findByCommentIdIn(commentIds);
+    }
 }
@@ -0,0 +1,19 @@
+package ru.java.mentor.oldranger.club.service.user;
+
+import ru.java.mentor.oldranger.club.event.MessageCountChangedEvent;
+
+/**
+ * Повышение роли пользователя по количеству сообщений: ROLE_OLD_TIMER, затем ROLE_VETERAN.<br>
+ * Роль только повышается, администраторы и модераторы не затрагиваются.
+ */
+public interface RolePromotionService {
+
+    void onMessageCountChanged(MessageCountChangedEvent event);
+
+    /**
+     * Роль, положенная за указанное количество сообщений.
+     *
+     * @return имя роли либо null, если повышение не положено
+     */
+    String getRoleForMessageCount(long messageCount);
+}
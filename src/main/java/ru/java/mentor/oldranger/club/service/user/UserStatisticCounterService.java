@@ -0,0 +1,28 @@
+package ru.java.mentor.oldranger.club.service.user;
+
+import java.time.LocalDateTime;
+
+/**
+ * Счётчики UserStatistic. Сообщения и Topic пользователя учитываются атомарным update в базе,
+ * без чтения и сохранения UserStatistic целиком.<br>
+ * Для самых активных пользователей приращения копятся в памяти и сохраняются пачкой.
+ */
+public interface UserStatisticCounterService {
+
+    /**
+     * Учитывает новое сообщение пользователя: messageCount увеличивается на 1,
+     * lastComment только растёт.
+     */
+    void messagePosted(Long userId, LocalDateTime postTime);
+
+    void topicStarted(Long userId);
+
+    /**
+     * Сохраняет накопленные приращения.
+     *
+     * @return количество пользователей, чьи счётчики сохранены
+     */
+    int flush();
+
+    int getDepth();
+}
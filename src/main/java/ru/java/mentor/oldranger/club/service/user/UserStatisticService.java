@@ -6,7 +6,9 @@ import ru.java.mentor.oldranger.club.dto.UserStatisticDto;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserStatisticService {
 
@@ -14,6 +16,13 @@ public interface UserStatisticService {
 
     UserStatistic getUserStaticByUser(User user);
 
+    /**
+     * Количество сообщений пользователей одним запросом.
+     *
+     * @return карта "id пользователя" - "количество сообщений"
+     */
+    Map<Long, Long> getMessageCountsByUserIds(Collection<Long> userIds);
+
     void saveUserStatic(UserStatistic userStatistic);
 
     Page<UserStatisticDto> getAllUserStatistic(Pageable pageable);
@@ -0,0 +1,132 @@
+package ru.java.mentor.oldranger.club.service.user.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.java.mentor.oldranger.club.dao.UserRepository.UserRepository;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.event.MessageCountChangedEvent;
+import ru.java.mentor.oldranger.club.model.user.Role;
+import ru.java.mentor.oldranger.club.service.user.RolePromotionService;
+import ru.java.mentor.oldranger.club.service.user.RoleService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@PropertySource("classpath:config/dataForChangeRole.properties")
+public class RolePromotionServiceImpl implements RolePromotionService {
+
+    static final String ROLE_OLD_TIMER = "ROLE_OLD_TIMER";
+    static final String ROLE_VETERAN = "ROLE_VETERAN";
+
+    /**
+     * Роли, которые сохраняются при повышении до ключа: роли старше его и он сам.
+     */
+    static final Map<String, List<String>> KEPT_ROLES;
+
+    static {
+        Map<String, List<String>> keptRoles = new HashMap<>();
+        keptRoles.put(ROLE_OLD_TIMER, Arrays.asList("ROLE_ADMIN", "ROLE_MODERATOR", ROLE_VETERAN, ROLE_OLD_TIMER));
+        keptRoles.put(ROLE_VETERAN, Arrays.asList("ROLE_ADMIN", "ROLE_MODERATOR", ROLE_VETERAN));
+        KEPT_ROLES = Collections.unmodifiableMap(keptRoles);
+    }
+
+    private final UserStatisticService userStatisticService;
+    private final RoleService roleService;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long minMessagesForOldTimer;
+    private final long maxMessagesForOldTimer;
+    private final long messagesForVeteran;
+
+    /**
+     * Роли не меняются во время работы приложения, поэтому читаются из базы один раз.
+     */
+    private final Map<String, Role> roles = new ConcurrentHashMap<>();
+
+    public RolePromotionServiceImpl(UserStatisticService userStatisticService,
+                                    RoleService roleService,
+                                    UserRepository userRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${minNumberMessageForOld_time}") long minMessagesForOldTimer,
+                                    @Value("${maxNumberMessageForOld_time}") long maxMessagesForOldTimer,
+                                    @Value("${numberMessageForVeteran}") long messagesForVeteran) {
+        this.userStatisticService = userStatisticService;
+        this.roleService = roleService;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.minMessagesForOldTimer = minMessagesForOldTimer;
+        this.maxMessagesForOldTimer = maxMessagesForOldTimer;
+        this.messagesForVeteran = messagesForVeteran;
+    }
+
+    /**
+     * Выполняется в фоне после фиксации транзакции, в которой учтено сообщение, и не задерживает ответ автору.
+     */
+    @Override
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCountChanged(MessageCountChangedEvent event) {
+        Long userId = event.getUserId();
+        try {
+            Long messageCount = userStatisticService.getMessageCountsByUserIds(Collections.singleton(userId)).get(userId);
+            if (messageCount == null) {
+                return;
+            }
+            String authority = getRoleForMessageCount(messageCount);
+            if (authority != null) {
+                promote(userId, authority);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getRoleForMessageCount(long messageCount) {
+        if (messageCount >= minMessagesForOldTimer && messageCount <= maxMessagesForOldTimer) {
+            return ROLE_OLD_TIMER;
+        }
+        if (messageCount >= messagesForVeteran) {
+            return ROLE_VETERAN;
+        }
+        return null;
+    }
+
+    private void promote(Long userId, String authority) {
+        Role role = getRole(authority);
+        if (role == null) {
+            log.warn("Role {} not found, user with id = {} is not promoted", authority, userId);
+            return;
+        }
+        List<Role> keptRoles = new ArrayList<>();
+        for (String keptAuthority : KEPT_ROLES.get(authority)) {
+            Role keptRole = getRole(keptAuthority);
+            if (keptRole != null) {
+                keptRoles.add(keptRole);
+            }
+        }
+        if (userRepository.updateRoleUnlessIn(userId, role, keptRoles) == 0) {
+            return;
+        }
+        log.info("User with id = {} promoted to {}", userId, authority);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.USER, userId));
+    }
+
+    private Role getRole(String authority) {
+        return roles.computeIfAbsent(authority, roleService::getRoleByAuthority);
+    }
+}
@@ -3,15 +3,16 @@ package ru.java.mentor.oldranger.club.service.user.impl;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import ru.java.mentor.oldranger.club.dao.UserRepository.RoleRepository;
 import ru.java.mentor.oldranger.club.dao.UserRepository.UserRepository;
 import ru.java.mentor.oldranger.club.dto.UpdateProfileDto;
 import ru.java.mentor.oldranger.club.dto.UserAuthDTO;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
 import ru.java.mentor.oldranger.club.model.media.Media;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserAvatar;
@@ -37,6 +38,7 @@ public class UserServiceImpl implements UserService {
     private UserStatisticService userStatistic;
     private MediaService mediaService;
     private RoleRepository roleRepository;
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     @Cacheable(cacheNames = {"allUsers"})
@@ -61,7 +63,6 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "users", allEntries = true), @CacheEvict(value = "allUsers", allEntries = true)})
     public void save(User user) {
         log.info("Saving user");
         try {
@@ -78,13 +79,13 @@ public class UserServiceImpl implements UserService {
             Media media = new Media();
             media.setUser(user);
             mediaService.save(media);
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.USER, savedUser.getId()));
             log.info("User {} saved", savedUser);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
     }
 
-    //TODO Надо ли тут кеширование?
     @Override
     public void updateUser(User user, UpdateProfileDto updateProfileDto) {
         log.info("Updating user {}", user);
@@ -95,6 +96,7 @@ public class UserServiceImpl implements UserService {
 
         try {
             userRepository.save(user);
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.USER, user.getId()));
             log.info("User {} updated", user);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -102,11 +104,11 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Caching(evict = {@CacheEvict(value = "users", key = "#theId"), @CacheEvict(value = "allUsers", allEntries = true)})
     public void deleteById(Long theId) {
         log.info("Deleting user with id = {}", theId);
         try {
             userRepository.deleteById(theId);
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.USER, theId));
             log.info("User deleted");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
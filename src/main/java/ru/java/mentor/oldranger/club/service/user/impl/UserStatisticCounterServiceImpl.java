@@ -0,0 +1,263 @@
+package ru.java.mentor.oldranger.club.service.user.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.dao.UserRepository.UserStaticRepository;
+import ru.java.mentor.oldranger.club.event.MessageCountChangedEvent;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Service
+public class UserStatisticCounterServiceImpl implements UserStatisticCounterService {
+
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * Приращения накопленных счётчиков. Как и в {@link UserStaticRepository#incrementMessageCount},
+     * lastComment только растёт, а null не меняет его.
+     */
+    static final String INCREMENT_SQL = "update user_statistic " +
+            "set message_count = message_count + ?, topics_count = topics_count + ?, " +
+            "last_comment = coalesce(greatest(last_comment, ?), ?, last_comment) " +
+            "where user_id = ?";
+
+    private final UserStaticRepository userStaticRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int hotThreshold;
+
+    /**
+     * Количество update в базе по каждому пользователю с последнего сохранения буфера.
+     */
+    private final Map<Long, LongAdder> recentWrites = new ConcurrentHashMap<>();
+    private final Map<Long, PendingCounters> pending = new ConcurrentHashMap<>();
+
+    public UserStatisticCounterServiceImpl(UserStaticRepository userStaticRepository,
+                                           JdbcTemplate jdbcTemplate,
+                                           MeterRegistry meterRegistry,
+                                           ApplicationEventPublisher eventPublisher,
+                                           @Value("${project.user-statistic.hot-threshold:20}") int hotThreshold) {
+        this.userStaticRepository = userStaticRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.hotThreshold = hotThreshold;
+        Gauge.builder("users.statistic.buffer.depth", pending, Map::size)
+                .description("Users whose statistic counters wait to be saved")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void messagePosted(Long userId, LocalDateTime postTime) {
+        if (userId == null) {
+            return;
+        }
+        PendingCounters counters = hotCounters(userId);
+        if (counters == null) {
+            try {
+                userStaticRepository.incrementMessageCount(userId, postTime);
+                eventPublisher.publishEvent(new MessageCountChangedEvent(userId));
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            return;
+        }
+        counters.messages.increment();
+        if (postTime != null) {
+            counters.lastComment.accumulateAndGet(postTime, UserStatisticCounterServiceImpl::latest);
+        }
+        counters.touched = true;
+        saveIfRetired(userId, counters);
+    }
+
+    @Override
+    public void topicStarted(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        PendingCounters counters = hotCounters(userId);
+        if (counters == null) {
+            try {
+                userStaticRepository.incrementTopicStartCount(userId);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            return;
+        }
+        counters.topics.increment();
+        counters.touched = true;
+        saveIfRetired(userId, counters);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${project.user-statistic.flush-delay-ms:5000}")
+    public int flush() {
+        recentWrites.clear();
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        int flushed = 0;
+        List<Object[]> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+        Map<Long, Increment> increments = new HashMap<>();
+        for (Map.Entry<Long, PendingCounters> entry : pending.entrySet()) {
+            PendingCounters counters = entry.getValue();
+            // пользователь перестал писать весь интервал: дальше его счётчики снова пишутся сразу в базу
+            if (!counters.touched && pending.remove(entry.getKey(), counters)) {
+                counters.retired = true;
+            }
+            counters.touched = false;
+            Increment increment = counters.drain();
+            if (increment.isEmpty()) {
+                continue;
+            }
+            increments.put(entry.getKey(), increment);
+            batch.add(increment.toArgs(entry.getKey()));
+            if (batch.size() == FLUSH_BATCH_SIZE) {
+                flushed += writeBatch(batch, increments);
+                batch.clear();
+                increments.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += writeBatch(batch, increments);
+        }
+        log.debug("Saved buffered statistic of {} users", flushed);
+        return flushed;
+    }
+
+    @Override
+    public int getDepth() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Saving buffered statistic of {} users before shutdown", pending.size());
+        flush();
+    }
+
+    /**
+     * Буфер пользователя, если тот пишет чаще {@code hotThreshold} раз за интервал сохранения, иначе null.
+     */
+    private PendingCounters hotCounters(Long userId) {
+        PendingCounters counters = pending.get(userId);
+        if (counters != null || hotThreshold <= 0) {
+            return counters;
+        }
+        LongAdder writes = recentWrites.computeIfAbsent(userId, id -> new LongAdder());
+        writes.increment();
+        if (writes.sum() <= hotThreshold) {
+            return null;
+        }
+        return pending.computeIfAbsent(userId, id -> new PendingCounters());
+    }
+
+    /**
+     * Буфер мог уйти из pending между получением и приращением. Тогда flush либо уже учёл приращение,
+     * либо не увидел его, и остаток сохраняется здесь.
+     */
+    private void saveIfRetired(Long userId, PendingCounters counters) {
+        if (!counters.retired) {
+            return;
+        }
+        Increment increment = counters.drain();
+        if (!increment.isEmpty()) {
+            Map<Long, Increment> increments = new HashMap<>();
+            increments.put(userId, increment);
+            List<Object[]> batch = new ArrayList<>();
+            batch.add(increment.toArgs(userId));
+            writeBatch(batch, increments);
+        }
+    }
+
+    private int writeBatch(List<Object[]> batch, Map<Long, Increment> increments) {
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_SQL, batch);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            for (Map.Entry<Long, Increment> entry : increments.entrySet()) {
+                pending.computeIfAbsent(entry.getKey(), id -> new PendingCounters()).restore(entry.getValue());
+            }
+            return 0;
+        }
+        for (Map.Entry<Long, Increment> entry : increments.entrySet()) {
+            if (entry.getValue().messages > 0) {
+                eventPublisher.publishEvent(new MessageCountChangedEvent(entry.getKey()));
+            }
+        }
+        return batch.size();
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static final class PendingCounters {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder topics = new LongAdder();
+        private final AtomicReference<LocalDateTime> lastComment = new AtomicReference<>();
+        private volatile boolean touched = true;
+        private volatile boolean retired;
+
+        /**
+         * Забирает накопленное. Из сумм вычитается ровно забранное, поэтому приращения,
+         * сделанные во время сохранения, останутся до следующего раза.
+         */
+        private synchronized Increment drain() {
+            long messageDelta = messages.sum();
+            messages.add(-messageDelta);
+            long topicDelta = topics.sum();
+            topics.add(-topicDelta);
+            return new Increment(messageDelta, topicDelta, lastComment.getAndSet(null));
+        }
+
+        private void restore(Increment increment) {
+            messages.add(increment.messages);
+            topics.add(increment.topics);
+            if (increment.lastComment != null) {
+                lastComment.accumulateAndGet(increment.lastComment, UserStatisticCounterServiceImpl::latest);
+            }
+            touched = true;
+        }
+    }
+
+    private static final class Increment {
+        private final long messages;
+        private final long topics;
+        private final LocalDateTime lastComment;
+
+        private Increment(long messages, long topics, LocalDateTime lastComment) {
+            this.messages = messages;
+            this.topics = topics;
+            this.lastComment = lastComment;
+        }
+
+        private boolean isEmpty() {
+            return messages == 0 && topics == 0 && lastComment == null;
+        }
+
+        private Object[] toArgs(Long userId) {
+            Timestamp time = lastComment == null ? null : Timestamp.valueOf(lastComment);
+            return new Object[]{messages, topics, time, time, userId};
+        }
+    }
+}
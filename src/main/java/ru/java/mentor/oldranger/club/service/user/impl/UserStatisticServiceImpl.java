@@ -9,10 +9,14 @@ import ru.java.mentor.oldranger.club.dao.UserRepository.UserStaticRepository;
 import ru.java.mentor.oldranger.club.dto.UserStatisticDto;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
+import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
 import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -46,6 +50,24 @@ public class UserStatisticServiceImpl implements UserStatisticService {
         return statistic;
     }
 
+    @Override
+    public Map<Long, Long> getMessageCountsByUserIds(Collection<Long> userIds) {
+        log.debug("Getting messages count for {} users", userIds.size());
+        Map<Long, Long> counts = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return counts;
+        }
+        try {
+            for (IdAndNumberProjection projection : userStaticRepository.getMessageCountsByUserIds(userIds)) {
+                counts.put(projection.getId(), projection.getNumber());
+            }
+            log.debug("Returned messages count for {} users", counts.size());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return counts;
+    }
+
     @Override
     public void saveUserStatic(UserStatistic userStatistic) {
         log.info("Saving user statistic");
@@ -0,0 +1,47 @@
+package ru.java.mentor.oldranger.club.service.utils;
+
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.model.utils.BanType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Действующие блокировки пользователей в памяти: проверка блокировки - поиск в карте без запроса к базе.<br>
+ * Заполняется при старте, обновляется при записи блокировок и периодически сверяется с базой.
+ * Об изменении блокировок пользователя остальные экземпляры узнают через {@code CacheInvalidationTransport}
+ * (сообщение для кэша {@link #REGISTRY_NAME} с id пользователя) и перечитывают его блокировки из базы.
+ */
+public interface BanRegistryService {
+
+    String REGISTRY_NAME = "bans";
+
+    /**
+     * Заблокирован ли вход (black_list)
+     */
+    boolean isLocked(Long userId);
+
+    /**
+     * Запрещено ли писать (writing_ban)
+     */
+    boolean isForbidden(Long userId, BanType type);
+
+    /**
+     * Перечитывает из базы блокировки входа одного пользователя после их изменения.
+     */
+    void refreshLock(Long userId);
+
+    /**
+     * @param unlockTime null - бессрочно
+     */
+    void forbid(Long userId, BanType type, LocalDateTime unlockTime);
+
+    /**
+     * Перечитывает из базы все блокировки пользователя, изменённые на другом экземпляре.
+     */
+    void onRemoteInvalidation(CacheInvalidationMessage message);
+
+    /**
+     * Сверяет реестр с базой и удаляет из black_list истёкшие блокировки.
+     */
+    void reconcile();
+}
@@ -0,0 +1,218 @@
+package ru.java.mentor.oldranger.club.service.utils.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.java.mentor.oldranger.club.dao.BlackListRepository;
+import ru.java.mentor.oldranger.club.dao.WritingBanRepository;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.model.utils.BanType;
+import ru.java.mentor.oldranger.club.model.utils.BlackList;
+import ru.java.mentor.oldranger.club.projection.UserBanProjection;
+import ru.java.mentor.oldranger.club.projection.WritingBanProjection;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+import ru.java.mentor.oldranger.club.service.utils.BanRegistryService;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Блокировки хранятся как "id пользователя" - "время разблокировки в мс" в кэшах Caffeine с истечением
+ * каждой записи в её время разблокировки (таймерное колесо Caffeine), бессрочные - с Long.MAX_VALUE.
+ * Время проверяется и при чтении, поэтому запись не действует и в промежуток до её удаления колесом.
+ * Изменения реестра и сверка с БД выполняются под общей блокировкой, чтобы сверка, прочитавшая
+ * блокировки до новой записи, не удалила её.
+ */
+@Slf4j
+@Service
+public class BanRegistryServiceImpl implements BanRegistryService {
+
+    static final long PERMANENT = Long.MAX_VALUE;
+
+    private final BlackListRepository blackListRepository;
+    private final WritingBanRepository writingBanRepository;
+    private final CacheInvalidationTransport cacheInvalidationTransport;
+
+    private final Cache<Long, Long> locks = newBanCache();
+    private final Map<BanType, Cache<Long, Long>> writingBans = new EnumMap<>(BanType.class);
+    private final Object writeLock = new Object();
+
+    public BanRegistryServiceImpl(BlackListRepository blackListRepository, WritingBanRepository writingBanRepository,
+                                  CacheInvalidationTransport cacheInvalidationTransport) {
+        this.blackListRepository = blackListRepository;
+        this.writingBanRepository = writingBanRepository;
+        this.cacheInvalidationTransport = cacheInvalidationTransport;
+        for (BanType type : BanType.values()) {
+            writingBans.put(type, newBanCache());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        reconcile();
+    }
+
+    @Override
+    public boolean isLocked(Long userId) {
+        return userId != null && isActive(locks.getIfPresent(userId));
+    }
+
+    @Override
+    public boolean isForbidden(Long userId, BanType type) {
+        return userId != null && isActive(writingBans.get(type).getIfPresent(userId));
+    }
+
+    @Override
+    public void refreshLock(Long userId) {
+        log.debug("Refreshing bans of user with id = {}", userId);
+        try {
+            synchronized (writeLock) {
+                loadLock(userId);
+            }
+            publish(userId);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void forbid(Long userId, BanType type, LocalDateTime unlockTime) {
+        synchronized (writeLock) {
+            put(writingBans.get(type), userId, toMillis(unlockTime));
+        }
+        publish(userId);
+    }
+
+    @Override
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidationMessage message) {
+        if (!REGISTRY_NAME.equals(message.getCacheName()) || message.getCacheKey() == null) {
+            return;
+        }
+        Long userId = Long.valueOf(message.getCacheKey());
+        log.debug("Refreshing bans of user with id = {} changed on another node", userId);
+        try {
+            synchronized (writeLock) {
+                loadLock(userId);
+                Map<BanType, Long> active = new EnumMap<>(BanType.class);
+                for (WritingBanProjection ban : writingBanRepository.getActiveBansOfUser(userId, LocalDateTime.now())) {
+                    active.merge(ban.getBanType(), toMillis(ban.getUnlockTime()), BanRegistryServiceImpl::latest);
+                }
+                for (BanType type : BanType.values()) {
+                    put(writingBans.get(type), userId, active.get(type));
+                }
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${project.bans.reconcile-delay-ms:300000}", initialDelayString = "${project.bans.reconcile-delay-ms:300000}")
+    public void reconcile() {
+        log.debug("Reconciling bans registry");
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, Long> activeLocks = new HashMap<>();
+            synchronized (writeLock) {
+                for (UserBanProjection ban : blackListRepository.getActiveBans(now)) {
+                    activeLocks.merge(ban.getUserId(), toMillis(ban.getUnlockTime()), BanRegistryServiceImpl::latest);
+                }
+                replaceAll(locks, activeLocks);
+
+                Map<BanType, Map<Long, Long>> activeWritingBans = new EnumMap<>(BanType.class);
+                for (BanType type : BanType.values()) {
+                    activeWritingBans.put(type, new HashMap<>());
+                }
+                for (WritingBanProjection ban : writingBanRepository.getActiveBans(now)) {
+                    activeWritingBans.get(ban.getBanType()).merge(ban.getUserId(), toMillis(ban.getUnlockTime()), BanRegistryServiceImpl::latest);
+                }
+                for (BanType type : BanType.values()) {
+                    replaceAll(writingBans.get(type), activeWritingBans.get(type));
+                }
+            }
+
+            int deleted = blackListRepository.deleteExpired(now);
+            log.debug("Bans registry reconciled: {} locks, {} expired locks deleted", activeLocks.size(), deleted);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private void loadLock(Long userId) {
+        Long unlockMillis = null;
+        for (BlackList blackList : blackListRepository.findByUserId(userId)) {
+            unlockMillis = latest(unlockMillis, toMillis(blackList.getUnlockTime()));
+        }
+        put(locks, userId, unlockMillis);
+    }
+
+    private void publish(Long userId) {
+        cacheInvalidationTransport.publish(CacheInvalidationMessage.forKey(REGISTRY_NAME, String.valueOf(userId)));
+    }
+
+    private static boolean isActive(Long unlockMillis) {
+        return unlockMillis != null && unlockMillis > System.currentTimeMillis();
+    }
+
+    private static void put(Cache<Long, Long> bans, Long userId, Long unlockMillis) {
+        if (isActive(unlockMillis)) {
+            bans.put(userId, unlockMillis);
+        } else {
+            bans.invalidate(userId);
+        }
+    }
+
+    private static void replaceAll(Cache<Long, Long> bans, Map<Long, Long> active) {
+        bans.asMap().keySet().retainAll(active.keySet());
+        bans.putAll(active);
+    }
+
+    private static Long latest(Long first, Long second) {
+        return first == null ? second : Math.max(first, second);
+    }
+
+    private static long toMillis(LocalDateTime unlockTime) {
+        if (unlockTime == null) {
+            return PERMANENT;
+        }
+        return unlockTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Cache<Long, Long> newBanCache() {
+        return Caffeine.newBuilder()
+                .expireAfter(new Expiry<Long, Long>() {
+                    @Override
+                    public long expireAfterCreate(Long userId, Long unlockMillis, long currentTime) {
+                        return nanosUntil(unlockMillis);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long userId, Long unlockMillis, long currentTime, long currentDuration) {
+                        return nanosUntil(unlockMillis);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long userId, Long unlockMillis, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    private static long nanosUntil(long unlockMillis) {
+        if (unlockMillis == PERMANENT) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, unlockMillis - System.currentTimeMillis()));
+    }
+}
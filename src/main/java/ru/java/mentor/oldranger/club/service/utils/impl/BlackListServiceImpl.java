@@ -7,6 +7,7 @@ import ru.java.mentor.oldranger.club.dao.BlackListRepository;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BlackList;
 import ru.java.mentor.oldranger.club.service.user.UserService;
+import ru.java.mentor.oldranger.club.service.utils.BanRegistryService;
 import ru.java.mentor.oldranger.club.service.utils.BlackListService;
 
 import java.time.LocalDateTime;
@@ -19,11 +20,13 @@ public class BlackListServiceImpl implements BlackListService {
 
     private static BlackListRepository blackListRepository;
     private static UserService userService;
+    private static BanRegistryService banRegistryService;
 
     @Autowired
-    BlackListServiceImpl(BlackListRepository blackListRepository, UserService userService) {
+    BlackListServiceImpl(BlackListRepository blackListRepository, UserService userService, BanRegistryService banRegistryService) {
         this.blackListRepository = blackListRepository;
         this.userService = userService;
+        this.banRegistryService = banRegistryService;
     }
 
     private static BlackListServiceImpl instance;
@@ -32,7 +35,7 @@ public class BlackListServiceImpl implements BlackListService {
 
     public static BlackListServiceImpl getInstance() {
         if (instance == null) {
-            instance = new BlackListServiceImpl(blackListRepository, userService);
+            instance = new BlackListServiceImpl(blackListRepository, userService, banRegistryService);
         }
         return instance;
     }
@@ -44,6 +47,7 @@ public class BlackListServiceImpl implements BlackListService {
             User user = userService.findById(id);
             BlackList blackList = new BlackList(user, time);
             blackListRepository.save(blackList);
+            banRegistryService.refreshLock(id);
             log.debug("User banned");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -54,35 +58,24 @@ public class BlackListServiceImpl implements BlackListService {
     public void deleteBlock(Long id) {
         log.info("Deleting user ban with id = {}", id);
         try {
+            Long userId = blackListRepository.getUserIdById(id);
             blackListRepository.deleteById(id);
+            banRegistryService.refreshLock(userId);
             log.debug("User ban deleted");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * Вызывается при каждой проверке аутентификации (User.isAccountNonLocked), поэтому без запроса к базе:
+     * истёкшие блокировки удаляет из black_list периодическая сверка {@link BanRegistryService}.
+     *
+     * @return true, если блокировки нет
+     */
     @Override
     public boolean userSearchBlackListByUserId(Long id) {
-        log.debug("Getting blacklist for user with id = {}", id);
-        List<BlackList> blackLists = findByUserId(id);
-        if (blackLists.size() == 0 || deleteUnlockBlock(blackLists)) {
-            return true;
-        }
-        return false;
-    }
-    //clear cache
-    private boolean deleteUnlockBlock(List<BlackList> blackLists) {
-        log.debug("Checking ban unlock time");
-        LocalDateTime now = LocalDateTime.now();
-        for (BlackList blackList : blackLists) {
-            if (blackList.getUnlockTime() == null) {
-                return false;
-            } else if (now.isAfter(blackList.getUnlockTime())) {
-                blackListRepository.delete(blackList);
-                return true;
-            }
-        }
-        return false;
+        return !banRegistryService.isLocked(id);
     }
 
     @Override
@@ -105,6 +98,7 @@ public class BlackListServiceImpl implements BlackListService {
         log.info("Saving user blackList");
         try {
             BlackList saved = blackListRepository.save(blackList);
+            banRegistryService.refreshLock(saved.getUser().getId());
             log.info("User blackList {} saved", saved);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -0,0 +1,74 @@
+package ru.java.mentor.oldranger.club.service.utils.impl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import ru.java.mentor.oldranger.club.model.user.RoleType;
+import ru.java.mentor.oldranger.club.model.user.User;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Права текущего пользователя, вычисленные один раз на запрос: достижимые по иерархии роли
+ * и битовая маска по {@link RoleType}. Пользователь загружается при первом обращении.
+ */
+final class SecuritySnapshot {
+
+    private static final Map<String, RoleType> ROLE_TYPES = new HashMap<>();
+
+    static {
+        for (RoleType roleType : RoleType.values()) {
+            ROLE_TYPES.put(roleType.name(), roleType);
+        }
+        // в иерархии ролей и базе роль называется ROLE_OLD_TIMER
+        ROLE_TYPES.put("ROLE_OLD_TIMER", RoleType.ROLE_OLD_TIME);
+    }
+
+    private final Authentication authentication;
+    private final Set<String> reachableAuthorities;
+    private final int roleMask;
+    private User user;
+    private boolean userResolved;
+
+    SecuritySnapshot(Authentication authentication, Collection<? extends GrantedAuthority> reachableGrantedAuthorities) {
+        this.authentication = authentication;
+        this.reachableAuthorities = new HashSet<>(reachableGrantedAuthorities.size());
+        int mask = 0;
+        for (GrantedAuthority authority : reachableGrantedAuthorities) {
+            reachableAuthorities.add(authority.getAuthority());
+            RoleType roleType = ROLE_TYPES.get(authority.getAuthority());
+            if (roleType != null) {
+                mask |= 1 << roleType.ordinal();
+            }
+        }
+        this.roleMask = mask;
+    }
+
+    boolean isFor(Authentication authentication) {
+        return this.authentication == authentication;
+    }
+
+    boolean hasRole(RoleType roleType) {
+        return (roleMask & (1 << roleType.ordinal())) != 0;
+    }
+
+    boolean hasAuthority(String authority) {
+        return reachableAuthorities.contains(authority);
+    }
+
+    boolean isUserResolved() {
+        return userResolved;
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+        this.userResolved = true;
+    }
+}
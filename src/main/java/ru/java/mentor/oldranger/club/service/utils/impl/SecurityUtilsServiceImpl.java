@@ -6,11 +6,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import ru.java.mentor.oldranger.club.model.user.Role;
 import ru.java.mentor.oldranger.club.model.user.RoleType;
 import ru.java.mentor.oldranger.club.model.user.User;
@@ -19,6 +22,7 @@ import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
@@ -26,6 +30,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SecurityUtilsServiceImpl implements SecurityUtilsService {
 
+    static final String SNAPSHOT_ATTRIBUTE = SecuritySnapshot.class.getName();
+
     @Autowired
     @Lazy
     private RoleHierarchy roleHierarchy;
@@ -54,45 +60,17 @@ public class SecurityUtilsServiceImpl implements SecurityUtilsService {
 
     @Override
     public boolean isAuthorityReachableForLoggedUser(Role role) {
-        Collection<? extends GrantedAuthority> authorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
-        Collection<? extends GrantedAuthority> reachableGrantedAuthorities = roleHierarchy.getReachableGrantedAuthorities(authorities);
-        return reachableGrantedAuthorities.contains(role);
+        return getSnapshot().hasAuthority(role.getAuthority());
     }
 
     @Override
     public boolean isAuthorityReachableForLoggedUser(RoleType role) {
-        Role userRole;
-        switch (role) {
-            case ROLE_USER: {
-                userRole = new Role("ROLE_USER");
-                userRole.setId(3L);
-            }
-            break;
-            case ROLE_MODERATOR:{
-                userRole = new Role("ROLE_MODERATOR");
-                userRole.setId(2L);
-                break;
-            }
-            case ROLE_ADMIN:{
-                userRole = new Role("ROLE_ADMIN");
-                userRole.setId(1L);
-                break;
-            }
-            default:{
-                userRole = new Role("ROLE_PROSPECT");
-                userRole.setId(4L);
-                break;
-            }
-        }
-
-        Collection<? extends GrantedAuthority> authorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
-        Collection<? extends GrantedAuthority> reachableGrantedAuthorities = roleHierarchy.getReachableGrantedAuthorities(authorities);
-        return reachableGrantedAuthorities.contains(userRole);
+        return getSnapshot().hasRole(role);
     }
 
     @Override
     public boolean isLoggedUserIsUser() {
-        return isAuthorityReachableForLoggedUser(new Role("ROLE_USER"));
+        return isAuthorityReachableForLoggedUser(RoleType.ROLE_USER);
     }
 
     @Override
@@ -107,16 +85,44 @@ public class SecurityUtilsServiceImpl implements SecurityUtilsService {
 
     @Override
     public User getLoggedUser() {
+        SecuritySnapshot snapshot = getSnapshot();
+        if (snapshot.isUserResolved()) {
+            return snapshot.getUser();
+        }
         log.debug("Getting logged user");
         User user = null;
         try {
             if (SecurityContextHolder.getContext().getAuthentication().getPrincipal() instanceof String) return null;
             String username = ((UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
             user = userService.getUserByNickName(username);
+            snapshot.setUser(user);
             log.debug("Returned user {}", user);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
         return user;
     }
+
+    /**
+     * Права пользователя хранятся в атрибутах запроса и вычисляются заново, только если сменилась
+     * аутентификация (вход или выход в этом же запросе). Вне HTTP запроса вычисляются при каждом вызове.
+     */
+    SecuritySnapshot getSnapshot() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Object cached = requestAttributes.getAttribute(SNAPSHOT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (cached instanceof SecuritySnapshot && ((SecuritySnapshot) cached).isFor(authentication)) {
+                return (SecuritySnapshot) cached;
+            }
+        }
+        Collection<? extends GrantedAuthority> reachableGrantedAuthorities = authentication == null
+                ? Collections.emptyList()
+                : roleHierarchy.getReachableGrantedAuthorities(authentication.getAuthorities());
+        SecuritySnapshot snapshot = new SecuritySnapshot(authentication, reachableGrantedAuthorities);
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(SNAPSHOT_ATTRIBUTE, snapshot, RequestAttributes.SCOPE_REQUEST);
+        }
+        return snapshot;
+    }
 }
\ No newline at end of file
@@ -7,16 +7,16 @@ import ru.java.mentor.oldranger.club.dao.WritingBanRepository;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BanType;
 import ru.java.mentor.oldranger.club.model.utils.WritingBan;
+import ru.java.mentor.oldranger.club.service.utils.BanRegistryService;
 import ru.java.mentor.oldranger.club.service.utils.WritingBanService;
 
-import java.time.LocalDateTime;
-
 @Slf4j
 @Service
 @AllArgsConstructor
 public class WritingBanServiceImpl implements WritingBanService {
 
     WritingBanRepository repository;
+    BanRegistryService banRegistryService;
 
     @Override
     public WritingBan getByUserAndType(User user, BanType type) {
@@ -36,6 +36,7 @@ public class WritingBanServiceImpl implements WritingBanService {
         log.info("Saving writing ban {}", writingBan);
         try {
             repository.save(writingBan);
+            banRegistryService.forbid(writingBan.getUser().getId(), writingBan.getBanType(), writingBan.getUnlockTime());
             log.info("Writing ban saved");
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -44,15 +45,9 @@ public class WritingBanServiceImpl implements WritingBanService {
 
     @Override
     public boolean isForbidden(User user, BanType type) {
-        boolean isForbidden = false;
         if (user == null) {
-            isForbidden = true;
-        } else {
-            WritingBan writingBan = repository.findByUserAndBanType(user, type);
-            if (writingBan != null && (writingBan.getUnlockTime() == null || writingBan.getUnlockTime().isAfter(LocalDateTime.now()))) {
-                isForbidden = true;
-            }
+            return true;
         }
-        return isForbidden;
+        return banRegistryService.isForbidden(user.getId(), type);
     }
 }
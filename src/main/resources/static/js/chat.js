@@ -15,7 +15,9 @@ $(document).ready(function () {
         userAvatar = null,
         replyTo = null,
         stompClient = null,
-        page = 0,
+        oldestId = null,
+        newestId = null,
+        drawnIds = {},
         isForbidden = false;
 
 
@@ -68,17 +70,18 @@ $(document).ready(function () {
         e.preventDefault();
         chat.addClass('hidden');
         greeting.removeClass('hidden');
-        stompClient.send("/chat/delUser", {}, JSON.stringify({sender: username, type: 'LEAVE'}));
         stompClient.disconnect();
-        page = 0;
     }
 
     function onConnected() {
         stompClient.subscribe('/channel/public', onMessageReceived, {});
-        stompClient.send("/chat/addUser", {}, JSON.stringify({sender: username, type: 'JOIN'}));
         connecting.addClass('hidden');
-        messageArea.empty();
-        getMessages();
+        if (newestId === null) {
+            messageArea.empty();
+            getMessages();
+        } else {
+            getMissedMessages();
+        }
     }
 
     function onError(er) {
@@ -134,6 +137,18 @@ $(document).ready(function () {
     }
 
     function drawMessage(message, prepend) {
+        if (message.id) {
+            if (drawnIds[message.id]) {
+                return;
+            }
+            drawnIds[message.id] = true;
+            if (oldestId === null || message.id < oldestId) {
+                oldestId = message.id;
+            }
+            if (newestId === null || message.id > newestId) {
+                newestId = message.id;
+            }
+        }
         let messageElement = $('<li>');
         switch (message.type) {
             case 'JOIN':
@@ -188,31 +203,29 @@ $(document).ready(function () {
         messageArea.scrollTop(messageArea[0].scrollHeight);
     }
 
-    function getMessages(page) {
-        if (page === undefined) {
-            page = 0;
-        }
+    // Сообщения старше before (последние, если before не задан), от новых к старым
+    function getMessages(before) {
         $.ajax({
-            url: '/api/chat/messages?page=' + page,
+            url: '/api/chat/messages' + (before === undefined ? '' : '?before=' + before),
             datatype: 'json',
             async: false,
             type: "get",
             contentType: 'application/json',
             success: function (data) {
-                if (page === 0) {
+                if (!data) {
+                    return;
+                }
+                if (before === undefined) {
                     for (i = (data.length - 1); i >= 0; i--) {
-                        let test = data[i];
-                        drawMessage(test);
+                        drawMessage(data[i]);
                     }
-
                 } else {
                     for (i = 0; i < data.length; i++) {
-                        let test = data[i];
-                        drawMessage(test, true);
+                        drawMessage(data[i], true);
                     }
                 }
 
-                if ($('#messageArea li').length > 19) {
+                if (data.length === 20) {
                     $("<button class='prev-msg'><span class='arrow up'></span></button>").prependTo(messageArea);
                 }
             },
@@ -222,13 +235,43 @@ $(document).ready(function () {
         });
     }
 
+    // После переподключения догружает пропущенные сообщения от старых к новым. Id не растут в порядке сохранения,
+    // поэтому первая порция начинается с сообщений, отправленных незадолго до последнего показанного,
+    // а уже показанные сообщения пропускаются
+    function getMissedMessages() {
+        let missedUrl = '/api/chat/messages' + '?since=' + newestId,
+            loaded;
+        do {
+            loaded = 0;
+            $.ajax({
+                url: missedUrl,
+                datatype: 'json',
+                async: false,
+                type: "get",
+                contentType: 'application/json',
+                success: function (data) {
+                    if (!data) {
+                        return;
+                    }
+                    for (i = 0; i < data.length; i++) {
+                        drawMessage(data[i]);
+                    }
+                    loaded = data.length;
+                    if (loaded > 0) {
+                        missedUrl = '/api/chat/messages' + '?after=' + data[loaded - 1].id;
+                    }
+                }
+            });
+        } while (loaded === 20);
+    }
+
     $(document).on('click', 'button.prev-msg', function (e) {
 
         let messageElement = $('#messageArea li'),
             firstMsg = $('#messageArea li:first');
 
         $(this).hide();
-        getMessages(++page);
+        getMessages(oldestId);
         messageArea.scrollTop(firstMsg.offset().top);
     });
 
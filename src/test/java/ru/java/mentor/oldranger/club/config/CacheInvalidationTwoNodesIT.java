@@ -0,0 +1,99 @@
+package ru.java.mentor.oldranger.club.config;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import ru.java.mentor.oldranger.club.Application;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.service.cach.impl.DbCacheInvalidationTransport;
+
+/**
+ * Два экземпляра приложения на одной базе: второй поднимается рядом с тестовым контекстом.
+ * Опрос таблицы вызывается вручную, автоматический отключён большим интервалом.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"cache.invalidation.transport=db", "cache.invalidation.poll-delay-ms=3600000"})
+@TestPropertySource("/config/datasource-test.properties")
+class CacheInvalidationTwoNodesIT {
+
+    @Autowired
+    CacheManager cacheManager;
+    @Autowired
+    DbCacheInvalidationTransport transport;
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    private ConfigurableApplicationContext secondNode;
+
+    @BeforeEach
+    void startSecondNode() {
+        secondNode = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=0",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.config.additional-location=classpath:/config/datasource-test.properties",
+                "--cache.invalidation.transport=db",
+                "--cache.invalidation.poll-delay-ms=3600000");
+    }
+
+    @AfterEach
+    void stopSecondNode() {
+        secondNode.close();
+    }
+
+    @Test
+    void cacheEvictIsRepeatedOnSecondNode() {
+        Cache secondNodeSubscribers = secondNode.getBean(CacheManager.class).getCache("topicSubscribers");
+        secondNodeSubscribers.put(7L, "subscribers");
+        secondNodeSubscribers.put(8L, "subscribers");
+
+        cacheManager.getCache("topicSubscribers").evict(7L);
+        transport.poll();
+        secondNode.getBean(DbCacheInvalidationTransport.class).poll();
+
+        Assert.assertNull(secondNodeSubscribers.get(7L));
+        Assert.assertNotNull(secondNodeSubscribers.get(8L));
+    }
+
+    @Test
+    void entityChangeEvictsDependentKeysOnSecondNode() {
+        Cache secondNodeTopics = secondNode.getBean(CacheManager.class).getCache("topic");
+        secondNodeTopics.put(1L, topic(1L));
+        secondNodeTopics.put(2L, topic(2L));
+
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.TOPIC, 1L));
+        transport.poll();
+        secondNode.getBean(DbCacheInvalidationTransport.class).poll();
+
+        Assert.assertNull(secondNodeTopics.get(1L));
+        Assert.assertNotNull(secondNodeTopics.get(2L));
+    }
+
+    @Test
+    void ownMessagesAreNotApplied() {
+        Cache subscribers = cacheManager.getCache("topicSubscribers");
+        cacheManager.getCache("topicSubscribers").evict(7L);
+        transport.poll();
+        subscribers.put(7L, "subscribers");
+        transport.poll();
+        Assert.assertNotNull(subscribers.get(7L));
+    }
+
+    private Topic topic(Long id) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        return topic;
+    }
+}
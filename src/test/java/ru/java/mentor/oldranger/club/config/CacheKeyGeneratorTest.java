@@ -0,0 +1,84 @@
+package ru.java.mentor.oldranger.club.config;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import ru.java.mentor.oldranger.club.model.article.ArticleTag;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.forum.TopicService;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+class CacheKeyGeneratorTest {
+
+    private boolean member;
+    private CacheKeyGenerator keyGenerator;
+    private Method method;
+
+    @BeforeEach
+    void init() throws NoSuchMethodException {
+        member = false;
+        keyGenerator = new CacheKeyGenerator(this::idOf, () -> member);
+        method = TopicService.class.getMethod("getActualTopicsLimit10");
+    }
+
+    @Test
+    public void anonAndMemberKeysDiffer() {
+        Object anonKey = keyGenerator.generate(this, method);
+        member = true;
+        Object memberKey = keyGenerator.generate(this, method);
+        Assert.assertNotEquals(anonKey, memberKey);
+        Assert.assertEquals(memberKey, keyGenerator.generate(this, method));
+    }
+
+    @Test
+    public void entitiesAreReplacedWithIds() {
+        User first = user(1L, "first");
+        User sameUserOtherInstance = user(1L, "changed nick");
+        PageRequest page = PageRequest.of(0, 10);
+        Object key = keyGenerator.generate(this, method, first, page);
+        Assert.assertEquals(key, keyGenerator.generate(this, method, sameUserOtherInstance, PageRequest.of(0, 10)));
+        Assert.assertEquals(key.hashCode(), keyGenerator.generate(this, method, sameUserOtherInstance, page).hashCode());
+        Assert.assertNotEquals(key, keyGenerator.generate(this, method, user(2L, "first"), page));
+    }
+
+    @Test
+    public void entitySetKeyDoesNotDependOnOrder() {
+        Object key = keyGenerator.generate(this, method, new LinkedHashSet<>(Arrays.asList(tag(1L), tag(2L))));
+        Assert.assertEquals(key, keyGenerator.generate(this, method, new HashSet<>(Arrays.asList(tag(2L), tag(1L)))));
+    }
+
+    @Test
+    public void entityWithoutIdIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> keyGenerator.generate(this, method, new Topic()));
+    }
+
+    private Object idOf(Object entity) {
+        if (entity instanceof User) {
+            return ((User) entity).getId();
+        }
+        if (entity instanceof ArticleTag) {
+            return ((ArticleTag) entity).getId();
+        }
+        return ((Topic) entity).getId();
+    }
+
+    private User user(Long id, String nickName) {
+        User user = new User();
+        user.setId(id);
+        user.setNickName(nickName);
+        return user;
+    }
+
+    private ArticleTag tag(Long id) {
+        ArticleTag tag = new ArticleTag();
+        tag.setId(id);
+        return tag;
+    }
+}
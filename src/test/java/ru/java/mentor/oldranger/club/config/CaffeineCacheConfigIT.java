@@ -0,0 +1,58 @@
+package ru.java.mentor.oldranger.club.config;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import ru.java.mentor.oldranger.club.service.forum.TopicService;
+import ru.java.mentor.oldranger.club.service.user.UserService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource("/config/datasource-test.properties")
+@Sql(value = "/sql/cacheIT/cache-before.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = "/sql/cacheIT/cache-after.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CaffeineCacheConfigIT {
+
+    @Autowired
+    CacheManager cacheManager;
+    @Autowired
+    UserService userService;
+    @Autowired
+    TopicService topicService;
+
+    @BeforeEach
+    void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void hotReadPathsAreServedFromCache() {
+        for (int i = 0; i < 5; i++) {
+            userService.getUserByNickName("Admin");
+            userService.findById(1L);
+            topicService.findAll();
+        }
+        Assert.assertTrue(hitRate("users") > 0);
+        Assert.assertTrue(hitRate("allTopic") > 0);
+    }
+
+    @Test
+    void onlyDeclaredCachesExist() {
+        Assert.assertTrue(cacheManager instanceof CaffeineCacheManager);
+        Assert.assertTrue(cacheManager.getCacheNames().containsAll(CaffeineCacheConfig.CACHE_NAMES));
+        Assert.assertNull(cacheManager.getCache("undeclaredCache"));
+    }
+
+    private double hitRate(String name) {
+        return ((CaffeineCache) cacheManager.getCache(name)).getNativeCache().stats().hitRate();
+    }
+}
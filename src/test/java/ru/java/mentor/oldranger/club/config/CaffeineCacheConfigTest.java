@@ -0,0 +1,59 @@
+package ru.java.mentor.oldranger.club.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.mock.env.MockEnvironment;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex;
+
+class CaffeineCacheConfigTest {
+
+    private CaffeineCacheConfig caffeineCacheConfig;
+
+    @BeforeEach
+    void init() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("cache.spec.users", "maximumSize=2000,expireAfterWrite=10m")
+                .withProperty("cache.spec.allTopic", "maximumSize=200,refreshAfterWrite=1m,expireAfterWrite=5m");
+        caffeineCacheConfig = new CaffeineCacheConfig(environment, "maximumSize=500,expireAfterAccess=10m",
+                new CacheDependencyIndex(), message -> {
+                });
+    }
+
+    @Test
+    public void perCacheSpecIsApplied() {
+        Cache<Object, Object> users = caffeineCacheConfig.caffeineCacheBuilder("users");
+        Cache<Object, Object> article = caffeineCacheConfig.caffeineCacheBuilder("article");
+        Cache<Object, Object> allTopic = caffeineCacheConfig.caffeineCacheBuilder("allTopic");
+        Assert.assertEquals(2000, users.policy().eviction().get().getMaximum());
+        Assert.assertTrue(users.policy().expireAfterWrite().isPresent());
+        Assert.assertEquals(500, article.policy().eviction().get().getMaximum());
+        Assert.assertTrue(article.policy().expireAfterAccess().isPresent());
+        Assert.assertEquals(200, allTopic.policy().eviction().get().getMaximum());
+        Assert.assertTrue(allTopic.policy().expireAfterWrite().isPresent());
+    }
+
+    @Test
+    public void refreshAfterWriteIsIgnored() {
+        Cache<Object, Object> allTopic = caffeineCacheConfig.caffeineCacheBuilder("allTopic");
+        Assert.assertFalse(allTopic.policy().refreshAfterWrite().isPresent());
+        Assert.assertEquals("maximumSize=200", CaffeineCacheConfig.withoutRefresh("allTopic", "maximumSize=200,refreshAfterWrite=1m"));
+    }
+
+    @Test
+    public void keysAreComparedByEquals() {
+        Cache<Object, Object> cache = caffeineCacheConfig.caffeineCacheBuilder("allTopic");
+        cache.put(new String("TopicServiceImpl_findAll_"), "value");
+        Assert.assertEquals("value", cache.getIfPresent(new String("TopicServiceImpl_findAll_")));
+        Assert.assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    public void undeclaredCachesAreNotCreated() {
+        CacheManager cacheManager = caffeineCacheConfig.cacheManager();
+        Assert.assertNotNull(cacheManager.getCache("allTagNodeHierarchy"));
+        Assert.assertNull(cacheManager.getCache("undeclaredCache"));
+    }
+}
@@ -4,9 +4,11 @@ import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
 import ru.java.mentor.oldranger.club.dao.ArticleRepository.ArticleCommentRepository;
 import ru.java.mentor.oldranger.club.dao.ArticleRepository.ArticleRepository;
@@ -15,6 +17,7 @@ import ru.java.mentor.oldranger.club.model.article.Article;
 import ru.java.mentor.oldranger.club.model.comment.ArticleComment;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
 
 import java.time.LocalDateTime;
@@ -32,27 +35,32 @@ class ArticleServiceImplTest {
     @Mock
     private UserStatisticService userStatisticService = Mockito.mock(UserStatisticService.class);
 
+    @Mock
+    private UserStatisticCounterService userStatisticCounterService = Mockito.mock(UserStatisticCounterService.class);
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
     @Mock
     private Pageable pageable = Mockito.mock(Pageable.class);
 
     @BeforeEach
     void initSomeCase() {
-        articleService = new ArticleServiceImpl(articleRepository, articleCommentRepository, userStatisticService);
+        articleService = new ArticleServiceImpl(articleRepository, articleCommentRepository, userStatisticService, userStatisticCounterService, eventPublisher);
     }
 
     @Test
     public void addCommentToArticle() {
         User user = new User();
-        UserStatistic userStatistic = new UserStatistic(user);
-        userStatistic.setMessageCount(1L);
+        user.setId(1L);
         Article article = new Article("String title", user, null, LocalDateTime.now(), "String text", true);
         article.setCommentCount(1L);
         ArticleComment articleComment = new ArticleComment(article, user, null, LocalDateTime.now(), "comment text");
-        Mockito.when(userStatisticService.getUserStaticByUser(articleComment.getUser())).thenReturn(userStatistic);
         articleService.addCommentToArticle(articleComment);
         Mockito.verify(articleCommentRepository, Mockito.times(1)).save(articleComment);
         Assert.assertEquals(2L, article.getCommentCount());
-        Assert.assertEquals(2L, userStatistic.getMessageCount());
+        Mockito.verify(userStatisticCounterService, Mockito.times(1)).messagePosted(1L, articleComment.getDateTime());
+        Mockito.verify(userStatisticService, Mockito.never()).saveUserStatic(ArgumentMatchers.any());
     }
 
     @Test
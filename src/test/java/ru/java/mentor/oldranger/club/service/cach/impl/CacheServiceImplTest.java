@@ -0,0 +1,211 @@
+package ru.java.mentor.oldranger.club.service.cach.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.mock.env.MockEnvironment;
+import ru.java.mentor.oldranger.club.config.CacheKeyGenerator;
+import ru.java.mentor.oldranger.club.config.CaffeineCacheConfig;
+import ru.java.mentor.oldranger.club.dto.CacheStatsDto;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.model.article.Article;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.cach.CacheDependencyIndex;
+import ru.java.mentor.oldranger.club.service.cach.CacheInvalidationTransport;
+import ru.java.mentor.oldranger.club.service.forum.TopicService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+class CacheServiceImplTest {
+
+    private CacheServiceImpl cacheService;
+    private List<CacheInvalidationMessage> sentMessages;
+
+    @BeforeEach
+    void init() {
+        cacheService = new CacheServiceImpl();
+        sentMessages = new ArrayList<>();
+        cacheService.cacheDependencyIndex = new CacheDependencyIndex();
+        CacheInvalidationTransport transport = sentMessages::add;
+        cacheService.cacheInvalidationTransport = transport;
+        cacheService.cacheManager = new CaffeineCacheConfig(new MockEnvironment(), "maximumSize=500",
+                cacheService.cacheDependencyIndex, cacheService.cacheInvalidationTransport).cacheManager();
+    }
+
+    @Test
+    public void statsAreCollectedForEveryCache() {
+        Cache topic = cacheService.cacheManager.getCache("topic");
+        topic.put(1L, "topic");
+        topic.get(1L);
+        topic.get(2L);
+        CacheStatsDto stats = cacheService.getCachesStats().stream()
+                .filter(s -> s.getName().equals("topic")).findFirst().get();
+        Assert.assertEquals(CaffeineCacheConfig.CACHE_NAMES.size(), cacheService.getCachesStats().size());
+        Assert.assertEquals(1, stats.getHitCount());
+        Assert.assertEquals(1, stats.getMissCount());
+        Assert.assertEquals(0.5, stats.getHitRate(), 0.001);
+        Assert.assertEquals(1, stats.getEstimatedSize());
+    }
+
+    @Test
+    public void numericKeyIsEvictedAsLong() {
+        Cache topic = cacheService.cacheManager.getCache("topic");
+        topic.put(1L, "first");
+        topic.put(2L, "second");
+        Assert.assertTrue(cacheService.evictKey("topic", "1"));
+        Assert.assertNull(topic.get(1L));
+        Assert.assertNotNull(topic.get(2L));
+    }
+
+    @Test
+    public void missingKeyIsNotFound() {
+        cacheService.cacheManager.getCache("topic").put(2L, "second");
+        Assert.assertFalse(cacheService.evictKey("topic", "1"));
+        Assert.assertFalse(cacheService.evictKey("topic", "first"));
+    }
+
+    @Test
+    public void compositeKeyIsEvictedByItsString() throws NoSuchMethodException {
+        Cache allTopic = cacheService.cacheManager.getCache("allTopic");
+        CacheKeyGenerator keyGenerator = new CacheKeyGenerator(entity -> null, () -> true);
+        Object limit10 = keyGenerator.generate(this, TopicService.class.getMethod("getActualTopicsLimit10"));
+        Object all = keyGenerator.generate(this, TopicService.class.getMethod("findAll"));
+        allTopic.put(limit10, "limit 10");
+        allTopic.put(all, "all");
+        Assert.assertTrue(cacheService.evictKey("allTopic", limit10.toString()));
+        Assert.assertNull(allTopic.get(limit10));
+        Assert.assertNotNull(allTopic.get(all));
+    }
+
+    /**
+     * Для каждого пути записи: какие записи кэшей должны удалиться, остальные должны остаться.
+     */
+    @Test
+    public void writesEvictOnlyDependentKeys() {
+        assertEvicted(new EntityChangedEvent(EntityType.TOPIC, 1L), "topic:1", "allTopic:all");
+        assertEvicted(new EntityChangedEvent(EntityType.TOPIC, 3L), "allTopic:all");
+        assertEvicted(new EntityChangedEvent(EntityType.USER, 1L), "users:1", "users:Admin", "users:Ghost", "allUsers:all");
+        assertEvicted(new EntityChangedEvent(EntityType.USER, 2L), "users:2", "users:Ghost", "allUsers:all");
+        assertEvicted(new EntityChangedEvent(EntityType.ARTICLE, 2L), "article:2", "allArticle:all");
+    }
+
+    @Test
+    public void evictedKeyIsTrackedAgainAfterReload() {
+        Cache topic = cacheService.cacheManager.getCache("topic");
+        topic.put(1L, topic(1L));
+        cacheService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 1L));
+        Assert.assertNull(topic.get(1L));
+        topic.put(1L, topic(1L));
+        cacheService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 1L));
+        Assert.assertNull(topic.get(1L));
+    }
+
+    @Test
+    public void lateRemovalNoticeKeepsRegistrationOfRePutValue() {
+        Cache topic = cacheService.cacheManager.getCache("topic");
+        topic.put(1L, null);
+        topic.evict(1L);
+        topic.put(1L, null);
+        ForkJoinPool.commonPool().awaitQuiescence(5, TimeUnit.SECONDS);
+        cacheService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 2L));
+        Assert.assertNull(topic.get(1L));
+    }
+
+    @Test
+    public void evictionsAreSentToOtherNodes() {
+        cacheService.cacheManager.getCache("topic").put(1L, topic(1L));
+        cacheService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 1L));
+        cacheService.cacheManager.getCache("topicSubscribers").evict(5L);
+        cacheService.clearCache("allTagNode");
+        Assert.assertEquals(Arrays.asList(
+                CacheInvalidationMessage.forEntity(EntityType.TOPIC, 1L),
+                CacheInvalidationMessage.forKey("topicSubscribers", "5"),
+                CacheInvalidationMessage.forCache("allTagNode")), sentMessages);
+    }
+
+    @Test
+    public void remoteInvalidationIsAppliedLocallyOnly() {
+        Cache topic = cacheService.cacheManager.getCache("topic");
+        Cache users = cacheService.cacheManager.getCache("users");
+        topic.put(1L, topic(1L));
+        users.put("Admin", user(1L));
+        users.put(2L, user(2L));
+        cacheService.onRemoteInvalidation(CacheInvalidationMessage.forEntity(EntityType.TOPIC, 1L));
+        cacheService.onRemoteInvalidation(CacheInvalidationMessage.forKey("users", "2"));
+        Assert.assertNull(topic.get(1L));
+        Assert.assertNull(users.get(2L));
+        Assert.assertNotNull(users.get("Admin"));
+        cacheService.onRemoteInvalidation(CacheInvalidationMessage.forCache("users"));
+        Assert.assertNull(users.get("Admin"));
+        Assert.assertTrue(sentMessages.isEmpty());
+    }
+
+    @Test
+    public void unknownCacheIsNotFound() {
+        Assert.assertFalse(cacheService.clearCache("unknown"));
+        Assert.assertFalse(cacheService.evictKey("unknown", "1"));
+    }
+
+    private void assertEvicted(EntityChangedEvent event, String... evicted) {
+        cacheService.clearAllCaches();
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("topic:1", topic(1L));
+        entries.put("topic:2", topic(2L));
+        entries.put("allTopic:all", Arrays.asList(topic(1L), topic(2L)));
+        entries.put("users:1", user(1L));
+        entries.put("users:2", user(2L));
+        entries.put("users:Admin", user(1L));
+        entries.put("users:Ghost", null);
+        entries.put("allUsers:all", Arrays.asList(user(1L), user(2L)));
+        entries.put("article:1", article(1L));
+        entries.put("article:2", article(2L));
+        entries.put("allArticle:all", Collections.singletonList(article(1L)));
+        entries.forEach((entry, value) -> cache(entry).put(key(entry), value));
+
+        cacheService.onEntityChanged(event);
+
+        List<String> expected = Arrays.asList(evicted);
+        for (String entry : entries.keySet()) {
+            boolean present = cache(entry).get(key(entry)) != null;
+            Assert.assertEquals(event + " -> " + entry, !expected.contains(entry), present);
+        }
+    }
+
+    private Cache cache(String entry) {
+        return cacheService.cacheManager.getCache(entry.split(":")[0]);
+    }
+
+    private Object key(String entry) {
+        String key = entry.split(":")[1];
+        return Character.isDigit(key.charAt(0)) ? (Object) Long.valueOf(key) : key;
+    }
+
+    private Topic topic(Long id) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        return topic;
+    }
+
+    private User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private Article article(Long id) {
+        Article article = new Article();
+        article.setId(id);
+        return article;
+    }
+}
@@ -0,0 +1,220 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.java.mentor.oldranger.club.controller.GroupChatController;
+import ru.java.mentor.oldranger.club.dao.ChatRepository.MessageRepository;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+import ru.java.mentor.oldranger.club.service.chat.ChatService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(MockitoJUnitRunner.class)
+class ChatMessageIngestServiceImplTest {
+
+    @Mock
+    private MessageIdAllocator messageIdAllocator = Mockito.mock(MessageIdAllocator.class);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    @Mock
+    private MessageRepository messageRepository = Mockito.mock(MessageRepository.class);
+
+    @Mock
+    private ChatService chatService = Mockito.mock(ChatService.class);
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ChatTailCacheServiceImpl chatTailCacheService = new ChatTailCacheServiceImpl(messageRepository, meterRegistry, 100);
+
+    private AtomicLong ids = new AtomicLong();
+
+    private AtomicInteger savedMessages = new AtomicInteger();
+
+    private ChatMessageIngestServiceImpl ingestService;
+
+    @AfterEach
+    void stop() {
+        ingestService.stopWriter();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void messagesAreBroadcastBeforeTheyAreSaved() {
+        init(100);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenAnswer(invocation -> countSaved(invocation.getArgument(1)));
+        ingestService.startWriter();
+
+        Message first = ingestService.submit(message("first"), 1L);
+        Message second = ingestService.submit(message("second"), 1L);
+
+        Assert.assertEquals(Long.valueOf(1L), first.getId());
+        Assert.assertEquals(Long.valueOf(2L), second.getId());
+        Assert.assertNotNull(first.getMessageDate());
+        Mockito.verify(jdbcTemplate, Mockito.timeout(2000).atLeastOnce())
+                .batchUpdate(ArgumentMatchers.eq(ChatMessageIngestServiceImpl.INSERT_SQL), ArgumentMatchers.<List<Object[]>>any());
+        ingestService.stopWriter();
+        Assert.assertEquals(2, savedMessages.get());
+        Assert.assertEquals(0, ingestService.getDepth());
+        Assert.assertTrue(meterRegistry.get("chat.ingest.commit").timer().count() > 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void fullBufferMakesSenderSaveMessage() throws Exception {
+        init(1);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenAnswer(invocation -> {
+                    if (Thread.currentThread().getName().equals("chat-ingest-writer") && writerBusy.getCount() > 0) {
+                        writerBusy.countDown();
+                        releaseWriter.await(5, TimeUnit.SECONDS);
+                    }
+                    return countSaved(invocation.getArgument(1));
+                });
+        ingestService.startWriter();
+
+        ingestService.submit(message("first"), 1L);
+        Assert.assertTrue(writerBusy.await(2, TimeUnit.SECONDS));
+        ingestService.submit(message("second"), 1L);
+        Assert.assertEquals(1, ingestService.getDepth());
+        ingestService.submit(message("third"), 1L);
+
+        Assert.assertEquals(1, savedMessages.get());
+        Assert.assertEquals(1.0, meterRegistry.get("chat.ingest.overflow").counter().count(), 0);
+        Assert.assertEquals(1.0, meterRegistry.get("chat.ingest.queue.depth").gauge().value(), 0);
+        releaseWriter.countDown();
+        ingestService.stopWriter();
+        Assert.assertEquals(3, savedMessages.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedBatchIsRetried() {
+        init(100);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenThrow(new DataAccessResourceFailureException("db is down"))
+                .thenAnswer(invocation -> countSaved(invocation.getArgument(1)));
+
+        // писатель не запущен, поэтому сообщение сохраняется в потоке отправителя
+        ingestService.submit(message("first"), 1L);
+
+        Mockito.verify(jdbcTemplate, Mockito.times(2))
+                .batchUpdate(ArgumentMatchers.eq(ChatMessageIngestServiceImpl.INSERT_SQL), ArgumentMatchers.<List<Object[]>>any());
+        Assert.assertEquals(1, savedMessages.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rejectedRowDoesNotLoseItsBatch() {
+        init(100);
+        Mockito.when(messageRepository.findByChatId(ArgumentMatchers.eq(1L), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenAnswer(invocation -> {
+                    List<Object[]> batch = invocation.getArgument(1);
+                    if (batch.stream().anyMatch(args -> "too long".equals(args[1]))) {
+                        throw new DataIntegrityViolationException("Data too long for column 'msg_text'");
+                    }
+                    return countSaved(batch);
+                });
+        Mockito.when(jdbcTemplate.update(ArgumentMatchers.eq(ChatMessageIngestServiceImpl.INSERT_SQL), ArgumentMatchers.<Object>any()))
+                .thenAnswer(invocation -> {
+                    if ("too long".equals(invocation.getArguments()[2])) {
+                        throw new DataIntegrityViolationException("Data too long for column 'msg_text'");
+                    }
+                    savedMessages.incrementAndGet();
+                    return 1;
+                });
+        chatTailCacheService.getMessagesBefore(1L, null, 20);
+        ingestService.startWriter();
+
+        Message first = ingestService.submit(message("first"), 1L);
+        ingestService.submit(message("too long"), 1L);
+        Message third = ingestService.submit(message("third"), 1L);
+        ingestService.stopWriter();
+
+        Assert.assertEquals(2, savedMessages.get());
+        Assert.assertEquals(1.0, meterRegistry.get("chat.ingest.rejected").counter().count(), 0);
+        Assert.assertEquals(Arrays.asList(third, first), chatTailCacheService.getMessagesBefore(1L, null, 20).getContent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void unsavedRowsStayInBufferWhileDatabaseIsDown() {
+        init(100);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenThrow(new DataAccessResourceFailureException("db is down"));
+        Mockito.when(jdbcTemplate.update(ArgumentMatchers.eq(ChatMessageIngestServiceImpl.INSERT_SQL), ArgumentMatchers.<Object>any()))
+                .thenThrow(new DataAccessResourceFailureException("db is down"));
+        Mockito.when(messageRepository.findByChatId(ArgumentMatchers.eq(1L), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+        chatTailCacheService.getMessagesBefore(1L, null, 20);
+        ingestService.startWriter();
+
+        Message first = ingestService.submit(message("first"), 1L);
+        // писатель несколько раз возвращает сообщение в очередь и пробует снова
+        Mockito.verify(jdbcTemplate, Mockito.timeout(2000).atLeast(2))
+                .update(ArgumentMatchers.eq(ChatMessageIngestServiceImpl.INSERT_SQL), ArgumentMatchers.<Object>any());
+
+        Assert.assertEquals(0.0, meterRegistry.get("chat.ingest.rejected").counter().count(), 0);
+        Assert.assertEquals(Collections.singletonList(first), chatTailCacheService.getMessagesBefore(1L, null, 20).getContent());
+    }
+
+    @Test
+    public void groupChatMessagesReachTail() {
+        init(100);
+        Mockito.when(chatService.getGroupChatId()).thenReturn(1L);
+        Mockito.when(messageRepository.findByChatId(ArgumentMatchers.eq(1L), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+        GroupChatController groupChatController = new GroupChatController(chatService, ingestService);
+
+        // первое чтение загружает хвост из базы, дальше сообщения общего чата попадают в него при отправке
+        Assert.assertFalse(chatTailCacheService.getMessagesBefore(1L, null, 20).hasContent());
+        Message sent = groupChatController.sendMessage(message("first"));
+
+        List<Message> last = chatTailCacheService.getMessagesBefore(1L, null, 20).getContent();
+        Assert.assertEquals(Collections.singletonList(sent), last);
+        Assert.assertEquals(Collections.singletonList(sent), chatTailCacheService.getMessagesAfter(1L, 0L, 20).getContent());
+    }
+
+    private void init(int bufferSize) {
+        Mockito.when(messageIdAllocator.nextId()).thenAnswer(invocation -> ids.incrementAndGet());
+        ingestService = new ChatMessageIngestServiceImpl(messageIdAllocator, jdbcTemplate, chatTailCacheService, meterRegistry,
+                bufferSize, 50, 10, 1);
+    }
+
+    private int[] countSaved(List<Object[]> batch) {
+        savedMessages.addAndGet(batch.size());
+        return new int[batch.size()];
+    }
+
+    private static Message message(String text) {
+        Message message = new Message();
+        message.setText(text);
+        message.setType(Message.MessageType.MESSAGE);
+        message.setSender("sender");
+        return message;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+import ru.java.mentor.oldranger.club.model.user.User;
+
+import java.util.Collections;
+
+@RunWith(MockitoJUnitRunner.class)
+class ChatPresenceServiceImplTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate = Mockito.mock(SimpMessagingTemplate.class);
+
+    private ChatPresenceServiceImpl presenceService = new ChatPresenceServiceImpl(messagingTemplate, 60000);
+
+    private UsernamePasswordAuthenticationToken authentication = authentication(1L, "user");
+
+    @Test
+    public void subscribeToGroupChatPublishesJoinOnce() {
+        connect("s1");
+        subscribe("s1", "/channel/public");
+        connect("s2");
+        subscribe("s2", "/channel/public");
+
+        Assert.assertEquals(Collections.singletonMap("user", 1L), presenceService.getGroupChatUsers());
+        Assert.assertTrue(presenceService.isOnline(1L));
+        Assert.assertEquals(Message.MessageType.JOIN, publishedMessage().getType());
+    }
+
+    @Test
+    public void connectedUserIsNotInGroupChatUntilSubscribed() {
+        connect("s1");
+        subscribe("s1", "/queue/private");
+
+        Assert.assertTrue(presenceService.isOnline(1L));
+        Assert.assertTrue(presenceService.getGroupChatUsers().isEmpty());
+        Mockito.verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    public void disconnectOfLastSessionPublishesLeave() {
+        connect("s1");
+        subscribe("s1", "/channel/public");
+        connect("s2");
+        subscribe("s2", "/channel/public");
+
+        disconnect("s1");
+        Assert.assertTrue(presenceService.isOnline(1L));
+        disconnect("s2");
+        disconnect("s2");
+
+        Assert.assertFalse(presenceService.isOnline(1L));
+        Assert.assertTrue(presenceService.getGroupChatUsers().isEmpty());
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(messagingTemplate, Mockito.times(2))
+                .convertAndSend(ArgumentMatchers.eq("/channel/public"), captor.capture());
+        Assert.assertEquals(Message.MessageType.LEAVE, captor.getAllValues().get(1).getType());
+    }
+
+    @Test
+    public void inactiveSessionsExpire() {
+        presenceService = new ChatPresenceServiceImpl(messagingTemplate, -1);
+        connect("s1");
+        subscribe("s1", "/channel/public");
+
+        Assert.assertEquals(1, presenceService.expireInactiveSessions());
+        Assert.assertFalse(presenceService.isOnline(1L));
+        Assert.assertEquals(0, presenceService.expireInactiveSessions());
+    }
+
+    private void connect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+        presenceService.onConnected(new SessionConnectedEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), authentication));
+    }
+
+    private void subscribe(String sessionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        presenceService.onSubscribe(new SessionSubscribeEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), authentication));
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        presenceService.onDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), sessionId,
+                CloseStatus.NORMAL, authentication));
+    }
+
+    private Message publishedMessage() {
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(messagingTemplate).convertAndSend(ArgumentMatchers.eq("/channel/public"), captor.capture());
+        return captor.getValue();
+    }
+
+    private static UsernamePasswordAuthenticationToken authentication(Long id, String nickName) {
+        User user = new User();
+        user.setId(id);
+        user.setNickName(nickName);
+        return new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList());
+    }
+}
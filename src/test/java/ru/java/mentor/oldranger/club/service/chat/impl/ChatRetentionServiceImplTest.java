@@ -0,0 +1,134 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.class)
+class ChatRetentionServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    @Mock
+    private ChatTailCacheService chatTailCacheService = Mockito.mock(ChatTailCacheService.class);
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LocalDateTime date = LocalDateTime.now().minusWeeks(1);
+
+    private Timestamp deleteDate = Timestamp.valueOf(date);
+
+    @TempDir
+    Path albumsDir;
+
+    @Test
+    public void messagesAreDeletedInChunksWithTheirImages() throws IOException {
+        ChatRetentionServiceImpl retentionService = retentionService(2);
+        File original = Files.createFile(albumsDir.resolve("img1")).toFile();
+        File small = Files.createFile(albumsDir.resolve("small_img1")).toFile();
+        Mockito.when(jdbcTemplate.queryForList(ArgumentMatchers.eq(ChatRetentionServiceImpl.SELECT_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(Arrays.asList(message(1L, "img1"), message(2L, null)))
+                .thenReturn(Collections.singletonList(message(3L, null)));
+        Mockito.when(jdbcTemplate.queryForList(ArgumentMatchers.startsWith("select id, original_img"), ArgumentMatchers.<Object>any()))
+                .thenReturn(Collections.singletonList(photo(10L, "img1", "small_img1")));
+        Mockito.when(jdbcTemplate.update(ArgumentMatchers.eq(ChatRetentionServiceImpl.DELETE_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(2, 1);
+
+        Assert.assertEquals(3, retentionService.deleteMessages(1L, date));
+
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.DELETE_CHUNK_SQL, 1L, deleteDate, 0L, 2L, 2);
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.DELETE_CHUNK_SQL, 1L, deleteDate, 2L, 3L, 2);
+        Mockito.verify(jdbcTemplate).update("delete from photos where id in (?)", 10L);
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.UPDATE_CHECKPOINT_SQL, 3L, 3L, 1L);
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).update(ChatRetentionServiceImpl.DELETE_CHECKPOINT_SQL, 1L);
+        Mockito.verify(chatTailCacheService).removeUpTo(1L, 2L, date);
+        Mockito.verify(chatTailCacheService).removeUpTo(1L, 3L, date);
+        Assert.assertFalse(original.exists());
+        Assert.assertFalse(small.exists());
+        Assert.assertEquals(3.0, meterRegistry.get("chat.retention.messages").counter().count(), 0);
+        Assert.assertEquals(1.0, meterRegistry.get("chat.retention.images").counter().count(), 0);
+    }
+
+    @Test
+    public void failedRunKeepsCheckpoint() {
+        ChatRetentionServiceImpl retentionService = retentionService(2);
+        Mockito.when(jdbcTemplate.queryForList(ArgumentMatchers.eq(ChatRetentionServiceImpl.SELECT_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(Arrays.asList(message(1L, null), message(2L, null)));
+        Mockito.when(jdbcTemplate.update(ArgumentMatchers.eq(ChatRetentionServiceImpl.DELETE_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(2)
+                .thenThrow(new DataAccessResourceFailureException("db is down"));
+
+        Assert.assertEquals(2, retentionService.deleteMessages(1L, date));
+
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.UPDATE_CHECKPOINT_SQL, 2L, 2L, 1L);
+        // запись удалена только перед началом очистки
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(ChatRetentionServiceImpl.DELETE_CHECKPOINT_SQL, 1L);
+        // из хвоста убрана только удалённая порция
+        Mockito.verify(chatTailCacheService).removeUpTo(1L, 2L, date);
+        Mockito.verifyNoMoreInteractions(chatTailCacheService);
+    }
+
+    @Test
+    public void unfinishedRunIsResumedFromCheckpoint() {
+        ChatRetentionServiceImpl retentionService = retentionService(2);
+        Map<String, Object> checkpoint = new HashMap<>();
+        checkpoint.put("id_chat", 1L);
+        checkpoint.put("delete_date", deleteDate);
+        checkpoint.put("last_id", 2L);
+        checkpoint.put("deleted_messages", 2L);
+        Mockito.when(jdbcTemplate.queryForList(ChatRetentionServiceImpl.SELECT_CHECKPOINTS_SQL))
+                .thenReturn(Collections.singletonList(checkpoint));
+        Mockito.when(jdbcTemplate.queryForList(ArgumentMatchers.eq(ChatRetentionServiceImpl.SELECT_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(Collections.singletonList(message(3L, null)));
+        Mockito.when(jdbcTemplate.update(ArgumentMatchers.eq(ChatRetentionServiceImpl.DELETE_CHUNK_SQL), ArgumentMatchers.<Object>any()))
+                .thenReturn(1);
+
+        retentionService.resumeUnfinished();
+
+        Mockito.verify(jdbcTemplate).queryForList(ChatRetentionServiceImpl.SELECT_CHUNK_SQL, 1L, deleteDate, 2L, 2);
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.UPDATE_CHECKPOINT_SQL, 3L, 3L, 1L);
+        Mockito.verify(jdbcTemplate).update(ChatRetentionServiceImpl.DELETE_CHECKPOINT_SQL, 1L);
+    }
+
+    private ChatRetentionServiceImpl retentionService(int chunkSize) {
+        return new ChatRetentionServiceImpl(jdbcTemplate, chatTailCacheService, new SyncTaskExecutor(), meterRegistry,
+                albumsDir.toString(), chunkSize);
+    }
+
+    private static Map<String, Object> message(Long id, String image) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("img_original", image);
+        return row;
+    }
+
+    private static Map<String, Object> photo(Long id, String original, String small) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("original_img", original);
+        row.put("small_img", small);
+        return row;
+    }
+}
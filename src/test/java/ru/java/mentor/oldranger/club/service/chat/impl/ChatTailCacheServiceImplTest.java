@@ -0,0 +1,126 @@
+package ru.java.mentor.oldranger.club.service.chat.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import ru.java.mentor.oldranger.club.dao.ChatRepository.MessageRepository;
+import ru.java.mentor.oldranger.club.model.chat.Message;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(MockitoJUnitRunner.class)
+class ChatTailCacheServiceImplTest {
+
+    @Mock
+    private MessageRepository messageRepository = Mockito.mock(MessageRepository.class);
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ChatTailCacheServiceImpl tailCacheService = new ChatTailCacheServiceImpl(messageRepository, meterRegistry, 5);
+
+    @Test
+    public void lastMessagesAreLoadedOnceAndServedFromMemory() {
+        // в базе сообщения 1..10, в хвост загружаются 6..10
+        mockDatabase(10, 5);
+
+        Assert.assertEquals(ids(10, 9, 8), ids(tailCacheService.getMessagesBefore(1L, null, 3)));
+        Slice<Message> older = tailCacheService.getMessagesBefore(1L, 8L, 2);
+        Assert.assertEquals(ids(7, 6), ids(older));
+        Assert.assertTrue(older.hasNext());
+        Assert.assertNull(tailCacheService.getMessagesBefore(1L, 6L, 2));
+
+        Mockito.verify(messageRepository, Mockito.times(1))
+                .findByChatId(ArgumentMatchers.eq(1L), ArgumentMatchers.any(Pageable.class));
+        Assert.assertEquals(2.0, meterRegistry.get("chat.tail.requests").tag("result", "hit").counter().count(), 0);
+        Assert.assertEquals(1.0, meterRegistry.get("chat.tail.requests").tag("result", "miss").counter().count(), 0);
+    }
+
+    @Test
+    public void sentMessagesAreAppendedAndOldestAreEvicted() {
+        mockDatabase(3, 3);
+
+        tailCacheService.append(1L, message(4L));
+        Assert.assertEquals(ids(4, 3, 2, 1), ids(tailCacheService.getMessagesBefore(1L, null, 10)));
+        tailCacheService.append(1L, message(5L));
+        tailCacheService.append(1L, message(6L));
+
+        // сообщение 1 вытеснено, поэтому полная порция из памяти больше не собирается
+        Assert.assertNull(tailCacheService.getMessagesBefore(1L, null, 10));
+        Assert.assertEquals(ids(6, 5, 4, 3, 2), ids(tailCacheService.getMessagesBefore(1L, null, 5)));
+        Assert.assertEquals(ids(5, 6), ids(tailCacheService.getMessagesAfter(1L, 4L, 10)));
+        Assert.assertNull(tailCacheService.getMessagesAfter(1L, 0L, 10));
+    }
+
+    @Test
+    public void messagesNotYetSavedAreMergedWithLoaded() {
+        // сообщение 4 отправлено, но фоновый поток ещё не сохранил его
+        tailCacheService.append(1L, message(4L));
+        mockDatabase(3, 3);
+
+        Assert.assertEquals(ids(4, 3, 2, 1), ids(tailCacheService.getMessagesBefore(1L, null, 10)));
+    }
+
+    @Test
+    public void editedAndDeletedMessagesAreReplaced() {
+        mockDatabase(3, 3);
+        tailCacheService.getMessagesBefore(1L, null, 10);
+
+        Message edited = message(2L);
+        edited.setText("edited");
+        tailCacheService.update(1L, edited);
+        tailCacheService.remove(1L, 3L);
+
+        List<Message> messages = tailCacheService.getMessagesBefore(1L, null, 10).getContent();
+        Assert.assertEquals(ids(2, 1), ids(messages));
+        Assert.assertEquals("edited", messages.get(0).getText());
+
+        tailCacheService.removeUpTo(1L, 1L, LocalDateTime.now());
+        Assert.assertEquals(ids(2), ids(tailCacheService.getMessagesBefore(1L, null, 10).getContent()));
+        tailCacheService.removeUpTo(1L, 3L, LocalDateTime.now());
+        Assert.assertFalse(tailCacheService.getMessagesBefore(1L, null, 10).hasContent());
+    }
+
+    private void mockDatabase(long lastId, int loaded) {
+        List<Message> messages = new ArrayList<>();
+        for (long id = lastId; id > lastId - loaded; id--) {
+            messages.add(message(id));
+        }
+        Mockito.when(messageRepository.findByChatId(ArgumentMatchers.eq(1L), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(messages));
+    }
+
+    private static Message message(Long id) {
+        Message message = new Message();
+        message.setId(id);
+        message.setType(Message.MessageType.MESSAGE);
+        message.setMessageDate(LocalDateTime.now().minusMinutes(1));
+        return message;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<Long> ids(Slice<Message> slice) {
+        return ids(slice.getContent());
+    }
+
+    private static List<Long> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).collect(Collectors.toList());
+    }
+}
@@ -3,23 +3,28 @@ package ru.java.mentor.oldranger.club.service.chat.impl;
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.mock.web.MockMultipartFile;
 import ru.java.mentor.oldranger.club.dao.ChatRepository.MessageRepository;
 import ru.java.mentor.oldranger.club.model.chat.Chat;
 import ru.java.mentor.oldranger.club.model.chat.Message;
-import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.chat.ChatMessageIngestService;
+import ru.java.mentor.oldranger.club.service.chat.ChatRetentionService;
 import ru.java.mentor.oldranger.club.service.chat.ChatService;
+import ru.java.mentor.oldranger.club.service.chat.ChatTailCacheService;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -34,13 +39,16 @@ class MessageServiceImplTest {
     private ChatService chatService = Mockito.mock(ChatService.class);
     @Mock
     private Chat chat = Mockito.mock(Chat.class);
+    @Mock
+    private ChatMessageIngestService chatMessageIngestService = Mockito.mock(ChatMessageIngestService.class);
+    @Mock
+    private ChatTailCacheService chatTailCacheService = Mockito.mock(ChatTailCacheService.class);
+    @Mock
+    private ChatRetentionService chatRetentionService = Mockito.mock(ChatRetentionService.class);
 
 
-    private MessageServiceImpl messageService = new MessageServiceImpl(messageRepository, chatService, photoService);
-
-    private static List<Message> messages = new ArrayList<>(Arrays.asList(
-            new Message(1L, null, "testImg1", null, null, null, null, null, null, null, null),
-            new Message(2L, null, null, null, null, null, null, null, null, null, null)));
+    private MessageServiceImpl messageService = new MessageServiceImpl(messageRepository, chatService, photoService,
+            chatMessageIngestService, chatTailCacheService, chatRetentionService);
 
     @Test
     public void findFirstMessageByChat() {
@@ -49,6 +57,47 @@ class MessageServiceImplTest {
                 .findFirstByChatOrderByMessageDateAsc(chat);
     }
 
+    @Test
+    public void getMessagesBeforeUsesCursor() {
+        Mockito.when(chat.getId()).thenReturn(1L);
+
+        messageService.getMessagesBefore(chat, null, 20);
+        messageService.getMessagesBefore(chat, 100L, 20);
+
+        PageRequest newestFirst = PageRequest.of(0, 20, Sort.by("id").descending());
+        Mockito.verify(messageRepository, Mockito.times(1)).findByChatId(1L, newestFirst);
+        Mockito.verify(messageRepository, Mockito.times(1)).findByChatIdAndIdLessThan(1L, 100L, newestFirst);
+    }
+
+    @Test
+    public void getMessagesAfterReturnsOldestFirst() {
+        Mockito.when(chat.getId()).thenReturn(1L);
+
+        messageService.getMessagesAfter(chat, 100L, 20);
+
+        Mockito.verify(messageRepository, Mockito.times(1))
+                .findByChatIdAndIdGreaterThan(1L, 100L, PageRequest.of(0, 20, Sort.by("id").ascending()));
+    }
+
+    @Test
+    public void getMissedMessagesStartsFromLateArrivals() {
+        Mockito.when(chat.getId()).thenReturn(1L);
+        Message lastSeen = new Message();
+        lastSeen.setId(100L);
+        lastSeen.setMessageDate(LocalDateTime.now());
+        Message late = new Message();
+        late.setId(95L);
+        late.setMessageDate(lastSeen.getMessageDate());
+        Mockito.when(messageRepository.findById(100L)).thenReturn(Optional.of(lastSeen));
+        Mockito.when(messageRepository.findFirstByChatIdAndMessageDateGreaterThanEqualOrderByIdAsc(
+                Mockito.eq(1L), Mockito.any(LocalDateTime.class))).thenReturn(late);
+
+        messageService.getMissedMessages(chat, 100L, 20);
+
+        Mockito.verify(messageRepository, Mockito.times(1))
+                .findByChatIdAndIdGreaterThan(1L, 94L, PageRequest.of(0, 20, Sort.by("id").ascending()));
+    }
+
     @Test
     public void processImage() throws IOException {
         FileInputStream inputStream = new FileInputStream(
@@ -74,54 +123,44 @@ class MessageServiceImplTest {
         Assert.assertNull(map);
     }
 
-    @Test
-    public void getOnlineUsers() {
-        List<User> users = new ArrayList<>(Arrays.asList(
-                new User(1L, null, null, null, "user1", null, null, null, null, null, null),
-                new User(2L, null, null, null, "user2", null, null, null, null, null, null)));
-        chat.setUserList(users);
-        Mockito.when(chatService.getChatById(Mockito.anyLong())).thenReturn(chat);
-        Mockito.when(chat.getUserList()).thenReturn(users);
-
-        Map<String, Long> usersMap = messageService.getOnlineUsers();
-
-        Assert.assertEquals(usersMap.size(), users.size());
-        users.forEach(u -> Assert.assertTrue(usersMap.containsKey(u.getNickName())));
-    }
-
     @Test
     public void deleteMessagesInPublicChat() {
-        chat.setPrivacy(false);
-        List<Message> messages = new ArrayList<>(Arrays.asList(
-                new Message(1L, null, "testImg1", null, null, null, null, null, null, null, null),
-                new Message(2L, null, null, null, null, null, null, null, null, null, null)));
+        Mockito.when(chat.getId()).thenReturn(1L);
         Mockito.when(chatService.getGroupChat()).thenReturn(chat);
-        Mockito.when(messageRepository.findAllByChat(chat)).thenReturn(messages);
+        messageService.setOlderThan("two-weeks");
 
         messageService.deleteMessages(false, false, "token");
 
-        verifyDeleteMessages();
+        verifyDeleteMessages(LocalDateTime.now().minusWeeks(2L));
     }
 
     @Test
     public void deleteMessagesInPrivateChatDeleteAllFalse() {
         String chatToken = "token";
-        chat.setPrivacy(true);
-        chat.setToken(chatToken);
-        chat.setId(1L);
+        Mockito.when(chat.getId()).thenReturn(1L);
         Mockito.when(chatService.getChatByToken(chatToken)).thenReturn(chat);
-        Mockito.when(messageRepository.findAllByChatAndDate(Mockito.eq(chat.getId()),
-                Mockito.any(LocalDateTime.class))).thenReturn(messages);
 
         messageService.deleteMessages(true, false, chatToken);
 
-        verifyDeleteMessages();
+        verifyDeleteMessages(LocalDateTime.now().minusMonths(1L));
+    }
+
+    @Test
+    public void deleteAllMessagesInPrivateChat() {
+        String chatToken = "token";
+        Mockito.when(chat.getId()).thenReturn(1L);
+        Mockito.when(chatService.getChatByToken(chatToken)).thenReturn(chat);
+
+        messageService.deleteMessages(true, true, chatToken);
+
+        verifyDeleteMessages(LocalDateTime.now());
     }
 
-    private void verifyDeleteMessages() {
-        List<String> images = messages.stream().map(Message::getOriginalImg).collect(Collectors.toList());
-        images.forEach(e -> Mockito.verify(photoService, Mockito.times(1)).deletePhotoByName(e));
-        messages.forEach(e -> Mockito.verify(messageRepository, Mockito.times(1)).deleteById(e.getId()));
+    private void verifyDeleteMessages(LocalDateTime expectedDate) {
+        ArgumentCaptor<LocalDateTime> date = ArgumentCaptor.forClass(LocalDateTime.class);
+        Mockito.verify(chatRetentionService, Mockito.times(1)).deleteMessages(Mockito.eq(1L), date.capture());
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(expectedDate, date.getValue())) < 5);
+        Mockito.verifyNoInteractions(photoService);
     }
 
     @Test
@@ -137,6 +176,28 @@ class MessageServiceImplTest {
         Mockito.verify(messageRepository, Mockito.times(1)).deleteById(id);
     }
 
+    @Test
+    public void queuedMessageIsFoundAfterFlush() {
+        Message message = new Message();
+        Mockito.when(messageRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(message));
+        Mockito.when(chatMessageIngestService.flush()).thenReturn(1);
+
+        Assert.assertSame(message, messageService.findMessage(1L));
+    }
+
+    @Test
+    public void unsavedMessageIsNotEdited() {
+        Message message = new Message();
+        message.setId(1L);
+        message.setChat(chat);
+
+        messageService.editMessage(message);
+
+        Mockito.verify(chatMessageIngestService, Mockito.times(1)).flush();
+        Mockito.verify(messageRepository, Mockito.never()).save(message);
+        Mockito.verifyNoInteractions(chatTailCacheService);
+    }
+
     @Test
     public void findMessageFail() {
         assertThrows(RuntimeException.class,
@@ -0,0 +1,80 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import ru.java.mentor.oldranger.club.dto.CommentNotificationDto;
+import ru.java.mentor.oldranger.club.event.NewCommentEvent;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.user.Role;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.class)
+class CommentNotificationServiceImplTest {
+
+    private CommentNotificationServiceImpl commentNotificationService;
+
+    @Mock
+    private TopicVisitAndSubscriptionService topicVisitAndSubscriptionService = Mockito.mock(TopicVisitAndSubscriptionService.class);
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate = Mockito.mock(SimpMessagingTemplate.class);
+
+    @Mock
+    private SimpUserRegistry simpUserRegistry = Mockito.mock(SimpUserRegistry.class);
+
+    @Mock
+    private TaskExecutor taskExecutor = Mockito.mock(TaskExecutor.class);
+
+    @BeforeEach
+    void init() {
+        Mockito.doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(taskExecutor).execute(ArgumentMatchers.any(Runnable.class));
+        commentNotificationService = new CommentNotificationServiceImpl(topicVisitAndSubscriptionService,
+                messagingTemplate, simpUserRegistry, taskExecutor, 2);
+    }
+
+    @Test
+    public void onlineSubscribersExceptAuthorAreNotifiedInBatches() {
+        Topic topic = new Topic();
+        topic.setId(1L);
+        List<User> subscribers = new ArrayList<>();
+        for (long id = 1; id <= 6; id++) {
+            User user = new User("String firstName", "String lastName", "email" + id, "nick" + id, new Role("ROLE_USER"));
+            user.setId(id);
+            subscribers.add(user);
+            if (id != 6) {
+                Mockito.when(simpUserRegistry.getUser("nick" + id)).thenReturn(Mockito.mock(SimpUser.class));
+            }
+        }
+        Mockito.when(topicVisitAndSubscriptionService.getUsersSubscribedOnTopic(topic)).thenReturn(subscribers);
+        CommentNotificationDto notification = new CommentNotificationDto(1L, "topic", 10L, 3L, 1L, "nick1", LocalDateTime.now());
+
+        commentNotificationService.notifySubscribers(new NewCommentEvent(topic, notification));
+
+        Mockito.verify(taskExecutor, Mockito.times(2)).execute(ArgumentMatchers.any(Runnable.class));
+        for (long id = 2; id <= 5; id++) {
+            Mockito.verify(messagingTemplate, Mockito.times(1))
+                    .convertAndSendToUser("nick" + id, CommentNotificationServiceImpl.NOTIFICATIONS_DESTINATION, notification);
+        }
+        Mockito.verify(messagingTemplate, Mockito.never())
+                .convertAndSendToUser(ArgumentMatchers.eq("nick1"), ArgumentMatchers.anyString(), ArgumentMatchers.any(Object.class));
+        Mockito.verify(messagingTemplate, Mockito.never())
+                .convertAndSendToUser(ArgumentMatchers.eq("nick6"), ArgumentMatchers.anyString(), ArgumentMatchers.any(Object.class));
+    }
+}
@@ -0,0 +1,53 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+import ru.java.mentor.oldranger.club.dto.CommentDto;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.service.forum.CommentService;
+
+import javax.persistence.EntityManagerFactory;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(value = "/config/datasource-test.properties",
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Sql(value = "/sql/commentPageIT/comment-page-before.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = "/sql/commentPageIT/comment-page-after.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CommentServiceImplPageIT {
+
+    @Autowired
+    CommentService commentService;
+    @Autowired
+    TopicRepository topicRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void pageWithRepliesAndPhotosIsReadWithFixedNumberOfStatements() {
+        Topic topic = topicRepository.findById(1L).orElseThrow(IllegalStateException::new);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<CommentDto> page = commentService.getPageableCommentDtoByTopic(topic, PageRequest.of(0, 10), 0, null);
+
+        Assert.assertEquals(4, page.getNumberOfElements());
+        Assert.assertEquals("Admin", page.getContent().get(1).getReplyNick());
+        Assert.assertEquals("third", page.getContent().get(3).getReplyText());
+        Assert.assertEquals(2, page.getContent().get(1).getPhotos().size());
+        Assert.assertEquals(1, page.getContent().get(3).getPhotos().size());
+        // id страницы, комментарии с авторами и ответами, счётчики сообщений авторов, фотографии
+        Assert.assertEquals(4, statistics.getPrepareStatementCount());
+    }
+}
@@ -8,8 +8,14 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import ru.java.mentor.oldranger.club.dao.ForumRepository.CommentRepository;
 import ru.java.mentor.oldranger.club.dto.CommentDto;
+import ru.java.mentor.oldranger.club.event.NewCommentEvent;
 import ru.java.mentor.oldranger.club.model.comment.Comment;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.user.Role;
@@ -17,9 +23,12 @@ import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.user.UserStatistic;
 import ru.java.mentor.oldranger.club.service.forum.TopicService;
 import ru.java.mentor.oldranger.club.service.media.PhotoService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @RunWith(MockitoJUnitRunner.class)
 class CommentServiceImplTest {
@@ -35,15 +44,21 @@ class CommentServiceImplTest {
     @Mock
     private UserStatisticService userStatisticService = Mockito.mock(UserStatisticService.class);
 
+    @Mock
+    private UserStatisticCounterService userStatisticCounterService = Mockito.mock(UserStatisticCounterService.class);
+
     @Mock
     private ImageCommentServiceImpl imageCommentService = Mockito.mock(ImageCommentServiceImpl.class);
 
     @Mock
     private PhotoService photoService = Mockito.mock(PhotoService.class);
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
     @BeforeEach
     void initSomeCase() {
-        commentServiceImpl = new CommentServiceImpl(commentRepository, userStatisticService, topicService, photoService, imageCommentService);
+        commentServiceImpl = new CommentServiceImpl(commentRepository, userStatisticService, userStatisticCounterService, topicService, photoService, imageCommentService, eventPublisher);
     }
 
     @Test
@@ -51,18 +66,18 @@ class CommentServiceImplTest {
         User user = new User("String firstName", "String lastName", "String email", "String nickName", new Role("ROLE_ADMIN"));
         Topic topic = new Topic();
         topic.setMessageCount(1L);
+        user.setId(2L);
         Comment comment = new Comment(topic, user, null, LocalDateTime.now(), "String commentText");
-        UserStatistic userStatistic = new UserStatistic(user);
-        userStatistic.setMessageCount(2L);
-        userStatistic.setId(2L);
-        Mockito.when(userStatisticService.getUserStaticByUser(comment.getUser())).thenReturn(userStatistic);
+        Mockito.when(topicService.incrementMessageCount(topic, comment.getDateTime())).thenReturn(2L);
         commentServiceImpl.createComment(comment);
-        Mockito.verify(topicService, Mockito.times(1)).editTopicByName(topic);
+        Mockito.verify(topicService, Mockito.times(1)).incrementMessageCount(topic, comment.getDateTime());
+        Mockito.verify(topicService, Mockito.never()).editTopicByName(topic);
         Mockito.verify(commentRepository, Mockito.times(1)).save(comment);
-        Mockito.verify(userStatisticService, Mockito.times(1)).saveUserStatic(userStatistic);
+        Mockito.verify(userStatisticCounterService, Mockito.times(1)).messagePosted(2L, comment.getDateTime());
+        Mockito.verify(userStatisticService, Mockito.never()).saveUserStatic(ArgumentMatchers.any());
         Assert.assertEquals(2L, topic.getMessageCount());
-        Assert.assertEquals(3L, userStatistic.getMessageCount());
-        Assert.assertEquals(userStatistic.getLastComment(), comment.getDateTime());
+        Assert.assertEquals((Long) 2L, comment.getPosition());
+        Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(ArgumentMatchers.any(NewCommentEvent.class));
     }
 
     @Test
@@ -89,10 +104,42 @@ class CommentServiceImplTest {
         Assert.assertEquals(comment.getAnswerTo().getCommentText(), commentDto.getReplyText());
         Assert.assertEquals(comment.getCommentText(), commentDto.getCommentText());
         Mockito.verify(photoService, Mockito.times(1))
-                .findByAlbumTitleAndDescription(ArgumentMatchers.any(), ArgumentMatchers.any());
+                .findByCommentIds(ArgumentMatchers.anyCollection());
         Assert.assertTrue(commentDto.isUpdatable());
         user = null;
         commentDto = commentServiceImpl.assembleCommentDto(comment, user);
         Assert.assertFalse(commentDto.isUpdatable());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getPageableCommentDtoByTopicUsesConstantQueriesPerPage() {
+        User user = new User("String firstName", "String lastName", "String email", "String nickName", null);
+        user.setId(1L);
+        Topic topic = new Topic("String name", user, LocalDateTime.now(), null, null, true, false);
+        topic.setId(1L);
+        List<Long> ids = new ArrayList<>();
+        List<Comment> comments = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            User author = new User("String firstName", "String lastName", "String email", "nick" + i, null);
+            author.setId(i);
+            Comment answerTo = new Comment(topic, author, null, LocalDateTime.now(), "reply to");
+            Comment comment = new Comment(topic, author, answerTo, LocalDateTime.now(), "String commentText");
+            comment.setId(i);
+            ids.add(i);
+            comments.add(comment);
+        }
+        Pageable pageable = PageRequest.of(2, 20, Sort.by("dateTime"));
+        Mockito.when(commentRepository.findIdsByTopicId(1L, 20, 43L)).thenReturn(ids);
+        Mockito.when(commentRepository.findAllWithAuthorsAndRepliesByIdIn(ids)).thenReturn(comments);
+
+        Page<CommentDto> page = commentServiceImpl.getPageableCommentDtoByTopic(topic, pageable, 3, user);
+
+        Assert.assertEquals(20, page.getContent().size());
+        Mockito.verify(commentRepository, Mockito.times(1)).findIdsByTopicId(1L, 20, 43L);
+        Mockito.verify(commentRepository, Mockito.times(1)).findAllWithAuthorsAndRepliesByIdIn(ids);
+        Mockito.verify(userStatisticService, Mockito.times(1)).getMessageCountsByUserIds(ArgumentMatchers.anyCollection());
+        Mockito.verify(photoService, Mockito.times(1)).findByCommentIds(ArgumentMatchers.anyCollection());
+        Mockito.verify(userStatisticService, Mockito.never()).getUserStaticById(ArgumentMatchers.any());
+        Mockito.verify(photoService, Mockito.never()).findByAlbumTitleAndDescription(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.java.mentor.oldranger.club.dto.SectionsAndTopicsDto;
+import ru.java.mentor.oldranger.club.model.forum.Section;
+import ru.java.mentor.oldranger.club.model.forum.Subsection;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+import ru.java.mentor.oldranger.club.model.user.Role;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.forum.SectionService;
+import ru.java.mentor.oldranger.club.service.forum.SectionsAndTopicsService;
+import ru.java.mentor.oldranger.club.service.forum.TopicService;
+import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
+import ru.java.mentor.oldranger.club.service.forum.TopicsDigestService;
+import ru.java.mentor.oldranger.club.service.utils.SearchService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.class)
+class SectionsAndTopicsServiceImplTest {
+
+    private static final int SECTIONS = 50;
+    private static final int TOPICS_PER_SECTION = 200;
+
+    private SectionsAndTopicsService sectionsAndTopicsService;
+
+    @Mock
+    private RoleHierarchy roleHierarchy = Mockito.mock(RoleHierarchy.class);
+
+    @Mock
+    private SectionService sectionService = Mockito.mock(SectionService.class);
+
+    @Mock
+    private TopicService topicService = Mockito.mock(TopicService.class);
+
+    @Mock
+    private TopicVisitAndSubscriptionService topicVisitAndSubscriptionService = Mockito.mock(TopicVisitAndSubscriptionService.class);
+
+    @Mock
+    private SearchService searchService = Mockito.mock(SearchService.class);
+
+    @Mock
+    private TopicsDigestService topicsDigestService = Mockito.mock(TopicsDigestService.class);
+
+    private User user;
+
+    @BeforeEach
+    void init() {
+        sectionsAndTopicsService = new SectionsAndTopicsServiceImpl(roleHierarchy, sectionService, topicService,
+                topicVisitAndSubscriptionService, searchService, topicsDigestService);
+        user = new User("String firstName", "String lastName", "String email", "String nickName", new Role("ROLE_USER"));
+        user.setId(1L);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.singletonList(new Role("ROLE_USER"))));
+        Mockito.doReturn(Collections.singletonList(new Role("ROLE_USER")))
+                .when(roleHierarchy).getReachableGrantedAuthorities(ArgumentMatchers.any());
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void searchResultsAreGroupedBySectionWithSubscriptionsFirst() {
+        List<Section> sections = new ArrayList<>();
+        List<Topic> topics = new ArrayList<>();
+        Set<Long> subscribed = new HashSet<>();
+        long topicId = 0;
+        for (long sectionId = 1; sectionId <= SECTIONS; sectionId++) {
+            Section section = new Section(sectionId, "section " + sectionId, (int) sectionId, false);
+            Subsection subsection = new Subsection(sectionId, "subsection " + sectionId, 1, section, false);
+            sections.add(section);
+            for (int i = 0; i < TOPICS_PER_SECTION; i++) {
+                Topic topic = new Topic("topic", user, LocalDateTime.now(), LocalDateTime.now(), subsection, false, false);
+                topic.setId(++topicId);
+                topics.add(topic);
+                if (topicId % 3 == 0) {
+                    subscribed.add(topicId);
+                }
+            }
+        }
+        Collections.shuffle(topics);
+        Mockito.when(sectionService.getAllSections()).thenReturn(sections);
+        Mockito.when(searchService.searchByTopicName("query")).thenReturn(topics);
+        Mockito.when(topicVisitAndSubscriptionService.getSubscribedTopicIdsForUser(ArgumentMatchers.eq(user), ArgumentMatchers.anyList()))
+                .thenReturn(subscribed);
+
+        List<SectionsAndTopicsDto> dtos = sectionsAndTopicsService.getSectionsAndTopicsByQuery("query", "byTopics");
+
+        Assert.assertEquals(SECTIONS, dtos.size());
+        for (SectionsAndTopicsDto dto : dtos) {
+            Assert.assertEquals(TOPICS_PER_SECTION, dto.getTopics().size());
+            boolean subscriptionsEnded = false;
+            for (Topic topic : dto.getTopics()) {
+                Assert.assertEquals(dto.getSection().getId(), topic.getSection().getId());
+                boolean isSubscribed = subscribed.contains(topic.getId());
+                Assert.assertFalse("subscribed topic after not subscribed one", subscriptionsEnded && isSubscribed);
+                subscriptionsEnded |= !isSubscribed;
+            }
+        }
+        Mockito.verify(topicVisitAndSubscriptionService, Mockito.times(1))
+                .getSubscribedTopicIdsForUser(ArgumentMatchers.eq(user), ArgumentMatchers.anyList());
+        Mockito.verify(topicVisitAndSubscriptionService, Mockito.never()).getTopicVisitAndSubscriptionForUser(user);
+    }
+}
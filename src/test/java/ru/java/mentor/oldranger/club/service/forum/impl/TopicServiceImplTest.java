@@ -8,21 +8,27 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
 import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+import ru.java.mentor.oldranger.club.dto.CursorSliceDto;
 import ru.java.mentor.oldranger.club.dto.TopicAndNewMessagesCountDto;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.dto.TopicCursor;
 import ru.java.mentor.oldranger.club.model.forum.Section;
 import ru.java.mentor.oldranger.club.model.forum.Subsection;
 import ru.java.mentor.oldranger.club.model.forum.Topic;
 import ru.java.mentor.oldranger.club.model.user.Role;
 import ru.java.mentor.oldranger.club.model.user.User;
-import ru.java.mentor.oldranger.club.model.user.UserStatistic;
+import ru.java.mentor.oldranger.club.projection.IdAndNumberProjection;
 import ru.java.mentor.oldranger.club.service.forum.TopicVisitAndSubscriptionService;
-import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticCounterService;
 import ru.java.mentor.oldranger.club.service.utils.SecurityUtilsService;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -31,7 +37,7 @@ class TopicServiceImplTest {
     private TopicServiceImpl topicService;
 
     @Mock
-    private UserStatisticService userStatisticService = Mockito.mock(UserStatisticService.class);
+    private UserStatisticCounterService userStatisticCounterService = Mockito.mock(UserStatisticCounterService.class);
 
     @Mock
     private SecurityUtilsService securityUtilsService = Mockito.mock(SecurityUtilsService.class);
@@ -42,23 +48,26 @@ class TopicServiceImplTest {
     @Mock
     private TopicVisitAndSubscriptionService topicVisitAndSubscriptionService = Mockito.mock(TopicVisitAndSubscriptionService.class);
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
     @Mock
     private Pageable pageable = Mockito.mock(Pageable.class);
 
     @BeforeEach
     void initAlgo() {
-        topicService = new TopicServiceImpl(topicRepository, userStatisticService, securityUtilsService, topicVisitAndSubscriptionService);
+        topicService = new TopicServiceImpl(topicRepository, userStatisticCounterService, securityUtilsService, topicVisitAndSubscriptionService, eventPublisher);
     }
 
     @Test
     public void createTopic() {
         User user = new User("String firstName", "String lastName", "String email", "String nickName", null);
         Topic topic = new Topic("String name", user, LocalDateTime.now(), null, null, true, false);
-        UserStatistic userStatistic = new UserStatistic(user);
-        Mockito.when(userStatisticService.getUserStaticByUser(topic.getTopicStarter())).thenReturn(userStatistic);
+        user.setId(1L);
         topicService.createTopic(topic);
-        Mockito.verify(userStatisticService, Mockito.times(1)).saveUserStatic(userStatistic);
+        Mockito.verify(userStatisticCounterService, Mockito.times(1)).topicStarted(1L);
         Mockito.verify(topicRepository, Mockito.times(1)).save(topic);
+        Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(ArgumentMatchers.any(EntityChangedEvent.class));
     }
 
     @Test
@@ -73,6 +82,58 @@ class TopicServiceImplTest {
         Mockito.verify(topicRepository, Mockito.times(1)).countForGetSliceListBySubsectionForUserOrderByLastMessageTimeDescAndSubscriptionsWithNewMessagesFirst(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong());
     }
 
+    @Test
+    public void getPageableBySubsectionForUserByCursor() {
+        User user = new User("String firstName", "String lastName", "String email", "String nickName", null);
+        user.setId(1L);
+        Section section = new Section("String name", 1, true);
+        Subsection subsection = new Subsection("String name", 1, section, true);
+        subsection.setId(1L);
+        Topic withNew = new Topic("with new", user, LocalDateTime.now(), LocalDateTime.now(), subsection, false, false);
+        withNew.setId(5L);
+        Topic withoutNew = new Topic("without new", user, LocalDateTime.now(), LocalDateTime.now(), subsection, false, false);
+        withoutNew.setId(3L);
+        Mockito.when(topicRepository.getSliceBySubsectionForUserWithNewMessagesAfter(ArgumentMatchers.eq(1L), ArgumentMatchers.eq(1L),
+                ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.eq(2)))
+                .thenReturn(Collections.singletonList(withNew));
+        Mockito.when(topicRepository.getSliceBySubsectionForUserWithoutNewMessagesAfter(ArgumentMatchers.eq(1L), ArgumentMatchers.eq(1L),
+                ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.eq(1)))
+                .thenReturn(Collections.singletonList(withoutNew));
+
+        CursorSliceDto<Topic> slice = topicService.getPageableBySubsectionForUser(user, subsection, null, 2);
+
+        Assert.assertEquals(Arrays.asList(withNew, withoutNew), slice.getContent());
+        TopicCursor next = TopicCursor.decode(slice.getNextCursor());
+        Assert.assertFalse(next.isSubscriberHasNew());
+        Assert.assertEquals(3L, next.getId());
+        Mockito.verify(topicRepository, Mockito.never()).countForGetSliceListBySubsectionForUserOrderByLastMessageTimeDescAndSubscriptionsWithNewMessagesFirst(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong());
+    }
+
+    @Test
+    public void getSliceBySubsectionContinuesWithUndatedTopics() {
+        User user = new User("String firstName", "String lastName", "String email", "String nickName", null);
+        Section section = new Section("String name", 1, true);
+        Subsection subsection = new Subsection("String name", 1, section, true);
+        subsection.setId(1L);
+        Topic dated = new Topic("dated", user, LocalDateTime.now(), LocalDateTime.now(), subsection, false, false);
+        dated.setId(5L);
+        Topic undated = new Topic("undated", user, LocalDateTime.now(), null, subsection, false, false);
+        undated.setId(7L);
+        Mockito.when(topicRepository.getSliceBySubsectionForAnonAfter(ArgumentMatchers.eq(1L),
+                ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.eq(2)))
+                .thenReturn(Collections.singletonList(dated));
+        Mockito.when(topicRepository.getUndatedSliceBySubsectionForAnonAfter(1L, Long.MAX_VALUE, 1))
+                .thenReturn(Collections.singletonList(undated));
+
+        CursorSliceDto<Topic> slice = topicService.getSliceBySubsection(subsection, null, 2);
+        topicService.getSliceBySubsection(subsection, slice.getNextCursor(), 2);
+
+        Assert.assertEquals(Arrays.asList(dated, undated), slice.getContent());
+        Mockito.verify(topicRepository, Mockito.times(1)).getSliceBySubsectionForAnonAfter(ArgumentMatchers.anyLong(),
+                ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt());
+        Mockito.verify(topicRepository, Mockito.times(1)).getUndatedSliceBySubsectionForAnonAfter(1L, 7L, 2);
+    }
+
     @Test
     public void getTopicsDto() {
         User user = new User("String firstName", "String lastName", "String email", "String nickName", new Role("ROLE_USER"));
@@ -83,7 +144,8 @@ class TopicServiceImplTest {
         Mockito.when(securityUtilsService.isLoggedUserIsUser()).thenReturn(true);
         Mockito.when(securityUtilsService.getLoggedUser()).thenReturn(user);
         List<TopicAndNewMessagesCountDto> dtos = topicService.getTopicsDto(topics);
-        Mockito.verify(topicVisitAndSubscriptionService, Mockito.times(1)).getTopicVisitAndSubscriptionForUser(user);
+        Mockito.verify(topicVisitAndSubscriptionService, Mockito.times(1)).getSubscribedTopicIdsForUser(ArgumentMatchers.eq(user), ArgumentMatchers.anyList());
+        Mockito.verify(topicVisitAndSubscriptionService, Mockito.never()).getTopicVisitAndSubscriptionForUser(user);
         Assert.assertEquals(dtos.get(0).getTopic(), topic);
         Assert.assertEquals(dtos.get(0).getTopic().getName(), "String name");
         Assert.assertEquals(0, dtos.get(0).getTotalMessages());
@@ -91,4 +153,56 @@ class TopicServiceImplTest {
         Assert.assertFalse(dtos.get(0).getHasNewMessages());
         Assert.assertEquals((Long) 0L, dtos.get(0).getNewMessagesCount());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getTopicsDtoMatchesCountsAndSubscriptionsById() {
+        User user = new User("String firstName", "String lastName", "String email", "String nickName", new Role("ROLE_USER"));
+        user.setId(1L);
+        Topic first = new Topic("first", user, LocalDateTime.now(), null, null, true, false);
+        first.setId(1L);
+        Topic second = new Topic("second", user, LocalDateTime.now(), null, null, true, false);
+        second.setId(2L);
+        List<Topic> topics = new ArrayList<>();
+        topics.add(first);
+        topics.add(second);
+        Mockito.when(securityUtilsService.isLoggedUserIsUser()).thenReturn(true);
+        Mockito.when(securityUtilsService.getLoggedUser()).thenReturn(user);
+        Mockito.when(topicRepository.getPairsTopicIdAndTotalMessagesCount(ArgumentMatchers.anyList()))
+                .thenReturn(Arrays.asList(projection(1L, 5L), projection(2L, 7L)));
+        Mockito.when(topicRepository.getPairsTopicIdAndNewMessagesCountForUserId(ArgumentMatchers.anyList(), ArgumentMatchers.eq(1L)))
+                .thenReturn(Collections.singletonList(projection(2L, 3L)));
+        Mockito.when(topicVisitAndSubscriptionService.getSubscribedTopicIdsForUser(ArgumentMatchers.eq(user), ArgumentMatchers.anyList()))
+                .thenReturn(Collections.singleton(2L));
+        List<TopicAndNewMessagesCountDto> dtos = topicService.getTopicsDto(topics);
+        Assert.assertEquals(5L, dtos.get(0).getTotalMessages());
+        Assert.assertFalse(dtos.get(0).getIsSubscribed());
+        Assert.assertFalse(dtos.get(0).getHasNewMessages());
+        Assert.assertEquals(7L, dtos.get(1).getTotalMessages());
+        Assert.assertTrue(dtos.get(1).getIsSubscribed());
+        Assert.assertTrue(dtos.get(1).getHasNewMessages());
+        Assert.assertEquals((Long) 3L, dtos.get(1).getNewMessagesCount());
+    }
+
+    @Test
+    public void countTopicsWithNewMessagesForUser() {
+        User user = new User("String firstName", "String lastName", "String email", "String nickName", new Role("ROLE_USER"));
+        user.setId(1L);
+        Mockito.when(topicRepository.countTopicsWithNewMessagesForUserId(1L)).thenReturn(4L);
+        Assert.assertEquals(4L, topicService.countTopicsWithNewMessagesForUser(user));
+        Mockito.verify(topicRepository, Mockito.never()).findAll();
+    }
+
+    private IdAndNumberProjection projection(long id, long number) {
+        return new IdAndNumberProjection() {
+            @Override
+            public long getId() {
+                return id;
+            }
+
+            @Override
+            public long getNumber() {
+                return number;
+            }
+        };
+    }
+}
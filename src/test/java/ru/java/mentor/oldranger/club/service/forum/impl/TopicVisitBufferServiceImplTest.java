@@ -0,0 +1,97 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.class)
+class TopicVisitBufferServiceImplTest {
+
+    private TopicVisitBufferServiceImpl topicVisitBufferService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        topicVisitBufferService = new TopicVisitBufferServiceImpl(jdbcTemplate, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void repeatedVisitsAreCoalescedIntoOneUpdate() {
+        topicVisitBufferService.recordVisit(1L, 10L, now.minusMinutes(1), 5);
+        topicVisitBufferService.recordVisit(1L, 10L, now, 7);
+        topicVisitBufferService.recordVisit(1L, 10L, now.minusMinutes(2), 6);
+        topicVisitBufferService.recordVisit(2L, 10L, now, 7);
+
+        Map<Long, Long> positions = topicVisitBufferService.getPendingSeenPositions(1L, Arrays.asList(10L, 11L));
+        Assert.assertEquals(Collections.singletonMap(10L, 7L), positions);
+        Assert.assertEquals(2.0, meterRegistry.get("forum.topic-visits.buffer.depth").gauge().value(), 0);
+
+        Assert.assertEquals(2, topicVisitBufferService.flush());
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).batchUpdate(ArgumentMatchers.eq(TopicVisitBufferServiceImpl.UPDATE_VISIT_SQL), captor.capture());
+        Assert.assertEquals(2, captor.getValue().size());
+        Assert.assertEquals(0, topicVisitBufferService.getDepth());
+        Assert.assertEquals(1, meterRegistry.get("forum.topic-visits.flush").timer().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedFlushKeepsVisitsInBuffer() {
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db is down"));
+        topicVisitBufferService.recordVisit(1L, 10L, now, 7);
+
+        Assert.assertEquals(0, topicVisitBufferService.flush());
+        Assert.assertEquals(1, topicVisitBufferService.getDepth());
+        Assert.assertEquals(Collections.singletonMap(10L, 7L),
+                topicVisitBufferService.getPendingSeenPositions(1L, Collections.singletonList(10L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void visitsStayVisibleUntilTheirBatchIsSaved() {
+        topicVisitBufferService.recordVisit(1L, 10L, now, 7);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.anyList()))
+                .thenAnswer(invocation -> {
+                    Assert.assertEquals(Collections.singletonMap(10L, 7L),
+                            topicVisitBufferService.getPendingSeenPositions(1L, Collections.singletonList(10L)));
+                    // посещение во время записи остаётся в буфере до следующего сохранения
+                    topicVisitBufferService.recordVisit(1L, 10L, now.plusMinutes(1), 8);
+                    return new int[]{1};
+                });
+
+        Assert.assertEquals(1, topicVisitBufferService.flush());
+        Assert.assertEquals(Collections.singletonMap(10L, 8L),
+                topicVisitBufferService.getPendingSeenPositions(1L, Collections.singletonList(10L)));
+    }
+
+    @Test
+    public void emptyBufferDoesNotTouchDatabase() {
+        Assert.assertEquals(0, topicVisitBufferService.flush());
+        Mockito.verifyNoInteractions(jdbcTemplate);
+    }
+}
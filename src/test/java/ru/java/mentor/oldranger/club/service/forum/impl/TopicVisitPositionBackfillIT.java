@@ -0,0 +1,46 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource("/config/datasource-test.properties")
+@Sql(value = "/sql/topicVisitPositionBackfillIT/backfill-before.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = "/sql/topicVisitPositionBackfillIT/backfill-after.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class TopicVisitPositionBackfillIT {
+
+    @Autowired
+    TopicVisitPositionBackfill backfill;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TopicRepository topicRepository;
+
+    @Test
+    void legacyVisitsGetPositionOfTheirLastVisit() {
+        backfill.backfill();
+
+        // до посещения написаны два сообщения из трёх, подписка без посещений начинается с текущего количества
+        Assert.assertEquals(Long.valueOf(2), position(1L));
+        Assert.assertEquals(Long.valueOf(3), position(2L));
+        Assert.assertEquals(1, topicRepository.countTopicsWithNewMessagesForUserId(2L));
+        Assert.assertEquals(0, topicRepository.countTopicsWithNewMessagesForUserId(1L));
+
+        backfill.backfill();
+        Assert.assertEquals(Long.valueOf(2), position(1L));
+    }
+
+    private Long position(Long id) {
+        return jdbcTemplate.queryForObject("select last_seen_position from topic_visit_and_subscriptions where id = ?",
+                Long.class, id);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.java.mentor.oldranger.club.service.forum.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.SectionRepository;
+import ru.java.mentor.oldranger.club.dao.ForumRepository.TopicRepository;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.EntityType;
+import ru.java.mentor.oldranger.club.model.forum.Section;
+import ru.java.mentor.oldranger.club.model.forum.Subsection;
+import ru.java.mentor.oldranger.club.model.forum.Topic;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+@RunWith(MockitoJUnitRunner.class)
+class TopicsDigestServiceImplTest {
+
+    private TopicsDigestServiceImpl topicsDigestService;
+
+    @Mock
+    private TopicRepository topicRepository = Mockito.mock(TopicRepository.class);
+
+    @Mock
+    private SectionRepository sectionRepository = Mockito.mock(SectionRepository.class);
+
+    private Section section;
+    private Subsection subsection;
+    private LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void init() {
+        section = new Section("String name", 1, false);
+        section.setId(1L);
+        subsection = new Subsection("String name", 1, section, false);
+        subsection.setId(1L);
+        Mockito.when(sectionRepository.findAll()).thenReturn(Collections.singletonList(section));
+        topicsDigestService = new TopicsDigestServiceImpl(topicRepository, sectionRepository, 2);
+    }
+
+    @Test
+    public void loadsOnceAndServesFromMemory() {
+        Topic first = topic(1L, now.minusMinutes(1), false);
+        Topic second = topic(2L, now.minusMinutes(2), false);
+        Mockito.when(topicRepository.getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(second, first));
+
+        topicsDigestService.getActualTopicsBySection(false);
+        List<Topic> topics = topicsDigestService.getActualTopicsBySection(false).get(1L);
+
+        Assert.assertEquals(Arrays.asList(first, second), topics);
+        Mockito.verify(topicRepository, Mockito.times(1)).getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void readsDuringRebuildSeeThePreviousDigest() {
+        Topic first = topic(1L, now.minusMinutes(1), false);
+        Mockito.when(topicRepository.getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Collections.singletonList(first));
+        topicsDigestService.rebuild();
+        List<List<Topic>> seenDuringRebuild = new ArrayList<>();
+        Mockito.when(sectionRepository.findAll()).thenAnswer(invocation -> {
+            seenDuringRebuild.add(topicsDigestService.getActualTopicsBySection(false).get(1L));
+            return Collections.singletonList(section);
+        });
+
+        topicsDigestService.rebuild();
+
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList(first)), seenDuringRebuild);
+    }
+
+    @Test
+    public void newCommentMovesTopicUpAndHiddenTopicIsNotShownToAnon() {
+        Topic first = topic(1L, now.minusMinutes(1), false);
+        Topic second = topic(2L, now.minusMinutes(2), false);
+        Mockito.when(topicRepository.getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(first, second));
+        Mockito.when(topicRepository.getActualTopicsBySectionForAnon(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(first, second));
+        topicsDigestService.rebuild();
+
+        second.setLastMessageTime(now);
+        topicsDigestService.onTopicSaved(second);
+        Topic hidden = topic(3L, now.plusMinutes(1), true);
+        topicsDigestService.onTopicSaved(hidden);
+
+        Assert.assertEquals(Arrays.asList(hidden, second), topicsDigestService.getActualTopicsBySection(false).get(1L));
+        Assert.assertEquals(Arrays.asList(second, first), topicsDigestService.getActualTopicsBySection(true).get(1L));
+    }
+
+    @Test
+    public void committedTopicChangeIsReadFromDatabase() {
+        Topic first = topic(1L, now.minusMinutes(1), false);
+        Topic second = topic(2L, now.minusMinutes(2), false);
+        Mockito.when(topicRepository.getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(first, second));
+        topicsDigestService.rebuild();
+        Topic committedSecond = topic(2L, now, false);
+        Mockito.when(topicRepository.findById(2L)).thenReturn(Optional.of(committedSecond));
+        Mockito.when(topicRepository.findById(1L)).thenReturn(Optional.empty());
+
+        topicsDigestService.onEntityChanged(new EntityChangedEvent(EntityType.USER, 2L));
+        Assert.assertEquals(Arrays.asList(first, second), topicsDigestService.getActualTopicsBySection(false).get(1L));
+
+        topicsDigestService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 2L));
+        topicsDigestService.onEntityChanged(new EntityChangedEvent(EntityType.TOPIC, 1L));
+        Assert.assertEquals(Collections.singletonList(committedSecond), topicsDigestService.getActualTopicsBySection(false).get(1L));
+    }
+
+    @Test
+    public void deletedTopicIsRemovedAndTruncatedSectionIsReloaded() {
+        List<Topic> loaded = new ArrayList<>();
+        for (long i = 1; i <= 4; i++) {
+            loaded.add(topic(i, now.minusMinutes(i), false));
+        }
+        Mockito.when(topicRepository.getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(loaded);
+        topicsDigestService.rebuild();
+
+        topicsDigestService.onTopicDeleted(1L);
+        Assert.assertEquals(Arrays.asList(loaded.get(1), loaded.get(2)), topicsDigestService.getActualTopicsBySection(false).get(1L));
+
+        topicsDigestService.onTopicDeleted(2L);
+        topicsDigestService.onTopicDeleted(3L);
+        topicsDigestService.getActualTopicsBySection(false);
+        Mockito.verify(topicRepository, Mockito.times(2)).getActualTopicsBySection(ArgumentMatchers.eq(1L), ArgumentMatchers.any());
+    }
+
+    private Topic topic(long id, LocalDateTime lastMessageTime, boolean hideToAnon) {
+        Topic topic = new Topic("topic " + id, null, lastMessageTime, lastMessageTime, subsection, hideToAnon, false);
+        topic.setId(id);
+        return topic;
+    }
+}
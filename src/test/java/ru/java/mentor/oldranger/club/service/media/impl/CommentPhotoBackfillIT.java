@@ -0,0 +1,38 @@
+package ru.java.mentor.oldranger.club.service.media.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource("/config/datasource-test.properties")
+@Sql(value = "/sql/commentPhotoBackfillIT/backfill-before.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = "/sql/commentPhotoBackfillIT/backfill-after.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CommentPhotoBackfillIT {
+
+    @Autowired
+    CommentPhotoBackfill backfill;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyCommentPhotoIsLinkedByAlbumTitleAndDescription() {
+        backfill.backfill();
+
+        Assert.assertEquals(Long.valueOf(7), commentId(1L));
+        // альбом не относится к Topic комментария
+        Assert.assertNull(commentId(2L));
+        Assert.assertNull(commentId(3L));
+    }
+
+    private Long commentId(Long photoId) {
+        return jdbcTemplate.queryForObject("select comment_id from photos where id = ?", Long.class, photoId);
+    }
+}
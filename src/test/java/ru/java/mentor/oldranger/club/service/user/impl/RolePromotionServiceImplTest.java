@@ -0,0 +1,96 @@
+package ru.java.mentor.oldranger.club.service.user.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.java.mentor.oldranger.club.dao.UserRepository.UserRepository;
+import ru.java.mentor.oldranger.club.event.EntityChangedEvent;
+import ru.java.mentor.oldranger.club.event.MessageCountChangedEvent;
+import ru.java.mentor.oldranger.club.model.user.Role;
+import ru.java.mentor.oldranger.club.service.user.RoleService;
+import ru.java.mentor.oldranger.club.service.user.UserStatisticService;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+@RunWith(MockitoJUnitRunner.class)
+class RolePromotionServiceImplTest {
+
+    private RolePromotionServiceImpl rolePromotionService;
+
+    @Mock
+    private UserStatisticService userStatisticService = Mockito.mock(UserStatisticService.class);
+
+    @Mock
+    private RoleService roleService = Mockito.mock(RoleService.class);
+
+    @Mock
+    private UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
+    private Role admin = role(1L, "ROLE_ADMIN");
+    private Role moderator = role(2L, "ROLE_MODERATOR");
+    private Role veteran = role(3L, "ROLE_VETERAN");
+    private Role oldTimer = role(4L, "ROLE_OLD_TIMER");
+
+    @BeforeEach
+    void init() {
+        rolePromotionService = new RolePromotionServiceImpl(userStatisticService, roleService, userRepository, eventPublisher,
+                700, 1999, 2000);
+        for (Role role : Arrays.asList(admin, moderator, veteran, oldTimer)) {
+            Mockito.when(roleService.getRoleByAuthority(role.getRole())).thenReturn(role);
+        }
+    }
+
+    @Test
+    public void roleForMessageCount() {
+        Assert.assertNull(rolePromotionService.getRoleForMessageCount(699));
+        Assert.assertEquals("ROLE_OLD_TIMER", rolePromotionService.getRoleForMessageCount(700));
+        Assert.assertEquals("ROLE_OLD_TIMER", rolePromotionService.getRoleForMessageCount(1999));
+        Assert.assertEquals("ROLE_VETERAN", rolePromotionService.getRoleForMessageCount(2000));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void userIsPromotedWithOneUpdateAndRolesAreReadOnce() {
+        Mockito.when(userStatisticService.getMessageCountsByUserIds(Collections.singleton(5L)))
+                .thenReturn(Collections.singletonMap(5L, 700L));
+        Mockito.when(userRepository.updateRoleUnlessIn(ArgumentMatchers.eq(5L), ArgumentMatchers.eq(oldTimer), ArgumentMatchers.anyCollection()))
+                .thenReturn(1)
+                .thenReturn(0);
+
+        rolePromotionService.onMessageCountChanged(new MessageCountChangedEvent(5L));
+        rolePromotionService.onMessageCountChanged(new MessageCountChangedEvent(5L));
+
+        Mockito.verify(userRepository, Mockito.times(2)).updateRoleUnlessIn(ArgumentMatchers.eq(5L), ArgumentMatchers.eq(oldTimer),
+                ArgumentMatchers.argThat((Collection<Role> kept) -> kept.containsAll(Arrays.asList(admin, moderator, veteran, oldTimer))));
+        Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(ArgumentMatchers.any(EntityChangedEvent.class));
+        Mockito.verify(roleService, Mockito.times(1)).getRoleByAuthority("ROLE_OLD_TIMER");
+        Mockito.verify(userRepository, Mockito.never()).save(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void userBelowThresholdIsNotUpdated() {
+        Mockito.when(userStatisticService.getMessageCountsByUserIds(Collections.singleton(5L)))
+                .thenReturn(Collections.singletonMap(5L, 10L));
+
+        rolePromotionService.onMessageCountChanged(new MessageCountChangedEvent(5L));
+
+        Mockito.verifyNoInteractions(userRepository, eventPublisher);
+    }
+
+    private static Role role(Long id, String authority) {
+        Role role = new Role(authority);
+        role.setId(id);
+        return role;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.java.mentor.oldranger.club.service.user.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.java.mentor.oldranger.club.dao.UserRepository.UserStaticRepository;
+import ru.java.mentor.oldranger.club.event.MessageCountChangedEvent;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(MockitoJUnitRunner.class)
+class UserStatisticCounterServiceImplTest {
+
+    private static final int THREADS = 64;
+    private static final int POSTS_PER_THREAD = 200;
+
+    @Mock
+    private UserStaticRepository userStaticRepository = Mockito.mock(UserStaticRepository.class);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
+    private LocalDateTime now = LocalDateTime.now();
+
+    @Test
+    public void coldUserIsUpdatedDirectly() {
+        UserStatisticCounterServiceImpl counterService = counterService(20);
+        counterService.messagePosted(1L, now);
+        counterService.topicStarted(1L);
+        counterService.messagePosted(null, now);
+
+        Mockito.verify(userStaticRepository, Mockito.times(1)).incrementMessageCount(1L, now);
+        Mockito.verify(userStaticRepository, Mockito.times(1)).incrementTopicStartCount(1L);
+        Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(ArgumentMatchers.any(MessageCountChangedEvent.class));
+        Assert.assertEquals(0, counterService.getDepth());
+        Assert.assertEquals(0, counterService.flush());
+        Mockito.verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void hotUserIsBufferedAndFlushedInOneUpdate() {
+        UserStatisticCounterServiceImpl counterService = counterService(2);
+        for (int i = 0; i < 5; i++) {
+            counterService.messagePosted(1L, now.minusMinutes(i));
+        }
+        counterService.topicStarted(1L);
+
+        Mockito.verify(userStaticRepository, Mockito.times(2)).incrementMessageCount(ArgumentMatchers.eq(1L), ArgumentMatchers.any());
+        Assert.assertEquals(1, counterService.getDepth());
+        Assert.assertEquals(1, counterService.flush());
+
+        Timestamp lastComment = Timestamp.valueOf(now.minusMinutes(2));
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).batchUpdate(ArgumentMatchers.eq(UserStatisticCounterServiceImpl.INCREMENT_SQL),
+                ArgumentMatchers.argThat((List<Object[]> batch) -> batch.size() == 1
+                        && batch.get(0)[0].equals(3L) && batch.get(0)[1].equals(1L)
+                        && batch.get(0)[2].equals(lastComment) && batch.get(0)[4].equals(1L)));
+        Mockito.verify(eventPublisher, Mockito.times(3)).publishEvent(ArgumentMatchers.any(MessageCountChangedEvent.class));
+
+        // без новых сообщений за интервал пользователь снова пишется сразу в базу
+        Assert.assertEquals(0, counterService.flush());
+        Assert.assertEquals(0, counterService.getDepth());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedFlushKeepsDeltas() {
+        UserStatisticCounterServiceImpl counterService = counterService(1);
+        counterService.messagePosted(1L, now);
+        counterService.messagePosted(1L, now);
+        counterService.messagePosted(1L, now);
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenThrow(new DataAccessResourceFailureException("db is down"))
+                .thenReturn(new int[]{1});
+
+        Assert.assertEquals(0, counterService.flush());
+        Assert.assertEquals(1, counterService.getDepth());
+        Assert.assertEquals(1, counterService.flush());
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).batchUpdate(ArgumentMatchers.eq(UserStatisticCounterServiceImpl.INCREMENT_SQL),
+                ArgumentMatchers.argThat((List<Object[]> batch) -> batch.get(0)[0].equals(2L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void concurrentPostsForSameUserAreNotLost() throws Exception {
+        AtomicLong savedMessages = new AtomicLong();
+        AtomicReference<Timestamp> savedLastComment = new AtomicReference<>();
+        Mockito.when(userStaticRepository.incrementMessageCount(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> {
+                    savedMessages.incrementAndGet();
+                    savedLastComment.accumulateAndGet(Timestamp.valueOf((LocalDateTime) invocation.getArgument(1)), UserStatisticCounterServiceImplTest::latest);
+                    return 1;
+                });
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any()))
+                .thenAnswer(invocation -> {
+                    for (Object[] args : (List<Object[]>) invocation.getArgument(1)) {
+                        savedMessages.addAndGet((Long) args[0]);
+                        if (args[2] != null) {
+                            savedLastComment.accumulateAndGet((Timestamp) args[2], UserStatisticCounterServiceImplTest::latest);
+                        }
+                    }
+                    return new int[0];
+                });
+        UserStatisticCounterServiceImpl counterService = counterService(50);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean posting = new AtomicBoolean(true);
+        List<Future<?>> posters = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int minutes = thread;
+            posters.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < POSTS_PER_THREAD; i++) {
+                    counterService.messagePosted(1L, now.plusMinutes(minutes));
+                }
+                return null;
+            }));
+        }
+        // сохранения, в том числе с удалением буфера, идут одновременно с сообщениями
+        Future<?> flusher = executor.submit(() -> {
+            start.await();
+            while (posting.get()) {
+                counterService.flush();
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> poster : posters) {
+            poster.get(30, TimeUnit.SECONDS);
+        }
+        posting.set(false);
+        flusher.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        counterService.flush();
+
+        Assert.assertEquals(THREADS * POSTS_PER_THREAD, savedMessages.get());
+        Assert.assertEquals(Timestamp.valueOf(now.plusMinutes(THREADS - 1)), savedLastComment.get());
+    }
+
+    private UserStatisticCounterServiceImpl counterService(int hotThreshold) {
+        return new UserStatisticCounterServiceImpl(userStaticRepository, jdbcTemplate, new SimpleMeterRegistry(), eventPublisher, hotThreshold);
+    }
+
+    private static Timestamp latest(Timestamp first, Timestamp second) {
+        if (first == null) {
+            return second;
+        }
+        return first.after(second) ? first : second;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.java.mentor.oldranger.club.service.utils.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.java.mentor.oldranger.club.dao.BlackListRepository;
+import ru.java.mentor.oldranger.club.dao.WritingBanRepository;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
+import ru.java.mentor.oldranger.club.model.utils.BanType;
+import ru.java.mentor.oldranger.club.projection.UserBanProjection;
+import ru.java.mentor.oldranger.club.projection.WritingBanProjection;
+import ru.java.mentor.oldranger.club.service.utils.BanRegistryService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.class)
+class BanRegistryServiceImplTest {
+    private BanRegistryServiceImpl banRegistryService;
+    private List<CacheInvalidationMessage> sentMessages = new ArrayList<>();
+
+    @Mock
+    private BlackListRepository blackListRepository = Mockito.mock(BlackListRepository.class);
+
+    @Mock
+    private WritingBanRepository writingBanRepository = Mockito.mock(WritingBanRepository.class);
+
+    private List<UserBanProjection> activeLocks;
+    private List<WritingBanProjection> activeWritingBans;
+
+    @BeforeEach
+    void init() {
+        activeLocks = new ArrayList<>();
+        activeWritingBans = new ArrayList<>();
+        Mockito.when(blackListRepository.getActiveBans(ArgumentMatchers.any())).thenAnswer(a -> activeLocks);
+        Mockito.when(writingBanRepository.getActiveBans(ArgumentMatchers.any())).thenAnswer(a -> activeWritingBans);
+        banRegistryService = new BanRegistryServiceImpl(blackListRepository, writingBanRepository, sentMessages::add);
+    }
+
+    @Test
+    public void activeBansAreLoadedOnReconcile() {
+        activeLocks.addAll(Arrays.asList(lock(1L, null), lock(2L, LocalDateTime.now().plusDays(1))));
+        activeWritingBans.add(writingBan(3L, BanType.ON_CHAT, null));
+        banRegistryService.reconcile();
+        Assert.assertTrue(banRegistryService.isLocked(1L));
+        Assert.assertTrue(banRegistryService.isLocked(2L));
+        Assert.assertFalse(banRegistryService.isLocked(3L));
+        Assert.assertTrue(banRegistryService.isForbidden(3L, BanType.ON_CHAT));
+        Assert.assertFalse(banRegistryService.isForbidden(3L, BanType.ON_COMMENTS));
+        Mockito.verify(blackListRepository, Mockito.times(1)).deleteExpired(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void liftedBansAreRemovedOnReconcile() {
+        activeLocks.add(lock(1L, null));
+        banRegistryService.reconcile();
+        activeLocks.clear();
+        banRegistryService.reconcile();
+        Assert.assertFalse(banRegistryService.isLocked(1L));
+    }
+
+    @Test
+    public void banAddedDuringReconcileIsKept() throws InterruptedException {
+        Thread[] forbidding = new Thread[1];
+        Mockito.when(writingBanRepository.getActiveBans(ArgumentMatchers.any())).thenAnswer(a -> {
+            forbidding[0] = new Thread(() -> banRegistryService.forbid(1L, BanType.ON_CHAT, null));
+            forbidding[0].start();
+            forbidding[0].join(200);
+            return activeWritingBans;
+        });
+        banRegistryService.reconcile();
+        forbidding[0].join();
+        Assert.assertTrue(banRegistryService.isForbidden(1L, BanType.ON_CHAT));
+    }
+
+    @Test
+    public void expiredBanIsNotActive() {
+        banRegistryService.forbid(1L, BanType.ON_COMMENTS, LocalDateTime.now().minusSeconds(1));
+        Assert.assertFalse(banRegistryService.isForbidden(1L, BanType.ON_COMMENTS));
+        banRegistryService.forbid(1L, BanType.ON_COMMENTS, LocalDateTime.now().plusHours(1));
+        Assert.assertTrue(banRegistryService.isForbidden(1L, BanType.ON_COMMENTS));
+    }
+
+    @Test
+    public void banIsSentToOtherNodes() {
+        banRegistryService.forbid(1L, BanType.ON_CHAT, null);
+        Assert.assertEquals(Collections.singletonList(CacheInvalidationMessage.forKey(BanRegistryService.REGISTRY_NAME, "1")),
+                sentMessages);
+    }
+
+    @Test
+    public void banFromOtherNodeIsReadFromDatabase() {
+        banRegistryService.forbid(1L, BanType.ON_COMMENTS, null);
+        Mockito.when(blackListRepository.findByUserId(1L)).thenReturn(Collections.emptyList());
+        Mockito.when(writingBanRepository.getActiveBansOfUser(ArgumentMatchers.eq(1L), ArgumentMatchers.any()))
+                .thenReturn(Collections.singletonList(writingBan(1L, BanType.ON_CHAT, null)));
+
+        banRegistryService.onRemoteInvalidation(CacheInvalidationMessage.forKey("users", "1"));
+        Assert.assertTrue(banRegistryService.isForbidden(1L, BanType.ON_COMMENTS));
+
+        banRegistryService.onRemoteInvalidation(CacheInvalidationMessage.forKey(BanRegistryService.REGISTRY_NAME, "1"));
+        Assert.assertTrue(banRegistryService.isForbidden(1L, BanType.ON_CHAT));
+        Assert.assertFalse(banRegistryService.isForbidden(1L, BanType.ON_COMMENTS));
+        Assert.assertFalse(banRegistryService.isLocked(1L));
+        Assert.assertEquals(1, sentMessages.size());
+    }
+
+    @Test
+    public void lookupsDoNotQueryDatabase() {
+        Mockito.when(blackListRepository.findByUserId(1L)).thenReturn(Collections.emptyList());
+        banRegistryService.refreshLock(1L);
+        Mockito.clearInvocations(blackListRepository);
+        for (int i = 0; i < 100; i++) {
+            banRegistryService.isLocked(1L);
+            banRegistryService.isForbidden(1L, BanType.ON_CHAT);
+        }
+        Mockito.verifyNoInteractions(blackListRepository, writingBanRepository);
+    }
+
+    private UserBanProjection lock(Long userId, LocalDateTime unlockTime) {
+        return new UserBanProjection() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public LocalDateTime getUnlockTime() {
+                return unlockTime;
+            }
+        };
+    }
+
+    private WritingBanProjection writingBan(Long userId, BanType type, LocalDateTime unlockTime) {
+        return new WritingBanProjection() {
+            @Override
+            public BanType getBanType() {
+                return type;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public LocalDateTime getUnlockTime() {
+                return unlockTime;
+            }
+        };
+    }
+}
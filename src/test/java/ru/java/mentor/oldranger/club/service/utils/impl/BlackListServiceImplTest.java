@@ -9,6 +9,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import ru.java.mentor.oldranger.club.dao.BlackListRepository;
+import ru.java.mentor.oldranger.club.dao.WritingBanRepository;
+import ru.java.mentor.oldranger.club.event.CacheInvalidationMessage;
 import ru.java.mentor.oldranger.club.model.user.User;
 import ru.java.mentor.oldranger.club.model.utils.BlackList;
 import ru.java.mentor.oldranger.club.service.user.UserService;
@@ -28,34 +30,43 @@ class BlackListServiceImplTest {
     private UserService userService = Mockito.mock(UserService.class);
     ;
 
+    @Mock
+    private WritingBanRepository writingBanRepository = Mockito.mock(WritingBanRepository.class);
+
+    private BanRegistryServiceImpl banRegistryService;
+    private List<CacheInvalidationMessage> sentMessages = new ArrayList<>();
+
     @BeforeEach
     void initSomeCase() {
-        blackListService = new BlackListServiceImpl(blackListRepository, userService);
+        banRegistryService = new BanRegistryServiceImpl(blackListRepository, writingBanRepository, sentMessages::add);
+        blackListService = new BlackListServiceImpl(blackListRepository, userService, banRegistryService);
     }
 
     @Test
-    public void userSearchBlackListByUserIdOneClearTest() {
+    public void expiredBanDoesNotLockAndIsNotDeletedOnRead() {
         List<BlackList> blackLists = new ArrayList<>();
         User user = new User();
         user.setId(1L);
         blackLists.add(new BlackList(1L, user, LocalDateTime.now().minusMinutes(1)));
         Mockito.when(blackListRepository.findByUserId(ArgumentMatchers.anyLong())).thenAnswer(a -> blackLists);
+        banRegistryService.refreshLock(user.getId());
         boolean res = blackListService.userSearchBlackListByUserId(user.getId());
-        Mockito.verify(blackListRepository, Mockito.times(1)).delete(blackLists.get(0));
+        Mockito.verify(blackListRepository, Mockito.never()).delete(ArgumentMatchers.any());
         Assert.assertEquals(res, true);
     }
 
     @Test
-    public void userSearchBlackListByUserIdTwoNoClearTest() {
+    public void activeBanLocksDespiteExpiredOne() {
         List<BlackList> blackLists = new ArrayList<>();
         User user = new User();
         user.setId(1L);
         blackLists.add(new BlackList(1L, user, LocalDateTime.now().minusMinutes(1)));
         blackLists.add(new BlackList(2L, user, LocalDateTime.now().plusDays(1)));
         Mockito.when(blackListRepository.findByUserId(ArgumentMatchers.anyLong())).thenAnswer(a -> blackLists);
+        banRegistryService.refreshLock(user.getId());
+        Mockito.clearInvocations(blackListRepository);
         boolean res = blackListService.userSearchBlackListByUserId(user.getId());
-        Mockito.verify(blackListRepository, Mockito.times(1)).delete(blackLists.get(0));
-        Mockito.verify(blackListRepository, Mockito.times(0)).delete(blackLists.get(1));
-        Assert.assertEquals(res, true);
+        Mockito.verifyNoInteractions(blackListRepository);
+        Assert.assertEquals(res, false);
     }
 }
@@ -0,0 +1,90 @@
+package ru.java.mentor.oldranger.club.service.utils.impl;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.java.mentor.oldranger.club.model.user.Role;
+import ru.java.mentor.oldranger.club.model.user.RoleType;
+import ru.java.mentor.oldranger.club.model.user.User;
+import ru.java.mentor.oldranger.club.service.user.UserService;
+
+@RunWith(MockitoJUnitRunner.class)
+class SecurityUtilsServiceImplTest {
+    private SecurityUtilsServiceImpl securityUtilsService;
+
+    @Mock
+    private UserService userService = Mockito.mock(UserService.class);
+
+    @Mock
+    private SessionRegistry sessionRegistry = Mockito.mock(SessionRegistry.class);
+
+    private RoleHierarchy roleHierarchy;
+    private User moderator;
+
+    @BeforeEach
+    void init() {
+        RoleHierarchyImpl hierarchy = new RoleHierarchyImpl();
+        hierarchy.setHierarchy("ROLE_ADMIN > ROLE_MODERATOR > ROLE_VETERAN > ROLE_OLD_TIMER > ROLE_USER > ROLE_PROSPECT");
+        roleHierarchy = Mockito.spy(hierarchy);
+        securityUtilsService = new SecurityUtilsServiceImpl(userService, sessionRegistry);
+        ReflectionTestUtils.setField(securityUtilsService, "roleHierarchy", roleHierarchy);
+
+        moderator = new User("First", "Last", "moderator@javamentor.com", "Moderator", new Role("ROLE_MODERATOR"));
+        Mockito.when(userService.getUserByNickName("Moderator")).thenReturn(moderator);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(moderator, null, moderator.getAuthorities()));
+    }
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void rolesAndUserAreResolvedOncePerRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(securityUtilsService.isAdmin());
+            Assert.assertTrue(securityUtilsService.isModerator());
+            Assert.assertTrue(securityUtilsService.isLoggedUserIsUser());
+            Assert.assertTrue(securityUtilsService.isAuthorityReachableForLoggedUser(RoleType.ROLE_VETERAN));
+            Assert.assertTrue(securityUtilsService.isAuthorityReachableForLoggedUser(RoleType.ROLE_OLD_TIME));
+            Assert.assertEquals(moderator, securityUtilsService.getLoggedUser());
+        }
+        Mockito.verify(roleHierarchy, Mockito.times(1)).getReachableGrantedAuthorities(ArgumentMatchers.anyCollection());
+        Mockito.verify(userService, Mockito.times(1)).getUserByNickName("Moderator");
+    }
+
+    @Test
+    public void snapshotIsRebuiltWhenAuthenticationChanges() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Assert.assertTrue(securityUtilsService.isModerator());
+        User admin = new User("First", "Last", "admin@javamentor.com", "Admin", new Role("ROLE_ADMIN"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+        Assert.assertTrue(securityUtilsService.isAdmin());
+    }
+
+    @Test
+    public void withoutRequestRolesAreResolvedOnEveryCall() {
+        securityUtilsService.isAdmin();
+        securityUtilsService.isModerator();
+        Mockito.verify(roleHierarchy, Mockito.times(2)).getReachableGrantedAuthorities(ArgumentMatchers.anyCollection());
+    }
+}
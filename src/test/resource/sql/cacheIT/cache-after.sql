@@ -0,0 +1,5 @@
+delete from users;
+delete from roles;
+
+alter table users auto_increment = 0;
+alter table roles auto_increment = 0;
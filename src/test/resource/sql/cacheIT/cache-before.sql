@@ -0,0 +1,8 @@
+insert into jm_oldc_test.roles (id, role) values
+(1, 'ROLE_ADMIN'),
+(2, 'ROLE_USER');
+
+insert into jm_oldc_test.users (id_user, first_name, last_name, email, nick_name,
+ password, registered, invite_key, role_id, avatar_id) values
+(1, 'Admin', 'Admin', 'admin@javamentor.com', 'Admin', null, null, null, 1, null),
+(2, 'User', 'User', 'user@javamentor.com', 'User', null, null, null, 2, null);
@@ -0,0 +1,7 @@
+delete from photos;
+delete from photo_album;
+delete from media;
+delete from comments;
+delete from topics;
+delete from users;
+delete from roles;
@@ -0,0 +1,40 @@
+delete from photos;
+delete from photo_album;
+delete from media;
+delete from comments;
+delete from topics;
+delete from users;
+delete from roles;
+
+alter table users auto_increment = 0;
+alter table roles auto_increment = 0;
+insert into jm_oldc_test.roles (id, role) values
+(1, 'ROLE_ADMIN'),
+(2, 'ROLE_USER');
+
+insert into jm_oldc_test.users (id_user, first_name, last_name, email, nick_name,
+ password, registered, invite_key, role_id, avatar_id) values
+(1, 'Admin', 'Admin', 'admin@javamentor.com', 'Admin', null, null, null, 1, null),
+(2, 'User', 'User', 'user@javamentor.com', 'User', null, null, null, 2, null);
+
+insert into jm_oldc_test.topics (id, name_topic, user_id, message_count, date_start, date_last_message,
+ is_hide, forbid_add_update_comment) values
+(1, 'Topic', 1, 4, '2020-01-01 10:00:00', '2020-01-04 10:00:00', 0, 0);
+
+-- каждый следующий комментарий отвечает на предыдущий
+insert into jm_oldc_test.comments (id, id_topic, id_user, date_comment, text_comment, id_comment) values
+(1, 1, 1, '2020-01-01 10:00:00', 'first', null),
+(2, 1, 2, '2020-01-02 10:00:00', 'second', 1),
+(3, 1, 1, '2020-01-03 10:00:00', 'third', 2),
+(4, 1, 2, '2020-01-04 10:00:00', 'fourth', 3);
+
+insert into jm_oldc_test.media (id, user_id_user) values
+(1, 1);
+
+insert into jm_oldc_test.photo_album (id, allow_view, title, media_id, thumb_image_id) values
+(1, 1, 'PhotoAlbum by Topic', 1, null);
+
+insert into jm_oldc_test.photos (id, description, original_img, small_img, upload_photo_date, album_id, comment_id) values
+(1, '2', 'orig_img 1', 'small_img 1', '2020-01-02 10:00:00', 1, 2),
+(2, '2', 'orig_img 2', 'small_img 2', '2020-01-02 10:00:00', 1, 2),
+(3, '4', 'orig_img 3', 'small_img 3', '2020-01-04 10:00:00', 1, 4);
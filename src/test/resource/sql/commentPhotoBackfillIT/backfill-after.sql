@@ -0,0 +1,10 @@
+delete from photos;
+delete from photo_album;
+delete from media;
+delete from comments;
+delete from topics;
+delete from users;
+delete from roles;
+
+alter table users auto_increment = 0;
+alter table roles auto_increment = 0;
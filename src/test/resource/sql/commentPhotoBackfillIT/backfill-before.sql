@@ -0,0 +1,28 @@
+insert into jm_oldc_test.roles (id, role) values
+(1, 'ROLE_ADMIN'),
+(2, 'ROLE_USER');
+
+insert into jm_oldc_test.users (id_user, first_name, last_name, email, nick_name,
+ password, registered, invite_key, role_id, avatar_id) values
+(1, 'Admin', 'Admin', 'admin@javamentor.com', 'Admin', null, null, null, 1, null),
+(2, 'User', 'User', 'user@javamentor.com', 'User', null, null, null, 2, null);
+
+insert into jm_oldc_test.topics (id, name_topic, user_id, message_count, date_start, date_last_message,
+ is_hide, forbid_add_update_comment) values
+(1, 'Topic', 1, 1, '2020-01-01 10:00:00', '2020-01-01 10:00:00', 0, 0);
+
+insert into jm_oldc_test.comments (id, id_topic, id_user, date_comment, text_comment) values
+(7, 1, 1, '2020-01-01 10:00:00', 'with photo');
+
+insert into jm_oldc_test.media (id, user_id_user) values
+(1, 1);
+
+insert into jm_oldc_test.photo_album (id, allow_view, title, media_id, thumb_image_id) values
+(1, 1, 'PhotoAlbum by Topic', 1, null),
+(2, 1, 'Album Admin', 1, null);
+
+-- фотографии, загруженные до появления comment_id
+insert into jm_oldc_test.photos (id, description, original_img, small_img, upload_photo_date, album_id, comment_id) values
+(1, '7', 'orig_img 1', 'small_img 1', '2020-01-01 10:00:00', 1, null),
+(2, '7', 'orig_img 2', 'small_img 2', '2020-01-01 10:00:00', 2, null),
+(3, 'photo', 'orig_img 3', 'small_img 3', '2020-01-01 10:00:00', 1, null);
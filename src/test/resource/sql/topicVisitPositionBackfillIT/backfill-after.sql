@@ -0,0 +1,8 @@
+delete from topic_visit_and_subscriptions;
+delete from comments;
+delete from topics;
+delete from users;
+delete from roles;
+
+alter table users auto_increment = 0;
+alter table roles auto_increment = 0;
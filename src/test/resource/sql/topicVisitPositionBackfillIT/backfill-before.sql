@@ -0,0 +1,23 @@
+insert into jm_oldc_test.roles (id, role) values
+(1, 'ROLE_ADMIN'),
+(2, 'ROLE_USER');
+
+insert into jm_oldc_test.users (id_user, first_name, last_name, email, nick_name,
+ password, registered, invite_key, role_id, avatar_id) values
+(1, 'Admin', 'Admin', 'admin@javamentor.com', 'Admin', null, null, null, 1, null),
+(2, 'User', 'User', 'user@javamentor.com', 'User', null, null, null, 2, null);
+
+insert into jm_oldc_test.topics (id, name_topic, user_id, message_count, date_start, date_last_message,
+ is_hide, forbid_add_update_comment) values
+(1, 'Topic', 1, 3, '2020-01-01 10:00:00', '2020-01-03 10:00:00', 0, 0);
+
+insert into jm_oldc_test.comments (id, id_topic, id_user, date_comment, text_comment) values
+(1, 1, 1, '2020-01-01 10:00:00', 'first'),
+(2, 1, 1, '2020-01-02 10:00:00', 'second'),
+(3, 1, 1, '2020-01-03 10:00:00', 'third');
+
+-- строки, оставшиеся от версии без last_seen_position
+insert into jm_oldc_test.topic_visit_and_subscriptions (id, id_user, topic_id, is_subscribed, date_subscribed,
+ date_lastvisit, last_seen_position) values
+(1, 2, 1, 1, '2020-01-01 09:00:00', '2020-01-02 12:00:00', -1),
+(2, 1, 1, 1, '2020-01-01 09:00:00', null, -1);